@@ -16,15 +16,42 @@ import static edu.lclark.orego.core.StoneColor.BLACK;
 import static edu.lclark.orego.core.StoneColor.WHITE;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import edu.lclark.orego.feature.BoardObserver;
+import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ShortList;
 import edu.lclark.orego.util.ShortSet;
 
-/** Manages the board, detecting legal moves, etc. */
+/**
+ * Manages the board, detecting legal moves, etc.
+ * <p>
+ * The liberties of each chain are kept as a bit set (one long per 64 points)
+ * at the chain's root. The bit sets of all points live in one shared array,
+ * so copying a board's liberties is a single array copy. Merging chains ORs
+ * the words together, and a chain is in atari exactly when one bit is set. Colors and packed neighbor counts stay in each Point,
+ * because the local tests that use them (suicide, eye-like points) need only
+ * the four neighbors.
+ * <p>
+ * After mark() is called, the board keeps a journal of every change made by
+ * play() and pass(): stone placements and removals, chain links, liberty
+ * edits, neighbor counts, vacant points, and superko table entries. rollBack()
+ * undoes these changes in reverse order, returning the board (and its
+ * observers) to the marked position in time proportional to the number of
+ * changes rather than the area of the board. Any other change, such as
+ * clear() or copyDataFrom(), discards the mark.
+ */
 @SuppressWarnings("serial")
 public final class Board implements Serializable {
 
+	/** Journal entry types. The low 32 bits of each entry hold an old value. */
+	private static final int COLOR = 0, CHAIN_ID = 1, CHAIN_NEXT = 2,
+			NEIGHBOR_COUNTS = 3, LIBERTY_ADDED = 4, LIBERTY_REMOVED = 5,
+			VACANT_ADDED = 6, VACANT_REMOVED = 7, SUPERKO_SLOT = 8;
+
+	/** Colors a point on the board can have, indexed by Color.index(). */
+	private static final Color[] POINT_COLORS = { BLACK, WHITE, VACANT };
+
 	/** Locations for handicap stones. */
 	private final static String[] HANDICAP_LOCATIONS = { "d4", "q16", "q4",
 			"d16", "k10", "d10", "q10", "k4", "k16" };
@@ -60,11 +87,48 @@ public final class Board implements Serializable {
 	 */
 	private final ShortSet[] initialStones;
 
+	/**
+	 * Changes made since mark(), each packed as type, point, and old value.
+	 * Only the first journalSize entries are valid.
+	 */
+	private long[] journal;
+
+	/** True if changes are being recorded in journal. */
+	private boolean journaling;
+
+	/** Number of valid entries in journal. */
+	private int journalSize;
+
 	/** The point, if any, where the simple ko rule prohibits play. */
 	private short koPoint;
 
-	/** Direct liberties of the stone just played. */
-	private final ShortSet lastPlayLiberties;
+	/**
+	 * Liberty bit sets of all points, shared by the Points of this board.
+	 *
+	 * @see Point#liberties
+	 */
+	private final long[] liberties;
+
+	/** Direct liberties of the stone just played, as a bit set. */
+	private final long[] lastPlayLiberties;
+
+	/** Returned by getLiberties(); reused by every call. */
+	private final ShortSet libertyList;
+
+	/** Values of the simple fields when mark() was called. */
+	private StoneColor markedColorToPlay;
+
+	/** @see #markedColorToPlay */
+	private long markedHash;
+
+	/** @see #markedColorToPlay */
+	private short markedKoPoint;
+
+	/** @see #markedColorToPlay */
+	private short markedPasses;
+
+	/** @see #markedColorToPlay */
+	private short markedTurn;
 
 	/** Neighbors of a stone just captured. Used by removeStone(). */
 	private final ShortList neighborsOfCapturedStone;
@@ -93,22 +157,32 @@ public final class Board implements Serializable {
 	/** The set of vacant points. */
 	private final ShortSet vacantPoints;
 
+	/**
+	 * Incremented whenever this board changes. Lets a copy of this board tell
+	 * whether it is out of date.
+	 */
+	private long version;
+
 	public Board(int width) {
 		coords = CoordinateSystem.forWidth(width);
 		points = new Point[coords.getFirstPointBeyondExtendedBoard()];
+		liberties = new long[coords.getFirstPointBeyondBoard()
+				* Point.libertyWordsFor(coords)];
 		friendlyNeighboringChainIds = new ShortList(4);
 		enemyNeighboringChainIds = new ShortList(4);
 		capturedStones = new ShortList(coords.getArea());
 		final int n = coords.getFirstPointBeyondBoard();
-		lastPlayLiberties = new ShortSet(n);
+		lastPlayLiberties = new long[BitVector.longsFor(n)];
+		libertyList = new ShortSet(n);
 		superKoTable = new SuperKoTable(coords);
 		vacantPoints = new ShortSet(n);
 		for (short p = 0; p < points.length; p++) {
-			points[p] = new Point(coords, p);
+			points[p] = new Point(coords, p, liberties);
 		}
 		neighborsOfCapturedStone = new ShortList(4);
 		observers = new BoardObserver[0];
 		initialStones = new ShortSet[] { new ShortSet(n), new ShortSet(n) };
+		journal = new long[coords.getMaxMovesPerGame() * 16];
 		clear();
 	}
 
@@ -138,7 +212,7 @@ public final class Board implements Serializable {
 					s = points[s].chainNextPoint;
 				} while (s != enemy);
 			} else {
-				points[enemy].liberties.removeKnownPresent(p);
+				removeLiberty(enemy, p);
 			}
 		}
 	}
@@ -150,17 +224,33 @@ public final class Board implements Serializable {
 	private void adjustFriendlyNeighbors(short p) {
 		if (friendlyNeighboringChainIds.size() == 0) {
 			// If there are no friendly neighbors, create a new, one-stone chain
-			points[p].becomeOneStoneChain(lastPlayLiberties);
+			if (journaling) {
+				record(CHAIN_ID, p, points[p].chainId);
+				record(CHAIN_NEXT, p, points[p].chainNextPoint);
+				// Stale liberties from a chain once rooted here
+				while (points[p].libertyCount > 0) {
+					removeLiberty(p, points[p].getFirstLiberty());
+				}
+				points[p].chainId = p;
+				points[p].chainNextPoint = p;
+				addLiberties(p, lastPlayLiberties, 0);
+			} else {
+				points[p].becomeOneStoneChain(lastPlayLiberties);
+			}
 		} else {
 			short c = friendlyNeighboringChainIds.get(0);
+			if (journaling) {
+				record(CHAIN_ID, p, points[p].chainId);
+				record(CHAIN_NEXT, p, points[p].chainNextPoint);
+				record(CHAIN_NEXT, c, points[c].chainNextPoint);
+			}
 			points[p].addToChain(points[c]);
-			points[c].liberties.addAll(lastPlayLiberties);
+			addLiberties(c, lastPlayLiberties, 0);
 			if (friendlyNeighboringChainIds.size() > 1) {
 				// If there are several friendly neighbors, merge them
 				for (int i = 1; i < friendlyNeighboringChainIds.size(); i++) {
 					final short ally = friendlyNeighboringChainIds.get(i);
-					if (points[c].liberties.size() >= points[ally].liberties
-							.size()) {
+					if (points[c].libertyCount >= points[ally].libertyCount) {
 						mergeChains(c, ally);
 					} else {
 						mergeChains(ally, c);
@@ -169,10 +259,29 @@ public final class Board implements Serializable {
 
 				}
 			}
-			points[c].liberties.removeKnownPresent(p);
+			removeLiberty(c, p);
 		}
 	}
 
+	/**
+	 * Adds the liberties in the bit set starting at libs[libsOffset] to the
+	 * chain rooted at root.
+	 */
+	private void addLiberties(short root, long[] libs, int libsOffset) {
+		if (journaling) {
+			final int offset = points[root].libertyOffset;
+			for (int w = 0; w < points[root].libertyWords; w++) {
+				long added = libs[libsOffset + w] & ~liberties[offset + w];
+				while (added != 0) {
+					final int bit = Long.numberOfTrailingZeros(added);
+					record(LIBERTY_ADDED, root, w << 6 | bit);
+					added &= added - 1;
+				}
+			}
+		}
+		points[root].addLiberties(libs, libsOffset);
+	}
+
 	/**
 	 * Returns this board to its blank state. Any initial stones are removed and
 	 * the komi is reset to a default value. This is roughly equivalent to
@@ -180,6 +289,7 @@ public final class Board implements Serializable {
 	 * board do not have to change.
 	 */
 	public void clear() {
+		discardMark();
 		colorToPlay = BLACK;
 		hash = SuperKoTable.EMPTY;
 		koPoint = NO_POINT;
@@ -227,6 +337,17 @@ public final class Board implements Serializable {
 	 * Copies data from that to this.
 	 */
 	public void copyDataFrom(Board that) {
+		copyDataFrom(that, false);
+	}
+
+	/**
+	 * Copies data from that to this. If shareHistory is true, that's superko
+	 * table becomes the base of this board's table rather than being copied.
+	 *
+	 * @see SuperKoTable#shareDataFrom(SuperKoTable)
+	 */
+	private void copyDataFrom(Board that, boolean shareHistory) {
+		discardMark();
 		colorToPlay = that.colorToPlay;
 		hash = that.hash;
 		koPoint = that.koPoint;
@@ -237,11 +358,34 @@ public final class Board implements Serializable {
 		for (final short p : coords.getAllPointsOnBoard()) {
 			points[p].copyDataFrom(that.points[p]);
 		}
-		superKoTable.copyDataFrom(that.superKoTable);
+		System.arraycopy(that.liberties, 0, liberties, 0, liberties.length);
+		if (shareHistory) {
+			superKoTable.shareDataFrom(that.superKoTable);
+		} else {
+			superKoTable.copyDataFrom(that.superKoTable);
+		}
 		turn = that.turn;
 		vacantPoints.copyDataFrom(that.vacantPoints);
 	}
 
+	/**
+	 * Like copyDataFrom(that), but shares that's superko history instead of
+	 * copying it. Positions reached on this board afterward are kept in a
+	 * small overlay, emptied by the next copy. That board must not change
+	 * while this one is in use; McRunnables, which recopy whenever the
+	 * player's board changes, rely on this.
+	 */
+	public void copyDataSharingHistoryFrom(Board that) {
+		copyDataFrom(that, true);
+	}
+
+	/** Stops journaling, so rollBack() is no longer possible. */
+	private void discardMark() {
+		journaling = false;
+		journalSize = 0;
+		version++;
+	}
+
 	/**
 	 * Updates data structures at the end of a play.
 	 *
@@ -252,14 +396,17 @@ public final class Board implements Serializable {
 	 */
 	private void finalizePlay(StoneColor color, short p) {
 		final int lastVacantPointCount = vacantPoints.size();
-		points[p].color = color;
+		setColor(p, color);
 		vacantPoints.remove(p);
+		if (journaling) {
+			record(VACANT_REMOVED, p, 0);
+		}
 		final boolean surrounded = points[p]
 				.hasMaxNeighborsForColor(color.opposite());
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
-			points[neighbors[i]].neighborCounts += Point.NEIGHBOR_INCREMENT[color
-					.index()];
+			addToNeighborCounts(neighbors[i],
+					Point.NEIGHBOR_INCREMENT[color.index()]);
 		}
 		adjustFriendlyNeighbors(p);
 		adjustEnemyNeighbors(p);
@@ -270,6 +417,15 @@ public final class Board implements Serializable {
 		}
 	}
 
+	/**
+	 * Returns a number that changes whenever this board changes. If a copy
+	 * was made when the version was v and the version is still v, the copy is
+	 * up to date.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/** Returns the next point in this chain. */
 	public short getChainNextPoint(short p) {
 		return points[p].chainNextPoint;
@@ -322,12 +478,44 @@ public final class Board implements Serializable {
 	}
 
 	/**
-	 * Returns the liberties of p.
+	 * Returns the liberties of p, in increasing order. The set returned is
+	 * reused by the next call to this method, so callers must not hold on to
+	 * it.
 	 */
 	public ShortSet getLiberties(short p) {
 		assert coords.isOnBoard(p);
 		assert points[p].color != VACANT;
-		return points[points[p].chainId].liberties;
+		final Point root = points[points[p].chainId];
+		libertyList.clear();
+		for (int w = 0; w < root.libertyWords; w++) {
+			long word = liberties[root.libertyOffset + w];
+			while (word != 0) {
+				libertyList.addKnownAbsent((short) (w << 6 | Long
+						.numberOfTrailingZeros(word)));
+				word &= word - 1;
+			}
+		}
+		return libertyList;
+	}
+
+	/**
+	 * Returns the lowest-numbered liberty of p. This is the only liberty if p
+	 * is in atari.
+	 */
+	public short getFirstLiberty(short p) {
+		assert coords.isOnBoard(p);
+		assert points[p].color != VACANT;
+		return points[points[p].chainId].getFirstLiberty();
+	}
+
+	/**
+	 * Returns the number of liberties of p. This is faster than
+	 * getLiberties(p).size().
+	 */
+	public int getLibertyCount(short p) {
+		assert coords.isOnBoard(p);
+		assert points[p].color != VACANT;
+		return points[points[p].chainId].libertyCount;
 	}
 
 	/**
@@ -414,14 +602,14 @@ public final class Board implements Serializable {
 	private boolean isSuicidal(StoneColor color, short p) {
 		friendlyNeighboringChainIds.clear();
 		enemyNeighboringChainIds.clear();
-		lastPlayLiberties.clear();
+		Arrays.fill(lastPlayLiberties, 0L);
 		boolean suicide = true;
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 			final short n = neighbors[i];
 			final Color neighborColor = points[n].color;
 			if (neighborColor == VACANT) { // Vacant point
-				lastPlayLiberties.add(n);
+				lastPlayLiberties[n >>> 6] |= 1L << n;
 				suicide = false;
 			} else if (neighborColor == color) { // Friendly neighbor
 				final short chainId = points[n].chainId;
@@ -489,17 +677,47 @@ public final class Board implements Serializable {
 	 *            the two chains.
 	 */
 	private void mergeChains(short base, short appendage) {
-		points[base].liberties.addAll(points[appendage].liberties);
-		int active = appendage;
+		addLiberties(base, liberties, points[appendage].libertyOffset);
+		short active = appendage;
 		do {
+			if (journaling) {
+				record(CHAIN_ID, active, points[active].chainId);
+			}
 			points[active].chainId = points[base].chainId;
 			active = points[active].chainNextPoint;
 		} while (active != appendage);
+		if (journaling) {
+			record(CHAIN_NEXT, base, points[base].chainNextPoint);
+			record(CHAIN_NEXT, appendage, points[appendage].chainNextPoint);
+		}
 		final short temp = points[base].chainNextPoint;
 		points[base].chainNextPoint = points[appendage].chainNextPoint;
 		points[appendage].chainNextPoint = temp;
 	}
 
+	/**
+	 * Remembers the current position and starts journaling changes, so that
+	 * rollBack() can return to this position. Observers also remember their
+	 * state.
+	 */
+	public void mark() {
+		journaling = true;
+		journalSize = 0;
+		markedColorToPlay = colorToPlay;
+		markedHash = hash;
+		markedKoPoint = koPoint;
+		markedPasses = passes;
+		markedTurn = turn;
+		for (final BoardObserver observer : observers) {
+			observer.mark();
+		}
+	}
+
+	/** Returns true if mark() has been called and not discarded since. */
+	public boolean isMarked() {
+		return journaling;
+	}
+
 	/** Notify the observers about what has changed. */
 	private void notifyObservers(StoneColor color, short p) {
 		for (final BoardObserver observer : observers) {
@@ -509,6 +727,7 @@ public final class Board implements Serializable {
 
 	/** Plays a pass move. */
 	public void pass() {
+		version++;
 		if (koPoint != NO_POINT) {
 			koPoint = NO_POINT;
 		}
@@ -520,6 +739,7 @@ public final class Board implements Serializable {
 
 	/** Places a stone of color at point p. */
 	public void placeInitialStone(StoneColor color, short p) {
+		discardMark();
 		// Initial stones will always be legal, but the legality method
 		// also sets up some fields called by finalizePlay.
 		legality(color, p);
@@ -544,12 +764,16 @@ public final class Board implements Serializable {
 		if (result != OK) {
 			return result;
 		}
+		version++;
 		finalizePlay(colorToPlay, p);
 		colorToPlay = colorToPlay.opposite();
 		passes = 0;
 		turn++;
 		hash = proposedHash;
-		superKoTable.add(hash);
+		final int slot = superKoTable.insert(hash);
+		if (journaling && slot >= 0) {
+			record(SUPERKO_SLOT, NO_POINT, slot);
+		}
 		// To ensure that the board is in a stable state, this must be done last
 		// The color argument is flipped back to the color of the stone played
 		notifyObservers(colorToPlay.opposite(), p);
@@ -575,6 +799,7 @@ public final class Board implements Serializable {
 		if (result != OK) {
 			return result;
 		}
+		version++;
 		finalizePlay(colorToPlay, p);
 		colorToPlay = colorToPlay.opposite();
 		passes = 0;
@@ -585,32 +810,128 @@ public final class Board implements Serializable {
 		return OK;
 	}
 
+	/**
+	 * Records, in the journal, a change to point p whose old value was
+	 * oldValue.
+	 */
+	private void record(int type, short p, int oldValue) {
+		if (journalSize == journal.length) {
+			journal = Arrays.copyOf(journal, journal.length * 2);
+		}
+		journal[journalSize] = (long) type << 48 | (long) p << 32 | oldValue
+				& 0xFFFFFFFFL;
+		journalSize++;
+	}
+
+	/** Removes lib from the liberties of the chain rooted at root. */
+	private void removeLiberty(short root, short lib) {
+		points[root].removeLiberty(lib);
+		if (journaling) {
+			record(LIBERTY_REMOVED, root, lib);
+		}
+	}
+
 	/** Removes the stone at p. */
 	private void removeStone(short p) {
-		points[p].color = VACANT;
+		setColor(p, VACANT);
 		vacantPoints.addKnownAbsent(p);
+		if (journaling) {
+			record(VACANT_ADDED, p, 0);
+		}
 		neighborsOfCapturedStone.clear();
 		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 			final short n = neighbors[i];
-			points[n].neighborCounts -= Point.NEIGHBOR_INCREMENT[colorToPlay
-					.opposite().index()];
+			addToNeighborCounts(n, -Point.NEIGHBOR_INCREMENT[colorToPlay
+					.opposite().index()]);
 			if (points[n].color == BLACK | points[n].color == WHITE) {
 				neighborsOfCapturedStone.addIfNotPresent(points[n].chainId);
 			}
 		}
 		for (int k = 0; k < neighborsOfCapturedStone.size(); k++) {
-			final int c = neighborsOfCapturedStone.get(k);
-			points[c].liberties.addKnownAbsent(p);
+			final short c = neighborsOfCapturedStone.get(k);
+			points[c].addLiberty(p);
+			if (journaling) {
+				record(LIBERTY_ADDED, c, p);
+			}
 		}
 		capturedStones.add(p);
 	}
 
+	/**
+	 * Undoes every change made since mark(), returning this board and its
+	 * observers to the marked position. The board remains marked.
+	 */
+	public void rollBack() {
+		assert journaling;
+		for (int i = journalSize - 1; i >= 0; i--) {
+			final long entry = journal[i];
+			final int type = (int) (entry >>> 48);
+			final short p = (short) (entry >>> 32);
+			final int value = (int) entry;
+			switch (type) {
+			case COLOR:
+				points[p].color = POINT_COLORS[value];
+				break;
+			case CHAIN_ID:
+				points[p].chainId = (short) value;
+				break;
+			case CHAIN_NEXT:
+				points[p].chainNextPoint = (short) value;
+				break;
+			case NEIGHBOR_COUNTS:
+				points[p].neighborCounts = value;
+				break;
+			case LIBERTY_ADDED:
+				points[p].removeLiberty((short) value);
+				break;
+			case LIBERTY_REMOVED:
+				points[p].addLiberty((short) value);
+				break;
+			case VACANT_ADDED:
+				vacantPoints.removeKnownPresent(p);
+				break;
+			case VACANT_REMOVED:
+				vacantPoints.addKnownAbsent(p);
+				break;
+			default: // SUPERKO_SLOT
+				superKoTable.clearSlot(value);
+			}
+		}
+		journalSize = 0;
+		colorToPlay = markedColorToPlay;
+		hash = markedHash;
+		koPoint = markedKoPoint;
+		passes = markedPasses;
+		turn = markedTurn;
+		for (final BoardObserver observer : observers) {
+			observer.rollBack();
+		}
+		version++;
+	}
+
+	/** Adds delta to the neighbor counts of p. */
+	private void addToNeighborCounts(short p, int delta) {
+		if (journaling) {
+			record(NEIGHBOR_COUNTS, p, points[p].neighborCounts);
+		}
+		points[p].neighborCounts += delta;
+	}
+
+	/** Sets the color of p. */
+	private void setColor(short p, Color color) {
+		if (journaling) {
+			record(COLOR, p, points[p].color.index());
+		}
+		points[p].color = color;
+	}
+
 	/**
 	 * Sets the color to play, used with programs like GoGui to set up initial
 	 * stones.
 	 */
 	public void setColorToPlay(StoneColor stoneColor) {
+		version++;
 		colorToPlay = stoneColor;
 	}
 
@@ -620,6 +941,7 @@ public final class Board implements Serializable {
 	 * determine which stones are alive.)
 	 */
 	public void setPasses(short passes) {
+		version++;
 		this.passes = passes;
 	}
 
@@ -673,6 +995,7 @@ public final class Board implements Serializable {
 	}
 
 	public void removeStones(ShortSet ourDead) {
+		discardMark();
 		for(int i = 0; i < ourDead.size(); i++){
 			points[ourDead.get(i)].color = VACANT;
 			vacantPoints.addKnownAbsent(ourDead.get(i));
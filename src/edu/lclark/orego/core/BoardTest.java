@@ -9,11 +9,14 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.HistoryObserver;
 import edu.lclark.orego.feature.NotEyeLike;
 import edu.lclark.orego.feature.StoneCountObserver;
 import edu.lclark.orego.move.Mover;
 import edu.lclark.orego.move.PredicateMover;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortList;
 import edu.lclark.orego.util.ShortSet;
 
 public class BoardTest {
@@ -169,6 +172,27 @@ public class BoardTest {
 		assertEquals(asOneString(after), board.toString());
 	}
 	
+	@Test
+	public void testSharedHistorySuperKo() {
+		String[] before = {
+				".....",
+				".....",
+				".....",
+				"O##..",
+				".O.#.",
+		};
+		board.setUpProblem(before, WHITE);
+		assertEquals(OK, board.play("c1"));
+		Board copy = new Board(5);
+		copy.copyDataSharingHistoryFrom(board);
+		assertEquals(OK, copy.play("a1"));
+		// The position after b1 occurred on the original board
+		assertEquals(KO_VIOLATION, copy.play("b1"));
+		copy.copyDataSharingHistoryFrom(board);
+		assertEquals(OK, copy.play("a1"));
+		assertEquals(KO_VIOLATION, copy.play("b1"));
+	}
+
 	@Test
 	public void testMaxMovesPerGame() {
 		short[] points = coords.getAllPointsOnBoard();
@@ -271,6 +295,28 @@ public class BoardTest {
 		assertEquals(5, board.getLiberties(at("c2")).size());
 		assertEquals(OK, board.play("c3"));
 		assertEquals(9, board.getLiberties(at("c3")).size());
+		assertEquals(9, board.getLibertyCount(at("b3")));
+	}
+
+	@Test
+	public void testLibertiesAfterCapture() {
+		String[] before = {
+				".....",
+				".....",
+				"..#..",
+				".#O#.",
+				".....",
+		};
+		board.setUpProblem(before, BLACK);
+		assertEquals(OK, board.play("c1"));
+		assertEquals(NonStoneColor.VACANT, board.getColorAt(at("c2")));
+		assertEquals(4, board.getLibertyCount(at("b2")));
+		assertEquals(4, board.getLibertyCount(at("d2")));
+		ShortSet liberties = board.getLiberties(at("c1"));
+		assertEquals(3, liberties.size());
+		assertTrue(liberties.contains(at("c2")));
+		assertTrue(liberties.contains(at("b1")));
+		assertTrue(liberties.contains(at("d1")));
 	}
 
 	@Test
@@ -488,4 +534,81 @@ public class BoardTest {
 		assertEquals(hash, board.getFancyHash());
 	}
 
+	/** Asserts that a and b are in exactly the same state. */
+	private void assertSameBoard(Board a, Board b) {
+		assertEquals(a.toString(), b.toString());
+		assertEquals(a.getHash(), b.getHash());
+		assertEquals(a.getFancyHash(), b.getFancyHash());
+		assertEquals(a.getTurn(), b.getTurn());
+		assertEquals(a.getPasses(), b.getPasses());
+		assertEquals(a.getColorToPlay(), b.getColorToPlay());
+		assertEquals(a.getVacantPoints(), b.getVacantPoints());
+		for (short p : coords.getAllPointsOnBoard()) {
+			for (Color c : new Color[] {BLACK, WHITE, NonStoneColor.VACANT}) {
+				assertEquals(a.getNeighborsOfColor(p, c), b.getNeighborsOfColor(p, c));
+			}
+			if (a.getColorAt(p) != NonStoneColor.VACANT) {
+				assertEquals(a.getChainRoot(p), b.getChainRoot(p));
+				assertEquals(a.getChainNextPoint(p), b.getChainNextPoint(p));
+				assertEquals(a.getLiberties(p), b.getLiberties(p));
+			}
+		}
+	}
+
+	@Test
+	public void testRollBack() {
+		board = new Board(19);
+		coords = board.getCoordinateSystem();
+		Board copy = new Board(19);
+		StoneCountObserver counter = new StoneCountObserver(board);
+		StoneCountObserver copyCounter = new StoneCountObserver(copy);
+		AtariObserver atari = new AtariObserver(board);
+		AtariObserver copyAtari = new AtariObserver(copy);
+		HistoryObserver history = new HistoryObserver(board);
+		new HistoryObserver(copy);
+		Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		MersenneTwisterFast random = new MersenneTwisterFast(0);
+		for (int i = 0; i < 60; i++) {
+			mover.selectAndPlayOneMove(random);
+		}
+		copy.copyDataFrom(board);
+		board.mark();
+		ShortList firstRun = new ShortList(coords.getMaxMovesPerGame());
+		for (int run = 0; run < 20; run++) {
+			while (board.getPasses() < 2 && board.getTurn() < coords.getMaxMovesPerGame() - 3) {
+				short p = mover.selectAndPlayOneMove(random);
+				if (run == 0) {
+					firstRun.add(p);
+				}
+			}
+			board.rollBack();
+			assertTrue(board.isMarked());
+			assertSameBoard(copy, board);
+			assertEquals(copyCounter.getCount(BLACK), counter.getCount(BLACK));
+			assertEquals(copyCounter.getCount(WHITE), counter.getCount(WHITE));
+			assertEquals(copyAtari.getChainsInAtari(BLACK), atari.getChainsInAtari(BLACK));
+			assertEquals(copyAtari.getChainsInAtari(WHITE), atari.getChainsInAtari(WHITE));
+			assertEquals(copy.getTurn(), history.size());
+		}
+		// The superko table has forgotten the positions of the runs
+		for (int i = 0; i < firstRun.size(); i++) {
+			assertEquals(copy.play(firstRun.get(i)), board.play(firstRun.get(i)));
+		}
+		assertSameBoard(copy, board);
+	}
+
+	@Test
+	public void testChangesDiscardMark() {
+		board.mark();
+		long version = board.getVersion();
+		board.play("c3");
+		assertTrue(board.getVersion() != version);
+		assertTrue(board.isMarked());
+		board.copyDataFrom(new Board(5));
+		assertFalse(board.isMarked());
+		board.mark();
+		board.clear();
+		assertFalse(board.isMarked());
+	}
+
 }
@@ -4,8 +4,9 @@ import static edu.lclark.orego.core.NonStoneColor.*;
 import static edu.lclark.orego.core.StoneColor.*;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
-import edu.lclark.orego.util.*;
+import edu.lclark.orego.util.BitVector;
 
 /**
  * Class to hold the information on a single point. This is separated out from
@@ -53,8 +54,22 @@ final class Point implements Serializable {
 	/** Index of this point. */
 	final short index;
 
-	/** Liberties of this point if it is the root of a chain. */
-	final ShortSet liberties;
+	/**
+	 * Bit sets of liberties for every point on the board, shared with the
+	 * other Points of the same Board. The liberties of this point, if it is
+	 * the root of a chain, are the libertyWords longs starting at
+	 * libertyOffset. Merging chains ORs these words together.
+	 */
+	final long[] liberties;
+
+	/** Number of bits set in this point's words of liberties. */
+	int libertyCount;
+
+	/** Index in liberties of this point's first word. */
+	final int libertyOffset;
+
+	/** Number of words in each point's liberty bit set. */
+	final int libertyWords;
 
 	/**
 	 * Stores the counts of the black, white, and vacant neighbors, using three
@@ -87,17 +102,58 @@ final class Point implements Serializable {
 			(1 << SHIFT[BLACK.index()]) - (1 << SHIFT[VACANT.index()]),
 			(1 << SHIFT[WHITE.index()]) - (1 << SHIFT[VACANT.index()]) };
 
-	Point(CoordinateSystem coords, short index) {
+	/**
+	 * @param liberties
+	 *            The board's shared liberty array, which must have room for
+	 *            libertyWordsFor(coords) longs for every point before
+	 *            coords.getFirstPointBeyondBoard().
+	 */
+	Point(CoordinateSystem coords, short index, long[] liberties) {
 		this.index = index;
+		libertyWords = libertyWordsFor(coords);
 		if (coords.isOnBoard(index)) {
-			short n = coords.getFirstPointBeyondBoard();
-			liberties = new ShortSet(n);
+			this.liberties = liberties;
+			libertyOffset = index * libertyWords;
 		} else {
-			liberties = null;
+			this.liberties = null;
+			libertyOffset = -1;
 			color = OFF_BOARD;
 		}
 	}
 
+	/** Returns the number of longs in each point's liberty bit set. */
+	static int libertyWordsFor(CoordinateSystem coords) {
+		return BitVector.longsFor(coords.getFirstPointBeyondBoard());
+	}
+
+	/**
+	 * Adds p to the liberties of this chain. Returns false if it was already
+	 * there.
+	 */
+	boolean addLiberty(short p) {
+		final long bit = 1L << p;
+		final int w = libertyOffset + (p >>> 6);
+		if ((liberties[w] & bit) != 0) {
+			return false;
+		}
+		liberties[w] |= bit;
+		libertyCount++;
+		return true;
+	}
+
+	/**
+	 * Adds the liberties in the bit set starting at libs[libsOffset] to this
+	 * chain.
+	 */
+	void addLiberties(long[] libs, int libsOffset) {
+		int count = 0;
+		for (int i = 0; i < libertyWords; i++) {
+			liberties[libertyOffset + i] |= libs[libsOffset + i];
+			count += Long.bitCount(liberties[libertyOffset + i]);
+		}
+		libertyCount = count;
+	}
+
 	/** Adds this stone to chain. */
 	void addToChain(Point chain) {
 		chainNextPoint = chain.chainNextPoint;
@@ -111,10 +167,15 @@ final class Point implements Serializable {
 	 * @param directLiberties
 	 *            The liberties directly around this point.
 	 */
-	void becomeOneStoneChain(ShortSet directLiberties) {
+	void becomeOneStoneChain(long[] directLiberties) {
 		chainId = index;
 		chainNextPoint = index;
-		liberties.copyDataFrom(directLiberties);
+		int count = 0;
+		for (int i = 0; i < libertyWords; i++) {
+			liberties[libertyOffset + i] = directLiberties[i];
+			count += Long.bitCount(directLiberties[i]);
+		}
+		libertyCount = count;
 	}
 
 	/**
@@ -122,18 +183,22 @@ final class Point implements Serializable {
 	 * on-board points.
 	 */
 	void clear() {
-		liberties.clear();
+		Arrays.fill(liberties, libertyOffset, libertyOffset + libertyWords, 0L);
+		libertyCount = 0;
 		color = VACANT;
 		chainId = index;
 		neighborCounts = FOUR_VACANT_NEIGHBORS;
 	}
 
-	/** Copies data from that to this. */
+	/**
+	 * Copies data from that to this, except for the words of the shared
+	 * liberty array, which Board copies all at once.
+	 */
 	void copyDataFrom(Point that) {
 		chainId = that.chainId;
 		chainNextPoint = that.chainNextPoint;
 		color = that.color;
-		liberties.copyDataFrom(that.liberties);
+		libertyCount = that.libertyCount;
 		neighborCounts = that.neighborCounts;
 	}
 
@@ -151,13 +216,35 @@ final class Point implements Serializable {
 				.index()];
 	}
 
+	/**
+	 * Returns the lowest-numbered liberty of this chain, or NO_POINT if there
+	 * are none. Assumes that this point is the root of its chain.
+	 */
+	short getFirstLiberty() {
+		for (int i = 0; i < libertyWords; i++) {
+			final long word = liberties[libertyOffset + i];
+			if (word != 0) {
+				return (short) (i << 6 | Long.numberOfTrailingZeros(word));
+			}
+		}
+		return CoordinateSystem.NO_POINT;
+	}
+
 	/**
 	 * Returns true if this point is in atari. Assumes that this point is the
 	 * root of its chain.
 	 */
 	boolean isInAtari() {
 		assert chainId == index;
-		return liberties.size() == 1;
+		return libertyCount == 1;
+	}
+
+	/** Removes p, which must be present, from the liberties of this chain. */
+	void removeLiberty(short p) {
+		final int w = libertyOffset + (p >>> 6);
+		assert (liberties[w] & 1L << p) != 0;
+		liberties[w] &= ~(1L << p);
+		libertyCount--;
 	}
 
 }
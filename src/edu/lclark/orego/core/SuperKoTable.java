@@ -7,6 +7,12 @@ import java.io.Serializable;
  * table, but without all of the overhead of java.util.HashSet. It only supports
  * insertion, search, and copying. Collisions are resolved by linear probing.
  * The special value EMPTY is always considered to be in the table.
+ * <p>
+ * A table may also have a base: another table whose hashes are considered to
+ * be in this one (see shareDataFrom()). The table's own slots then act as a
+ * small overlay of positions added since. The filled slots are remembered, so
+ * clearing or copying takes time proportional to the number of hashes in the
+ * overlay rather than the capacity of the table.
  */
 @SuppressWarnings("serial")
 public final class SuperKoTable implements Serializable {
@@ -23,25 +29,29 @@ public final class SuperKoTable implements Serializable {
 	 */
 	public static final int IGNORE_SIGN_BIT = 0x7fffffff;
 
+	/**
+	 * Table whose hashes are also considered to be in this one, or null. A
+	 * base never has a base of its own.
+	 */
+	private SuperKoTable base;
+
 	/** The table proper. */
 	private final long[] data;
 
+	/** Slots of data that are filled, in the order they were filled. */
+	private final int[] filledSlots;
+
+	/** Number of valid entries in filledSlots. */
+	private int size;
+
 	public SuperKoTable(CoordinateSystem coords) {
 		data = new long[coords.getMaxMovesPerGame() * 2];
+		filledSlots = new int[data.length];
 	}
 
 	/** Adds key to this table. */
 	public void add(long key) {
-		if (key != EMPTY) {
-			int slot = ((int) key & IGNORE_SIGN_BIT) % data.length;
-			while (data[slot] != EMPTY) {
-				if (data[slot] == key) {
-					return;
-				}
-				slot = (slot + 1) % data.length;
-			}
-			data[slot] = key;
-		}
+		insert(key);
 	}
 
 	/** Returns the number of slots in the table. */
@@ -49,16 +59,40 @@ public final class SuperKoTable implements Serializable {
 		return data.length;
 	}
 
-	/** Removes all elements from this table. */
+	/**
+	 * Empties the given slot. Only safe for the most recently filled slot, so
+	 * slots must be cleared in the reverse of the order they were filled.
+	 *
+	 * @see Board#rollBack()
+	 */
+	void clearSlot(int slot) {
+		assert filledSlots[size - 1] == slot;
+		data[slot] = EMPTY;
+		size--;
+	}
+
+	/** Removes all elements from this table, and forgets any base. */
 	public void clear() {
-		java.util.Arrays.fill(data, EMPTY);
+		for (int i = 0; i < size; i++) {
+			data[filledSlots[i]] = EMPTY;
+		}
+		size = 0;
+		base = null;
 	}
 
-	/** Returns true if key is in this table. */
+	/** Returns true if key is in this table or its base. */
 	public boolean contains(long key) {
 		if (key == EMPTY) {
 			return true;
 		}
+		if (base != null && base.containsOwn(key)) {
+			return true;
+		}
+		return containsOwn(key);
+	}
+
+	/** Returns true if key is in this table's own slots, ignoring any base. */
+	private boolean containsOwn(long key) {
 		int slot = ((int) key & IGNORE_SIGN_BIT) % data.length;
 		while (data[slot] != EMPTY) {
 			if (data[slot] == key) {
@@ -69,12 +103,64 @@ public final class SuperKoTable implements Serializable {
 		return false;
 	}
 
+	/**
+	 * Adds key to this table. Returns the slot where it was stored, or -1 if
+	 * it was already present (or EMPTY).
+	 */
+	int insert(long key) {
+		if (key != EMPTY) {
+			if (base != null && base.containsOwn(key)) {
+				return -1;
+			}
+			int slot = ((int) key & IGNORE_SIGN_BIT) % data.length;
+			while (data[slot] != EMPTY) {
+				if (data[slot] == key) {
+					return -1;
+				}
+				slot = (slot + 1) % data.length;
+			}
+			data[slot] = key;
+			filledSlots[size] = slot;
+			size++;
+			return slot;
+		}
+		return -1;
+	}
+
 	/**
 	 * Makes this into a copy of that, without the overhead of creating a new
-	 * object.
+	 * object. The copy does not depend on that or its base.
 	 */
 	public void copyDataFrom(SuperKoTable that) {
-		System.arraycopy(that.data, 0, data, 0, data.length);
+		clear();
+		if (that.base != null) {
+			insertAllFrom(that.base);
+		}
+		insertAllFrom(that);
+	}
+
+	/** Inserts the hashes in that's own slots, in the order they were added. */
+	private void insertAllFrom(SuperKoTable that) {
+		for (int i = 0; i < that.size; i++) {
+			insert(that.data[that.filledSlots[i]]);
+		}
+	}
+
+	/**
+	 * Makes this table contain the same hashes as that, but instead of copying
+	 * them, uses that (or that's base) as this table's base. Hashes added
+	 * later go only in this table. This takes time proportional to the hashes
+	 * added to that since it was last shared, but the base must not change
+	 * while this table uses it.
+	 */
+	public void shareDataFrom(SuperKoTable that) {
+		clear();
+		if (that.base != null) {
+			base = that.base;
+			insertAllFrom(that);
+		} else {
+			base = that;
+		}
 	}
 
 }
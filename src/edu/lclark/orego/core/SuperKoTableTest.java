@@ -35,6 +35,37 @@ public class SuperKoTableTest {
 		assertTrue(table2.contains(-3));
 	}
 
+	@Test
+	public void testShareDataFrom() {
+		SuperKoTable table2 = new SuperKoTable(CoordinateSystem.forWidth(19));
+		table.add(-3);
+		table2.shareDataFrom(table);
+		assertTrue(table2.contains(-3));
+		table2.add(7);
+		assertTrue(table2.contains(7));
+		assertFalse(table.contains(7));
+		// Sharing again empties the overlay
+		table2.shareDataFrom(table);
+		assertTrue(table2.contains(-3));
+		assertFalse(table2.contains(7));
+		// A copy of a sharing table is independent of the base
+		table2.add(7);
+		SuperKoTable table3 = new SuperKoTable(CoordinateSystem.forWidth(19));
+		table3.copyDataFrom(table2);
+		table.clear();
+		assertTrue(table3.contains(-3));
+		assertTrue(table3.contains(7));
+	}
+
+	@Test
+	public void testClear() {
+		table.add(-3);
+		table.add(5);
+		table.clear();
+		assertFalse(table.contains(-3));
+		assertFalse(table.contains(5));
+	}
+
 	@Test
 	public void testZero() {
 		assertTrue(table.contains(0));
@@ -22,12 +22,20 @@ public final class AtariObserver implements BoardObserver {
 
 	private final CoordinateSystem coords;
 
+	/**
+	 * Chains in atari for each color when mark() was called. These sets are
+	 * small, so they are simply copied.
+	 */
+	private final ShortList[] markedChainsInAtari;
+
 	public AtariObserver(Board board) {
 		this.board = board;
 		coords = board.getCoordinateSystem();
 		board.addObserver(this);
 		chainsInAtari = new ShortSet[] { new ShortSet(coords.getFirstPointBeyondBoard()),
 				new ShortSet(coords.getFirstPointBeyondBoard()) };
+		markedChainsInAtari = new ShortList[] { new ShortList(coords.getArea()),
+				new ShortList(coords.getArea()) };
 	}
 
 	@Override
@@ -48,6 +56,17 @@ public final class AtariObserver implements BoardObserver {
 		return chainsInAtari[color.index()];
 	}
 
+	@Override
+	public void mark() {
+		for (int c = 0; c < 2; c++) {
+			final ShortList marked = markedChainsInAtari[c];
+			marked.clear();
+			for (int i = 0; i < chainsInAtari[c].size(); i++) {
+				marked.add(chainsInAtari[c].get(i));
+			}
+		}
+	}
+
 	/**
 	 * Removes any chains in the atari lists that are either no longer chains or
 	 * no longer in atari.
@@ -57,27 +76,38 @@ public final class AtariObserver implements BoardObserver {
 		final ShortSet chains = chainsInAtari[index];
 		for (int i = 0; i < chains.size(); i++) {
 			final short p = chains.get(i);
-			if (board.getColorAt(p) == VACANT || board.getChainRoot(p) != p || board.getLiberties(p).size() > 1) {
+			if (board.getColorAt(p) == VACANT || board.getChainRoot(p) != p || board.getLibertyCount(p) > 1) {
 				chains.remove(p);
 				i--;
 			}
 		}
 	}
 
+	@Override
+	public void rollBack() {
+		for (int c = 0; c < 2; c++) {
+			final ShortList marked = markedChainsInAtari[c];
+			chainsInAtari[c].clear();
+			for (int i = 0; i < marked.size(); i++) {
+				chainsInAtari[c].addKnownAbsent(marked.get(i));
+			}
+		}
+	}
+
 	@Override
 	public void update(StoneColor color, short location,
 			ShortList capturedStones) {
 		if (location != PASS) {
 			removeInvalidChains(color);
 			removeInvalidChains(color.opposite());
-			if (board.getLiberties(location).size() == 1) {
+			if (board.getLibertyCount(location) == 1) {
 				chainsInAtari[color.index()].add(board.getChainRoot(location));
 			}
 			final short[] neighbors = coords.getNeighbors(location);
 			for (int i = FIRST_ORTHOGONAL_NEIGHBOR; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
 				final short n = neighbors[i];
 				if (board.getColorAt(n) == color.opposite()
-						&& board.getLiberties(n).size() == 1) {
+						&& board.getLibertyCount(n) == 1) {
 					chainsInAtari[color.opposite().index()].add(board
 							.getChainRoot(n));
 				}
@@ -0,0 +1,22 @@
+package edu.lclark.orego.feature;
+
+/**
+ * A Predicate that can report its value at every point at once, as a bit set.
+ * This lets a mover combine filters a word at a time and pick a random
+ * satisfying point without testing points one by one.
+ *
+ * @see edu.lclark.orego.move.BitPredicateMover
+ */
+public interface BitPredicate extends Predicate {
+
+	/**
+	 * Returns the values of this predicate as bits: bit p % 64 of word p / 64
+	 * is at(p), for every vacant point p. Bits for other points are
+	 * unspecified. The array has BitVector.longsFor(getFirstPointBeyondBoard())
+	 * words; it belongs to this predicate and must not be modified.
+	 *
+	 * @see edu.lclark.orego.util.BitVector#longsFor(int)
+	 */
+	public long[] getBits();
+
+}
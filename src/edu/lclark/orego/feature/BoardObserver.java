@@ -22,4 +22,18 @@ public interface BoardObserver extends Serializable {
 	 */
 	public void copyDataFrom(BoardObserver that);
 
+	/**
+	 * Remembers the current state, to be restored by rollBack().
+	 *
+	 * @see edu.lclark.orego.core.Board#mark()
+	 */
+	public void mark();
+
+	/**
+	 * Returns to the state remembered by the last call to mark().
+	 *
+	 * @see edu.lclark.orego.core.Board#rollBack()
+	 */
+	public void rollBack();
+
 }
@@ -30,7 +30,7 @@ public final class CaptureSuggester implements Suggester {
 		final ShortSet chainsInAtari = atari.getChainsInAtari(board.getColorToPlay()
 				.opposite());
 		for (int i = 0; i < chainsInAtari.size(); i++) {
-			movesToCapture.add(board.getLiberties(chainsInAtari.get(i)).get(0));
+			movesToCapture.add(board.getFirstLiberty(chainsInAtari.get(i)));
 		}
 		return movesToCapture;
 	}
@@ -3,6 +3,7 @@ package edu.lclark.orego.feature;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
 import static edu.lclark.orego.core.StoneColor.*;
@@ -45,4 +46,26 @@ public class ConjunctionTest {
 		assertTrue(conjunction.at(at("d3")));
 	}
 
+	@Test
+	public void testGetBits() {
+		String[] before = {
+				"......#",
+				".....#.",
+				"..#...#",
+				".#.#...",
+				"..#....",
+				".......",
+				".......",
+		};
+		board.setUpProblem(before, BLACK);
+		final long[] bits = conjunction.getBits();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (board.getColorAt(p) == VACANT) {
+				assertEquals(conjunction.at(p), (bits[p / 64] & 1L << p % 64) != 0);
+			}
+		}
+		assertFalse((bits[at("c4") / 64] & 1L << at("c4") % 64) != 0);
+		assertTrue((bits[at("d3") / 64] & 1L << at("d3") % 64) != 0);
+	}
+
 }
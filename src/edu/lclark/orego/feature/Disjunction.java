@@ -1,13 +1,19 @@
 package edu.lclark.orego.feature;
 
-/** True if at least one of the features provided to the constructor is true. */
+/**
+ * True if at least one of the features provided to the constructor is true.
+ * getBits() may only be called if both features are BitPredicates.
+ */
 @SuppressWarnings("serial")
-public final class Disjunction implements Predicate {
+public final class Disjunction implements BitPredicate {
 
 	private final Predicate a;
 
 	private final Predicate b;
 
+	/** Returned by getBits(); created on the first call. */
+	private long[] bits;
+
 	public Disjunction(Predicate a, Predicate b) {
 		this.a = a;
 		this.b = b;
@@ -18,4 +24,17 @@ public final class Disjunction implements Predicate {
 		return a.at(p) || b.at(p);
 	}
 
+	@Override
+	public long[] getBits() {
+		final long[] x = ((BitPredicate) a).getBits();
+		final long[] y = ((BitPredicate) b).getBits();
+		if (bits == null) {
+			bits = new long[x.length];
+		}
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = x[i] | y[i];
+		}
+		return bits;
+	}
+
 }
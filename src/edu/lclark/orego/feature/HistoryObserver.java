@@ -18,6 +18,9 @@ public final class HistoryObserver implements BoardObserver {
 	/** The sequence of moves. */
 	private final ShortList history;
 
+	/** Number of moves in history when mark() was called. */
+	private int markedSize;
+
 	public HistoryObserver(Board board) {
 		this.board = board;
 		final CoordinateSystem coords = board.getCoordinateSystem();
@@ -36,6 +39,19 @@ public final class HistoryObserver implements BoardObserver {
 		history.copyDataFrom(original.history);
 	}
 
+	/**
+	 * Replaces the remembered moves with those in moves, without touching the
+	 * board. Used when tree updates are replayed on another thread.
+	 */
+	public void copyMovesFrom(ShortList moves) {
+		history.copyDataFrom(moves);
+	}
+
+	/** Copies the remembered moves into moves. */
+	public void copyMovesTo(ShortList moves) {
+		moves.copyDataFrom(history);
+	}
+
 	/** Returns the move played at time t. If t < 0, returns NO_POINT. */
 	public short get(int t) {
 		if (t < 0) {
@@ -44,6 +60,16 @@ public final class HistoryObserver implements BoardObserver {
 		return history.get(t);
 	}
 
+	@Override
+	public void mark() {
+		markedSize = history.size();
+	}
+
+	@Override
+	public void rollBack() {
+		history.truncate(markedSize);
+	}
+
 	public int size() {
 		return history.size();
 	}
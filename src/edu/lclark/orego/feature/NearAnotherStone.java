@@ -1,13 +1,29 @@
 package edu.lclark.orego.feature;
 
 import static edu.lclark.orego.core.CoordinateSystem.MAX_POSSIBLE_BOARD_WIDTH;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static java.util.Arrays.fill;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.BitVector;
+import edu.lclark.orego.util.ShortList;
 
-/** True if p is "near" another stone, i.e., within a large knight's move. */
+/**
+ * True if p is "near" another stone, i.e., within a large knight's move.
+ * <p>
+ * If constructed as incremental, this is also a BoardObserver that keeps the
+ * bits returned by getBits() up to date, so that at() and getBits() need not
+ * examine the board. Otherwise getBits() computes the bits on each call.
+ */
 @SuppressWarnings("serial")
-public final class NearAnotherStone implements Predicate {
+public final class NearAnotherStone implements BitPredicate, BoardObserver {
+
+	/**
+	 * Values of neighborhoodBits for each board width.
+	 */
+	private static final long[][][] NEIGHBORHOOD_BITS = new long[MAX_POSSIBLE_BOARD_WIDTH + 1][][];
 
 	/**
 	 * Values of neighborhoods for each board width.
@@ -44,17 +60,50 @@ public final class NearAnotherStone implements Predicate {
 		return java.util.Arrays.copyOf(result, count);
 	}
 
+	/** Bit p is true if there is a stone near p. */
+	private final long[] bits;
+
 	private final Board board;
 
+	private final CoordinateSystem coords;
+
+	/** True if bits are updated as moves are played. */
+	private final boolean incremental;
+
+	/** @see #bits */
+	private final long[] markedBits;
+
+	/** @see #occupied */
+	private final long[] markedOccupied;
+
+	/**
+	 * The same neighborhoods as bit sets, so that placing a stone can update
+	 * bits a word at a time. Null unless incremental.
+	 */
+	private final long[][] neighborhoodBits;
+
 	/**
 	 * Large-knight neighborhoods around points. First index is point around
 	 * which neighborhood is defined.
 	 */
 	private final short[][] neighborhoods;
 
+	/** Bit p is true if there is a stone at p. Null unless incremental. */
+	private final long[] occupied;
+
 	public NearAnotherStone(Board board) {
+		this(board, false);
+	}
+
+	/**
+	 * @param incremental
+	 *            If true, this is added as an observer of board and the bits
+	 *            are updated after each move.
+	 */
+	public NearAnotherStone(Board board, boolean incremental) {
 		this.board = board;
-		final CoordinateSystem coords = board.getCoordinateSystem();
+		this.incremental = incremental;
+		coords = board.getCoordinateSystem();
 		final int width = coords.getWidth();
 		if (NEIGHBORHOODS[width] == null) {
 			final short[] pointsOnBoard = coords.getAllPointsOnBoard();
@@ -64,10 +113,42 @@ public final class NearAnotherStone implements Predicate {
 			}
 		}
 		neighborhoods = NEIGHBORHOODS[width];
+		bits = new long[BitVector.longsFor(coords.getFirstPointBeyondBoard())];
+		if (incremental) {
+			if (NEIGHBORHOOD_BITS[width] == null) {
+				NEIGHBORHOOD_BITS[width] = new long[coords.getFirstPointBeyondBoard()][];
+				for (final short p : coords.getAllPointsOnBoard()) {
+					final long[] words = new long[bits.length];
+					for (final short q : neighborhoods[p]) {
+						words[q / 64] |= 1L << q % 64;
+					}
+					NEIGHBORHOOD_BITS[width][p] = words;
+				}
+			}
+			neighborhoodBits = NEIGHBORHOOD_BITS[width];
+			markedBits = new long[bits.length];
+			occupied = new long[bits.length];
+			markedOccupied = new long[bits.length];
+			board.addObserver(this);
+			clear();
+		} else {
+			neighborhoodBits = null;
+			markedBits = null;
+			occupied = null;
+			markedOccupied = null;
+		}
 	}
 
 	@Override
 	public boolean at(short p) {
+		if (incremental) {
+			return (bits[p / 64] & 1L << p % 64) != 0;
+		}
+		return isNearStone(p);
+	}
+
+	/** Examines the board to determine whether p is near another stone. */
+	private boolean isNearStone(short p) {
 		for (final short q : neighborhoods[p]) {
 			if (board.getColorAt(q) != VACANT) {
 				return true;
@@ -76,4 +157,78 @@ public final class NearAnotherStone implements Predicate {
 		return false;
 	}
 
+	@Override
+	public void clear() {
+		fill(bits, 0L);
+		fill(occupied, 0L);
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final NearAnotherStone original = (NearAnotherStone) that;
+		System.arraycopy(original.bits, 0, bits, 0, bits.length);
+		System.arraycopy(original.occupied, 0, occupied, 0, occupied.length);
+	}
+
+	@Override
+	public long[] getBits() {
+		if (!incremental) {
+			for (final short p : coords.getAllPointsOnBoard()) {
+				if (isNearStone(p)) {
+					bits[p / 64] |= 1L << p % 64;
+				} else {
+					bits[p / 64] &= ~(1L << p % 64);
+				}
+			}
+		}
+		return bits;
+	}
+
+	@Override
+	public void mark() {
+		System.arraycopy(bits, 0, markedBits, 0, bits.length);
+		System.arraycopy(occupied, 0, markedOccupied, 0, occupied.length);
+	}
+
+	/** Returns true if some point in words is occupied. */
+	private boolean overlapsOccupied(long[] words) {
+		for (int i = 0; i < words.length; i++) {
+			if ((words[i] & occupied[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void rollBack() {
+		System.arraycopy(markedBits, 0, bits, 0, bits.length);
+		System.arraycopy(markedOccupied, 0, occupied, 0, occupied.length);
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		occupied[location / 64] |= 1L << location % 64;
+		final long[] near = neighborhoodBits[location];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] |= near[i];
+		}
+		for (int i = 0; i < capturedStones.size(); i++) {
+			final short p = capturedStones.get(i);
+			occupied[p / 64] &= ~(1L << p % 64);
+		}
+		// Points near captured stones may no longer be near any stone
+		for (int i = 0; i < capturedStones.size(); i++) {
+			for (final short q : neighborhoods[capturedStones.get(i)]) {
+				if (!overlapsOccupied(neighborhoodBits[q])) {
+					bits[q / 64] &= ~(1L << q % 64);
+				}
+			}
+		}
+	}
+
 }
@@ -5,6 +5,9 @@ import static org.junit.Assert.*;
 
 import org.junit.Before;
 import org.junit.Test;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.move.PredicateMover;
+import edu.lclark.orego.move.Mover;
 
 import edu.lclark.orego.core.Board;
 
@@ -59,4 +62,38 @@ public class NearAnotherStoneTest {
 		assertFalse(nearAnotherStone.at(at("a4")));
 	}
 
+	@Test
+	public void testIncremental() {
+		board = new Board(9);
+		nearAnotherStone = new NearAnotherStone(board);
+		final NearAnotherStone incremental = new NearAnotherStone(board, true);
+		final Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 10; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random);
+				final long[] bits = incremental.getBits();
+				for (final short p : board.getCoordinateSystem().getAllPointsOnBoard()) {
+					final boolean expected = nearAnotherStone.at(p);
+					assertEquals(expected, incremental.at(p));
+					assertEquals(expected, (bits[p / 64] & 1L << p % 64) != 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalRollBack() {
+		board = new Board(9);
+		nearAnotherStone = new NearAnotherStone(board, true);
+		board.play("e5");
+		board.mark();
+		board.play("a1");
+		assertTrue(nearAnotherStone.at(at("b3")));
+		board.rollBack();
+		assertFalse(nearAnotherStone.at(at("b3")));
+		assertTrue(nearAnotherStone.at(at("e7")));
+	}
+
 }
@@ -2,31 +2,62 @@ package edu.lclark.orego.feature;
 
 import static edu.lclark.orego.core.CoordinateSystem.FIRST_DIAGONAL_NEIGHBOR;
 import static edu.lclark.orego.core.CoordinateSystem.LAST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.BitVector;
+import edu.lclark.orego.util.ShortList;
+import edu.lclark.orego.util.ShortSet;
 
 /**
  * True unless p is "like" an eye for the color to play, that is, is surrounded
  * by friendly stones and having no more than one (zero at the board edge)
  * diagonally adjacent enemy stones. It is almost always a bad idea to play in
  * such a point. The point p is assumed to be vacant.
+ * <p>
+ * If constructed as incremental, this is also a BoardObserver that keeps the
+ * bits returned by getBits() up to date for both colors. Otherwise getBits()
+ * computes them on each call.
  */
 @SuppressWarnings("serial")
-public final class NotEyeLike implements Predicate {
+public final class NotEyeLike implements BitPredicate, BoardObserver {
+
+	/** Bits for black and white to play. */
+	private final long[][] bits;
 
 	private final Board board;
 
+	private final CoordinateSystem coords;
+
 	/**
 	 * Number of effective diagonal neighbors at each point due to being on the
 	 * edge. (This is 1 at an edge, 0 elsewhere.)
 	 */
 	private final int[] edgeEnemies;
 
+	/** True if bits are updated as moves are played. */
+	private final boolean incremental;
+
+	/** @see #bits */
+	private final long[][] markedBits;
+
 	public NotEyeLike(Board board) {
+		this(board, false);
+	}
+
+	/**
+	 * @param incremental
+	 *            If true, this is added as an observer of board and the bits
+	 *            are updated after each move.
+	 */
+	public NotEyeLike(Board board, boolean incremental) {
 		this.board = board;
-		final CoordinateSystem coords = board.getCoordinateSystem();
+		this.incremental = incremental;
+		coords = board.getCoordinateSystem();
 		edgeEnemies = new int[coords.getFirstPointBeyondBoard()];
 		for (final short p : coords.getAllPointsOnBoard()) {
 			edgeEnemies[p] = 0;
@@ -37,18 +68,32 @@ public final class NotEyeLike implements Predicate {
 				}
 			}
 		}
+		final int words = BitVector.longsFor(coords.getFirstPointBeyondBoard());
+		bits = new long[2][words];
+		markedBits = new long[2][words];
+		if (incremental) {
+			board.addObserver(this);
+			clear();
+		}
 	}
 
 	@Override
 	public boolean at(short p) {
 		assert board.getColorAt(p) == VACANT;
-		final StoneColor color = board.getColorToPlay();
+		if (incremental) {
+			return (bits[board.getColorToPlay().index()][p / 64] & 1L << p % 64) != 0;
+		}
+		return at(p, board.getColorToPlay());
+	}
+
+	/** Returns true if p is not eye-like for color. */
+	private boolean at(short p, StoneColor color) {
 		if (!board.hasMaxNeighborsForColor(color, p)) {
 			return true;
 		}
 		int count = edgeEnemies[p];
 		final StoneColor enemy = color.opposite();
-		final short[] neighbors = board.getCoordinateSystem().getNeighbors(p);
+		final short[] neighbors = coords.getNeighbors(p);
 		for (int i = FIRST_DIAGONAL_NEIGHBOR; i <= LAST_DIAGONAL_NEIGHBOR; i++) {
 			if (board.getColorAt(neighbors[i]) == enemy) {
 				count++;
@@ -60,4 +105,91 @@ public final class NotEyeLike implements Predicate {
 		return false;
 	}
 
+	@Override
+	public void clear() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			recompute(p);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final NotEyeLike original = (NotEyeLike) that;
+		for (int i = 0; i < 2; i++) {
+			System.arraycopy(original.bits[i], 0, bits[i], 0, bits[i].length);
+		}
+	}
+
+	@Override
+	public long[] getBits() {
+		final StoneColor color = board.getColorToPlay();
+		if (!incremental) {
+			final ShortSet vacantPoints = board.getVacantPoints();
+			for (int i = 0; i < vacantPoints.size(); i++) {
+				setBit(vacantPoints.get(i), color);
+			}
+		}
+		return bits[color.index()];
+	}
+
+	@Override
+	public void mark() {
+		for (int i = 0; i < 2; i++) {
+			System.arraycopy(bits[i], 0, markedBits[i], 0, bits[i].length);
+		}
+	}
+
+	/** Recomputes the bits for p, for both colors. */
+	private void recompute(short p) {
+		if (board.getColorAt(p) == VACANT) {
+			setBit(p, BLACK);
+			setBit(p, WHITE);
+		} else {
+			bits[BLACK.index()][p / 64] &= ~(1L << p % 64);
+			bits[WHITE.index()][p / 64] &= ~(1L << p % 64);
+		}
+	}
+
+	/**
+	 * Recomputes the bits for p and its vacant neighbors. (The bits for
+	 * occupied points were cleared when they became occupied.)
+	 */
+	private void recomputeAround(short p) {
+		recompute(p);
+		for (final short n : coords.getNeighbors(p)) {
+			if (board.getColorAt(n) == VACANT) {
+				setBit(n, BLACK);
+				setBit(n, WHITE);
+			}
+		}
+	}
+
+	@Override
+	public void rollBack() {
+		for (int i = 0; i < 2; i++) {
+			System.arraycopy(markedBits[i], 0, bits[i], 0, bits[i].length);
+		}
+	}
+
+	/** Sets the bit for p, if color were to play, to at(p, color). */
+	private void setBit(short p, StoneColor color) {
+		if (at(p, color)) {
+			bits[color.index()][p / 64] |= 1L << p % 64;
+		} else {
+			bits[color.index()][p / 64] &= ~(1L << p % 64);
+		}
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location == PASS) {
+			return;
+		}
+		recomputeAround(location);
+		for (int i = 0; i < capturedStones.size(); i++) {
+			recomputeAround(capturedStones.get(i));
+		}
+	}
+
 }
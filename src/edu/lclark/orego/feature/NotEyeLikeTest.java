@@ -3,6 +3,10 @@ package edu.lclark.orego.feature;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
+import edu.lclark.orego.util.ShortSet;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.move.PredicateMover;
+import edu.lclark.orego.move.Mover;
 import edu.lclark.orego.core.Board;
 import static edu.lclark.orego.core.StoneColor.*;
 
@@ -67,5 +71,28 @@ public class NotEyeLikeTest {
 		assertTrue(notEyeLike.at(at("d3")));
 		assertTrue(notEyeLike.at(at("c2")));
 	}
-	
+
+	@Test
+	public void testIncrementalBits() {
+		board = new Board(9);
+		notEyeLike = new NotEyeLike(board);
+		final NotEyeLike incremental = new NotEyeLike(board, true);
+		final Mover mover = new PredicateMover(board, notEyeLike);
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 10; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random);
+				final long[] bits = incremental.getBits();
+				final ShortSet vacantPoints = board.getVacantPoints();
+				for (int j = 0; j < vacantPoints.size(); j++) {
+					final short p = vacantPoints.get(j);
+					final boolean expected = notEyeLike.at(p);
+					assertEquals(expected, incremental.at(p));
+					assertEquals(expected, (bits[p / 64] & 1L << p % 64) != 0);
+				}
+			}
+		}
+	}
+
 }
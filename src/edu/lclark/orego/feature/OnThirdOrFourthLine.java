@@ -3,10 +3,11 @@ package edu.lclark.orego.feature;
 import static edu.lclark.orego.core.CoordinateSystem.MAX_POSSIBLE_BOARD_WIDTH;
 import static java.lang.Math.min;
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.BitVector;
 
 /** True if p is on the third or fourth line. */
 @SuppressWarnings("serial")
-public final class OnThirdOrFourthLine implements Predicate {
+public final class OnThirdOrFourthLine implements BitPredicate {
 
 	/** Instances for various board widths. */
 	private static final OnThirdOrFourthLine[] INSTANCES = new OnThirdOrFourthLine[MAX_POSSIBLE_BOARD_WIDTH + 1];
@@ -34,15 +35,20 @@ public final class OnThirdOrFourthLine implements Predicate {
 	/** True for points on third or fourth line. */
 	private final boolean[] bits;
 
+	/** The same values as bits, packed into words for getBits(). */
+	private final long[] words;
+
 	private final int width;
 
 	private OnThirdOrFourthLine(CoordinateSystem coords) {
 		width = coords.getWidth();
 		bits = new boolean[coords.getFirstPointBeyondBoard()];
+		words = new long[BitVector.longsFor(bits.length)];
 		for (final short p : coords.getAllPointsOnBoard()) {
 			final int line = line(p, coords);
 			if (line == 3 | line == 4) {
 				bits[p] = true;
+				words[p / 64] |= 1L << p % 64;
 			}
 		}
 	}
@@ -52,6 +58,11 @@ public final class OnThirdOrFourthLine implements Predicate {
 		return bits[p];
 	}
 
+	@Override
+	public long[] getBits() {
+		return words;
+	}
+
 	/**
 	 * Used so that serialization, as used in CopiableStructure, does not create
 	 * redundant OnThirdOrFourthLine objects.
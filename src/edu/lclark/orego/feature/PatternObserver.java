@@ -0,0 +1,128 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.NonStoneColor.OFF_BOARD;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Keeps track of the 3x3 pattern around each point, so that suggesters can
+ * look patterns up without examining the board. A pattern is a 16-bit char
+ * with two bits for each of the eight neighbors, in the order of
+ * CoordinateSystem.getNeighbors(). Internally the bits hold Color.index()
+ * values; getPattern() translates them relative to the color to play.
+ *
+ * @see PatternSuggester
+ */
+@SuppressWarnings("serial")
+public final class PatternObserver implements BoardObserver {
+
+	/**
+	 * Returns the index, in the neighbors of n, of the point whose neighbor n
+	 * is at index i.
+	 */
+	private static int opposite(int i) {
+		return i < 4 ? 3 - i : 11 - i;
+	}
+
+	private final Board board;
+
+	private final CoordinateSystem coords;
+
+	/** Patterns of the points of an empty board. */
+	private final char[] emptyPatterns;
+
+	/** Patterns when mark() was called. */
+	private final char[] markedPatterns;
+
+	/** Pattern around each point, using absolute colors. */
+	private final char[] patterns;
+
+	public PatternObserver(Board board) {
+		this.board = board;
+		coords = board.getCoordinateSystem();
+		final int n = coords.getFirstPointBeyondExtendedBoard();
+		patterns = new char[n];
+		markedPatterns = new char[n];
+		emptyPatterns = new char[n];
+		for (final short p : coords.getAllPointsOnBoard()) {
+			final short[] neighbors = coords.getNeighbors(p);
+			for (int i = 0; i < neighbors.length; i++) {
+				final int color = coords.isOnBoard(neighbors[i]) ? VACANT
+						.index() : OFF_BOARD.index();
+				emptyPatterns[p] |= color << i * 2;
+			}
+		}
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		System.arraycopy(emptyPatterns, 0, patterns, 0, patterns.length);
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final PatternObserver original = (PatternObserver) that;
+		System.arraycopy(original.patterns, 0, patterns, 0, patterns.length);
+	}
+
+	/**
+	 * Returns the pattern around p, with each neighbor coded as in
+	 * PatternSuggester: 1 for a stone of the color to play, 0 for an enemy
+	 * stone, and Color.index() for a vacant or off-board point.
+	 */
+	public char getPattern(short p) {
+		return getPattern(p, board.getColorToPlay());
+	}
+
+	/**
+	 * Returns the pattern around p as it would be coded if color toPlay were
+	 * to play.
+	 */
+	public char getPattern(short p, StoneColor toPlay) {
+		final char pattern = patterns[p];
+		if (toPlay == BLACK) {
+			// Swap the codes for black (0) and white (1)
+			return (char) (pattern ^ ~pattern >>> 1 & 0x5555);
+		}
+		return pattern;
+	}
+
+	@Override
+	public void mark() {
+		System.arraycopy(patterns, 0, markedPatterns, 0, patterns.length);
+	}
+
+	@Override
+	public void rollBack() {
+		System.arraycopy(markedPatterns, 0, patterns, 0, patterns.length);
+	}
+
+	/** Records that p now has the color with index color. */
+	private void setColor(short p, int color) {
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = 0; i < neighbors.length; i++) {
+			final short n = neighbors[i];
+			final int shift = opposite(i) * 2;
+			patterns[n] = (char) (patterns[n] & ~(3 << shift) | color << shift);
+		}
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location != PASS) {
+			setColor(location, color.index());
+			for (int i = 0; i < capturedStones.size(); i++) {
+				setColor(capturedStones.get(i), VACANT.index());
+			}
+		}
+	}
+
+}
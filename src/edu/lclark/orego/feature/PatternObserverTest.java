@@ -0,0 +1,115 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.PredicateMover;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class PatternObserverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private PatternObserver observer;
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		observer = new PatternObserver(board);
+	}
+
+	/** Computes the pattern around p by examining the board. */
+	private char calculatePattern(short p) {
+		char pattern = 0;
+		final short[] neighbors = coords.getNeighbors(p);
+		for (int i = 0; i < neighbors.length; i++) {
+			final Color color = board.getColorAt(neighbors[i]);
+			if (color == board.getColorToPlay()) {
+				pattern |= 1 << i * 2;
+			} else if (color != board.getColorToPlay().opposite()) {
+				pattern |= color.index() << i * 2;
+			}
+		}
+		return pattern;
+	}
+
+	private void assertPatternsCorrect() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(coords.toString(p), calculatePattern(p),
+					observer.getPattern(p));
+		}
+	}
+
+	@Test
+	public void testEmptyBoard() {
+		assertPatternsCorrect();
+		board.pass();
+		assertPatternsCorrect();
+	}
+
+	@Test
+	public void testCapture() {
+		String[] diagram = {
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				"#O.......",
+				"O........",
+		};
+		board.setUpProblem(diagram, BLACK);
+		assertPatternsCorrect();
+		board.play("b1");
+		assertEquals(VACANT, board.getColorAt(coords.at("a1")));
+		assertPatternsCorrect();
+		board.play("c2");
+		assertPatternsCorrect();
+	}
+
+	@Test
+	public void testRandomPlayouts() {
+		final Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 20; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random);
+				assertPatternsCorrect();
+			}
+		}
+	}
+
+	@Test
+	public void testRollBackAndCopy() {
+		board.play("e5");
+		board.mark();
+		board.play("d5");
+		board.play("f5");
+		board.rollBack();
+		assertPatternsCorrect();
+		final Board copy = new Board(9);
+		final PatternObserver copyObserver = new PatternObserver(copy);
+		copy.copyDataFrom(board);
+		copy.setColorToPlay(WHITE);
+		board.setColorToPlay(WHITE);
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(observer.getPattern(p), copyObserver.getPattern(p));
+		}
+	}
+
+}
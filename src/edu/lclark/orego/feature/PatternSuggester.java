@@ -7,7 +7,6 @@ import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 
 import edu.lclark.orego.core.Board;
-import edu.lclark.orego.core.Color;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ShortSet;
@@ -23,29 +22,55 @@ public final class PatternSuggester implements Suggester {
 	/** Patterns are considered good if its "win rate" is at least this high. */
 	private static final float THRESHOLD = 0.8f;
 
+	/** Shared by all instances; loaded on first use. */
+	private static BitVector goodPatternsFromFile;
+
 	private final Board board;
 
 	private final CoordinateSystem coords;
 
-	private BitVector goodPatterns;
+	private final BitVector goodPatterns;
 
 	private final HistoryObserver history;
 
 	private final ShortSet moves;
 
+	/** Keeps the pattern around each point up to date. */
+	private final PatternObserver patterns;
+
+	/** Creates a PatternObserver on board for this suggester's use. */
 	public PatternSuggester(Board board, HistoryObserver history) {
+		this(board, history, new PatternObserver(board));
+	}
+
+	public PatternSuggester(Board board, HistoryObserver history,
+			PatternObserver patterns) {
 		this.board = board;
+		this.patterns = patterns;
 		coords = board.getCoordinateSystem();
 		this.history = history;
 		moves = new ShortSet(coords.getFirstPointBeyondBoard());
+		goodPatterns = loadGoodPatterns();
+	}
+
+	/**
+	 * Returns the set of 3x3 patterns (as coded by PatternObserver.getPattern())
+	 * considered good. The pattern file is only read on the first call; the
+	 * returned set is shared and must not be modified.
+	 */
+	public static synchronized BitVector loadGoodPatterns() {
+		if (goodPatternsFromFile != null) {
+			return goodPatternsFromFile;
+		}
+		BitVector result = null;
 		try (ObjectInputStream objectInputStream = new ObjectInputStream(
 				new FileInputStream(OREGO_ROOT
 						+ "patterns/patterns3x3.data"));) {
 			final int[] fileRuns = (int[]) objectInputStream.readObject();
 			final int[] fileWins = (int[]) objectInputStream.readObject();
-			goodPatterns = new BitVector(fileRuns.length);
+			result = new BitVector(fileRuns.length);
 			for (int i = 0; i < fileRuns.length; i++) {
-				goodPatterns.set(i,
+				result.set(i,
 						(float) fileWins[i] / (float) fileRuns[i] > THRESHOLD);
 			}
 			objectInputStream.close();
@@ -53,23 +78,8 @@ public final class PatternSuggester implements Suggester {
 			e.printStackTrace();
 			System.exit(1);
 		}
-	}
-
-	/** Returns a 16-bit char indicating the colors of the 8 points around p. */
-	private char calculatePattern(short p) {
-		char pattern = 0;
-		final short[] neighbors = coords.getNeighbors(p);
-		for (int i = 0; i < neighbors.length; i++) {
-			final Color color = board.getColorAt(neighbors[i]);
-			if (color == board.getColorToPlay()) {
-				// Friendly stone at this neighbor
-				pattern |= 1 << i * 2;
-			} else if (color != board.getColorToPlay().opposite()) {
-				// neighbor is vacant or off board
-				pattern |= color.index() << i * 2;
-			} // else do nothing, no need to OR 0 with 0
-		}
-		return pattern;
+		goodPatternsFromFile = result;
+		return result;
 	}
 
 	@Override
@@ -86,8 +96,7 @@ public final class PatternSuggester implements Suggester {
 		final short[] neighbors = coords.getNeighbors(p);
 		for (final short n : neighbors) {
 			if (board.getColorAt(n) == VACANT) {
-				final char pattern = calculatePattern(n);
-				if (goodPatterns.get(pattern)) {
+				if (goodPatterns.get(patterns.getPattern(n))) {
 					moves.add(n);
 				}
 			}
@@ -0,0 +1,199 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.NonStoneColor.OFF_BOARD;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.patterns.PatternFinder.OFFSETS;
+import static edu.lclark.orego.patterns.PatternFinder.POINT_HASHES;
+
+import java.util.Arrays;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Keeps the 24-point shape hash around each point up to date, so that
+ * ShapeSuggester can look shapes up without examining the board. The hashes
+ * are the same as those computed by PatternFinder.getHash(board, p, 24). One
+ * set of hashes is kept for each color to play, so changing the color to play
+ * costs nothing.
+ *
+ * @see edu.lclark.orego.patterns.PatternFinder
+ */
+@SuppressWarnings("serial")
+public final class ShapeObserver implements BoardObserver {
+
+	/** Number of points, other than the center, in a shape. */
+	private static final int SHAPE_SIZE = 24;
+
+	/**
+	 * Returns the amount to XOR into a shape hash when position i of the shape
+	 * changes between vacant and a stone of color stone, with color toPlay to
+	 * play.
+	 */
+	private static long delta(int toPlay, int stone, int i) {
+		final int code = stone == toPlay ? 1 : 0;
+		return POINT_HASHES[VACANT.index()][i] ^ POINT_HASHES[code][i];
+	}
+
+	private final Board board;
+
+	/**
+	 * deltas[t][s][i] is the amount to XOR into a hash when position i changes
+	 * between vacant and a stone of color index s, with color index t to play.
+	 */
+	private final long[][][] deltas;
+
+	/** Hashes of the points of an empty board. */
+	private final long[][] emptyHashes;
+
+	/**
+	 * hashes[t][p] is the hash of the shape around p when the color with index
+	 * t is to play.
+	 */
+	private final long[][] hashes;
+
+	/** Hashes when mark() was called. */
+	private final long[][] markedHashes;
+
+	/**
+	 * shapeIndices[q][j] is the position of q in the shape around
+	 * shapePoints[q][j].
+	 */
+	private final byte[][] shapeIndices;
+
+	/** shapePoints[q] holds the points whose shapes include q. */
+	private final short[][] shapePoints;
+
+	public ShapeObserver(Board board) {
+		this.board = board;
+		final CoordinateSystem coords = board.getCoordinateSystem();
+		final int n = coords.getFirstPointBeyondBoard();
+		final int width = coords.getWidth();
+		hashes = new long[2][n];
+		markedHashes = new long[2][n];
+		emptyHashes = new long[2][n];
+		deltas = new long[2][2][SHAPE_SIZE];
+		for (int t = 0; t < 2; t++) {
+			for (int s = 0; s < 2; s++) {
+				for (int i = 0; i < SHAPE_SIZE; i++) {
+					deltas[t][s][i] = delta(t, s, i);
+				}
+			}
+		}
+		shapePoints = new short[n][];
+		shapeIndices = new byte[n][];
+		final short[] points = new short[SHAPE_SIZE];
+		final byte[] indices = new byte[SHAPE_SIZE];
+		for (final short q : coords.getAllPointsOnBoard()) {
+			int count = 0;
+			long hash = 0L;
+			for (int i = 0; i < SHAPE_SIZE; i++) {
+				// q is at position i in the shape around p
+				final int r = coords.row(q) - OFFSETS[i][0];
+				final int c = coords.column(q) - OFFSETS[i][1];
+				if (r >= 0 && r < width && c >= 0 && c < width) {
+					points[count] = coords.at(r, c);
+					indices[count] = (byte) i;
+					count++;
+				}
+				// Meanwhile, compute the hash around q on an empty board
+				final int r2 = coords.row(q) + OFFSETS[i][0];
+				final int c2 = coords.column(q) + OFFSETS[i][1];
+				if (r2 >= 0 && r2 < width && c2 >= 0 && c2 < width) {
+					hash ^= POINT_HASHES[VACANT.index()][i];
+				} else {
+					hash ^= POINT_HASHES[OFF_BOARD.index()][i];
+				}
+			}
+			shapePoints[q] = Arrays.copyOf(points, count);
+			shapeIndices[q] = Arrays.copyOf(indices, count);
+			emptyHashes[0][q] = hash;
+			emptyHashes[1][q] = hash;
+		}
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		for (int t = 0; t < 2; t++) {
+			System.arraycopy(emptyHashes[t], 0, hashes[t], 0,
+					hashes[t].length);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final ShapeObserver original = (ShapeObserver) that;
+		for (int t = 0; t < 2; t++) {
+			System.arraycopy(original.hashes[t], 0, hashes[t], 0,
+					hashes[t].length);
+		}
+	}
+
+	/**
+	 * Returns the hash of the shape around p, for the current color to play.
+	 *
+	 * @see edu.lclark.orego.patterns.PatternFinder#getHash(Board, short, int)
+	 */
+	public long getHash(short p) {
+		return hashes[board.getColorToPlay().index()][p];
+	}
+
+	/** Returns the hash of the shape around p, if color toPlay were to play. */
+	public long getHash(short p, StoneColor toPlay) {
+		return hashes[toPlay.index()][p];
+	}
+
+	/** Returns the on-board points whose shapes include q. */
+	public short[] getShapePoints(short q) {
+		return shapePoints[q];
+	}
+
+	@Override
+	public void mark() {
+		for (int t = 0; t < 2; t++) {
+			System.arraycopy(hashes[t], 0, markedHashes[t], 0,
+					hashes[t].length);
+		}
+	}
+
+	@Override
+	public void rollBack() {
+		for (int t = 0; t < 2; t++) {
+			System.arraycopy(markedHashes[t], 0, hashes[t], 0,
+					hashes[t].length);
+		}
+	}
+
+	/**
+	 * Toggles q between vacant and a stone of the color with index stone in
+	 * every shape that includes q.
+	 */
+	private void toggle(short q, int stone) {
+		final short[] points = shapePoints[q];
+		final byte[] indices = shapeIndices[q];
+		final long[] black = deltas[0][stone];
+		final long[] white = deltas[1][stone];
+		for (int j = 0; j < points.length; j++) {
+			hashes[0][points[j]] ^= black[indices[j]];
+			hashes[1][points[j]] ^= white[indices[j]];
+		}
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location != PASS) {
+			toggle(location, color.index());
+			final int enemy = color.opposite().index();
+			for (int i = 0; i < capturedStones.size(); i++) {
+				toggle(capturedStones.get(i), enemy);
+			}
+		}
+	}
+
+}
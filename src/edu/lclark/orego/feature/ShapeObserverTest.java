@@ -0,0 +1,87 @@
+package edu.lclark.orego.feature;
+
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.move.PredicateMover;
+import edu.lclark.orego.patterns.PatternFinder;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class ShapeObserverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private ShapeObserver observer;
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		observer = new ShapeObserver(board);
+	}
+
+	private void assertHashesCorrect() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(coords.toString(p),
+					PatternFinder.getHash(board, p, 24), observer.getHash(p));
+		}
+	}
+
+	@Test
+	public void testEmptyBoard() {
+		assertHashesCorrect();
+		board.pass();
+		assertHashesCorrect();
+	}
+
+	@Test
+	public void testCapture() {
+		String[] diagram = {
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				"#O.......",
+				"O........",
+		};
+		board.setUpProblem(diagram, BLACK);
+		assertHashesCorrect();
+		board.play("b1");
+		assertHashesCorrect();
+	}
+
+	@Test
+	public void testRandomPlayouts() {
+		final Mover mover = new PredicateMover(board, new NotEyeLike(board));
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 10; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				mover.selectAndPlayOneMove(random);
+				assertHashesCorrect();
+			}
+		}
+	}
+
+	@Test
+	public void testRollBack() {
+		board.play("e5");
+		board.mark();
+		board.play("d5");
+		board.play("f5");
+		board.rollBack();
+		assertHashesCorrect();
+	}
+
+}
@@ -2,12 +2,14 @@ package edu.lclark.orego.feature;
 
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
-import edu.lclark.orego.patterns.PatternFinder;
 import edu.lclark.orego.patterns.ShapeTable;
 import edu.lclark.orego.util.ShortSet;
 import static edu.lclark.orego.core.NonStoneColor.*;
 
-/** Suggests moves based on SHAPE tables. */
+/**
+ * Suggests moves based on SHAPE tables. Shape hashes are read from a
+ * ShapeObserver, so no board scanning is needed beyond finding vacant points.
+ */
 @SuppressWarnings("serial")
 public class ShapeSuggester implements Suggester {
 	
@@ -17,10 +19,19 @@ public class ShapeSuggester implements Suggester {
 	
 	private final ShortSet moves;
 	
+	/** Keeps the shape hash around each point up to date. */
+	private final ShapeObserver shapes;
+	
 	private final ShapeTable shapeTable;
 	
+	/** Creates a ShapeObserver on board for this suggester's use. */
 	public ShapeSuggester(Board board, ShapeTable shapeTable){
+		this(board, shapeTable, new ShapeObserver(board));
+	}
+	
+	public ShapeSuggester(Board board, ShapeTable shapeTable, ShapeObserver shapes){
 		this.board = board;
+		this.shapes = shapes;
 		this.coords = board.getCoordinateSystem();
 		this.shapeTable = shapeTable;
 		moves = new ShortSet(coords.getFirstPointBeyondBoard());
@@ -31,8 +42,7 @@ public class ShapeSuggester implements Suggester {
 		moves.clear();
 		for(short p : coords.getAllPointsOnBoard()){
 			if(board.getColorAt(p) == VACANT){
-				long hash = PatternFinder.getHash(board, p, 24);
-				if(shapeTable.getWinRate(hash) > 0.8f){
+				if(shapeTable.getWinRate(shapes.getHash(p)) > 0.8f){
 					moves.add(p);
 				}
 			}
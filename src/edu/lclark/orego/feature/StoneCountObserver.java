@@ -13,11 +13,15 @@ public final class StoneCountObserver implements BoardObserver {
 
 	private final int[] counts;
 
+	/** Counts when mark() was called. */
+	private final int[] markedCounts;
+
 	/** If one side has this many more stones, it can be declared the winner. */
 	private final int mercyThreshold;
 
 	public StoneCountObserver(Board board) {
 		counts = new int[2];
+		markedCounts = new int[2];
 		mercyThreshold = board.getCoordinateSystem().getArea() / 8;
 		board.addObserver(this);
 	}
@@ -40,6 +44,12 @@ public final class StoneCountObserver implements BoardObserver {
 		return counts[color.index()];
 	}
 
+	@Override
+	public void mark() {
+		markedCounts[0] = counts[0];
+		markedCounts[1] = counts[1];
+	}
+
 	/**
 	 * Returns the color, if any, with far more stones on the board than the
 	 * other color. If there is no such color, returns null.
@@ -54,6 +64,12 @@ public final class StoneCountObserver implements BoardObserver {
 		return null;
 	}
 
+	@Override
+	public void rollBack() {
+		counts[0] = markedCounts[0];
+		counts[1] = markedCounts[1];
+	}
+
 	@Override
 	public void update(StoneColor color, short location,
 			ShortList capturedStones) {
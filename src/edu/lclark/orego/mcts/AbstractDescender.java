@@ -4,9 +4,10 @@ import static edu.lclark.orego.experiment.Logging.*;
 import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.CoordinateSystem.RESIGN;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
 import static edu.lclark.orego.move.Mover.PRIMES;
 import edu.lclark.orego.core.Board;
-import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.RandomSource;
 import edu.lclark.orego.util.ShortSet;
 
 /** Always chooses the move with the best win rate, with no exploration. */
@@ -22,8 +23,26 @@ public abstract class AbstractDescender implements TreeDescender {
 
 	private final Board board;
 
+	/**
+	 * True if the search values of all moves from a node are computed at once
+	 * when every move must be examined.
+	 */
+	private boolean bulkEvaluation;
+
+	/**
+	 * Number of runs through a node after which its candidate list is rebuilt.
+	 * If 0, candidate lists are not used.
+	 */
+	private int candidateRefresh;
+
 	private final TranspositionTable table;
 
+	/**
+	 * True if a virtual loss should be added for each move chosen during
+	 * descent.
+	 */
+	private boolean virtualLoss;
+
 	public AbstractDescender(Board board, TranspositionTable table,
 			int biasDelay) {
 		this.board = board;
@@ -63,16 +82,57 @@ public abstract class AbstractDescender implements TreeDescender {
 		return result;
 	}
 
+	/**
+	 * Returns the best of pass and the moves in node's candidate list, or
+	 * NO_POINT if a move outside the list might now be better.
+	 */
+	private short bestCandidateMove(SearchNode node, McRunnable runnable) {
+		final Board runnableBoard = runnable.getBoard();
+		final CandidateList candidates = node.getCandidates();
+		float bestSearchValue = searchValue(node, PASS);
+		short result = PASS;
+		for (int i = 0; i < candidates.size(); i++) {
+			final short move = candidates.get(i);
+			final float searchValue = searchValue(node, move);
+			if (searchValue > bestSearchValue) {
+				// The node may have been reused while we were reading the list
+				if (runnableBoard.getColorAt(move) == VACANT
+						&& runnable.isFeasible(move)
+						&& runnableBoard.isLegal(move)) {
+					bestSearchValue = searchValue;
+					result = move;
+				} else {
+					node.exclude(move);
+				}
+			}
+		}
+		if (bestSearchValue < candidates.getThreshold()) {
+			return NO_POINT;
+		}
+		return result;
+	}
+
 	/** Returns the best move to make from here during a playout. */
 	short bestSearchMove(SearchNode node, McRunnable runnable) {
 		final Board runnableBoard = runnable.getBoard();
-		final MersenneTwisterFast random = runnable.getRandom();
+		final RandomSource random = runnable.getRandom();
 		short result = node.getWinningMove();
 		if (result != NO_POINT && runnableBoard.isLegal(result)) {
 			// The isLegal() check is necessary to avoid superko violations
 			return result;
 		}
-		float bestSearchValue = searchValue(node, PASS);
+		if (candidateRefresh > 0) {
+			if (node.getCandidates().isValid(node.getTotalRuns())) {
+				result = bestCandidateMove(node, runnable);
+				if (result != NO_POINT) {
+					return result;
+				}
+			}
+			return refreshCandidates(node, runnable);
+		}
+		final float[] values = searchValues(node, runnable);
+		float bestSearchValue = values == null ? searchValue(node, PASS)
+				: values[PASS];
 		result = PASS;
 		final ShortSet vacantPoints = runnableBoard.getVacantPoints();
 		int start;
@@ -81,7 +141,8 @@ public abstract class AbstractDescender implements TreeDescender {
 		final int skip = PRIMES[random.nextInt(PRIMES.length)];
 		do {
 			final short move = vacantPoints.get(i);
-			final float searchValue = searchValue(node, move);
+			final float searchValue = values == null ? searchValue(node, move)
+					: values[move];
 			if (searchValue > bestSearchValue) {
 				if (runnable.isFeasible(move) && runnableBoard.isLegal(move)) {
 					bestSearchValue = searchValue;
@@ -102,13 +163,20 @@ public abstract class AbstractDescender implements TreeDescender {
 		// Nothing to do; the TreeUpdater clears the table
 	}
 
-	/** Some nodes may have their biases updated. */
+	/**
+	 * Some nodes may have their biases updated. If virtual loss is turned on,
+	 * each move chosen is temporarily charged with a loss until the run is
+	 * incorporated into the tree.
+	 */
 	@Override
 	public void descend(McRunnable runnable) {
 		SearchNode node = getRoot();
 		assert node != null : "Fancy hash code: " + board.getFancyHash();
 		while (runnable.getBoard().getPasses() < 2) {
-			selectAndPlayMove(node, runnable);
+			final short move = selectAndPlayMove(node, runnable);
+			if (virtualLoss) {
+				runnable.addVirtualLoss(node, move);
+			}
 			final SearchNode child = table.findIfPresent(runnable.getBoard()
 					.getFancyHash());
 			if (child == null) {
@@ -151,18 +219,98 @@ public abstract class AbstractDescender implements TreeDescender {
 
 	/** Returns the root node (creating it if necessary). */
 	SearchNode getRoot() {
-		return table.findOrAllocate(board.getFancyHash());
+		return table.findOrAllocateRoot(board.getFancyHash(),
+				board.getTurn());
 	}
 
 	TranspositionTable getTable() {
 		return table;
 	}
 
+	/** @see #setCandidateRefresh(int) */
+	int getCandidateRefresh() {
+		return candidateRefresh;
+	}
+
+	/** Returns true if bulk evaluation is turned on. */
+	boolean isBulkEvaluation() {
+		return bulkEvaluation;
+	}
+
+	/** Returns true if virtual loss is turned on. */
+	boolean isVirtualLoss() {
+		return virtualLoss;
+	}
+
+	/**
+	 * Examines every move from node, as bestSearchMove does without candidate
+	 * lists, and rebuilds node's candidate list along the way. Only moves that
+	 * make it into the list are checked for feasibility and legality. Returns
+	 * the best move.
+	 */
+	private short refreshCandidates(SearchNode node, McRunnable runnable) {
+		final Board runnableBoard = runnable.getBoard();
+		final RandomSource random = runnable.getRandom();
+		// Built privately, then copied into the node in one synchronized step
+		final CandidateList builder = new CandidateList();
+		final float[] values = searchValues(node, runnable);
+		float bestSearchValue = values == null ? searchValue(node, PASS)
+				: values[PASS];
+		short result = PASS;
+		final ShortSet vacantPoints = runnableBoard.getVacantPoints();
+		final int start = random.nextInt(vacantPoints.size());
+		int i = start;
+		final int skip = PRIMES[random.nextInt(PRIMES.length)];
+		do {
+			final short move = vacantPoints.get(i);
+			final float searchValue = values == null ? searchValue(node, move)
+					: values[move];
+			if (!builder.admits(searchValue)) {
+				builder.add(move, searchValue);
+			} else if (runnable.isFeasible(move) && runnableBoard.isLegal(move)) {
+				builder.add(move, searchValue);
+				if (searchValue > bestSearchValue) {
+					bestSearchValue = searchValue;
+					result = move;
+				}
+			} else {
+				node.exclude(move);
+			}
+			i = (i + skip) % vacantPoints.size();
+		} while (i != start);
+		node.getCandidates().copyDataFrom(builder,
+				node.getTotalRuns() + candidateRefresh);
+		return result;
+	}
+
 	/**
 	 * Returns the search value of this move, e.g., best win rate, UCT, or RAVE.
 	 */
 	abstract float searchValue(SearchNode node, short move);
 
+	/**
+	 * If bulk evaluation is turned on, returns the search values of all moves
+	 * from node, indexed by point. Otherwise returns null, and the caller
+	 * should call searchValue() for each move it examines.
+	 */
+	private float[] searchValues(SearchNode node, McRunnable runnable) {
+		if (!bulkEvaluation) {
+			return null;
+		}
+		final SearchValues result = runnable.getSearchValues();
+		searchValues(node, result);
+		return result.values;
+	}
+
+	/**
+	 * Stores in result.values the search value of every move from node, as
+	 * searchValue() would compute it (possibly with different rounding).
+	 * Subclasses should compute these in simple loops over the arrays in
+	 * result, so that shared work is done once per node and the JIT can
+	 * optimize the loops.
+	 */
+	abstract void searchValues(SearchNode node, SearchValues result);
+
 	/** Selects and plays one move in the search tree. */
 	short selectAndPlayMove(SearchNode node, McRunnable runnable) {
 		final short move = bestSearchMove(node, runnable);
@@ -170,6 +318,35 @@ public abstract class AbstractDescender implements TreeDescender {
 		return move;
 	}
 
+	/**
+	 * Sets whether, when every move from a node must be examined, the search
+	 * values of all moves are computed at once (in a loop over arrays of node
+	 * statistics) rather than one move at a time. The moves chosen are the
+	 * same either way.
+	 */
+	void setBulkEvaluation(boolean bulkEvaluation) {
+		this.bulkEvaluation = bulkEvaluation;
+	}
+
+	/**
+	 * Sets the number of runs through a node after which its candidate list is
+	 * rebuilt. Between rebuilds, bestSearchMove only considers pass and the
+	 * CandidateList.CAPACITY moves that looked best at the last rebuild,
+	 * rebuilding early if none of them still looks as good as the best move
+	 * left out. If 0 (the default), every move is considered every time.
+	 */
+	void setCandidateRefresh(int candidateRefresh) {
+		this.candidateRefresh = candidateRefresh;
+	}
+
+	/**
+	 * Sets whether a virtual loss is added for each move chosen during
+	 * descent.
+	 */
+	void setVirtualLoss(boolean virtualLoss) {
+		this.virtualLoss = virtualLoss;
+	}
+
 	@Override
 	public String toString() {
 		return getRoot().deepToString(board, table, 0);
@@ -0,0 +1,125 @@
+package edu.lclark.orego.mcts;
+
+import static java.lang.Float.NEGATIVE_INFINITY;
+
+/**
+ * The most promising moves from a search node, as of the last time all moves
+ * were examined. Between refreshes, AbstractDescender only evaluates these
+ * moves (and pass).
+ * <p>
+ * A refresh builds a new list (in a CandidateList private to one thread) and
+ * then copies it into the node's list while holding the lock on that list.
+ * Readers do not lock. A thread reading during a refresh may see a mixture of
+ * old and new moves, but every move is still a move from this node, and
+ * descent checks legality anyway.
+ *
+ * @see AbstractDescender#setCandidateRefresh(int)
+ */
+final class CandidateList {
+
+	/** Number of moves kept. */
+	static final int CAPACITY = 8;
+
+	/**
+	 * The list must be refreshed once the node's total runs reach this. Written
+	 * last when copying, so a reader seeing a new value also sees the new
+	 * moves.
+	 */
+	private volatile int expiration;
+
+	/** The candidate moves, best first. */
+	private final short[] moves;
+
+	/** Number of moves in the list. */
+	private int size;
+
+	/**
+	 * Best search value, at the last refresh, of any move not in the list. If
+	 * no candidate is worth at least this much, an outsider may have overtaken
+	 * the candidates.
+	 */
+	private float threshold;
+
+	/** Values of the moves, used while building a list. */
+	private final float[] values;
+
+	CandidateList() {
+		moves = new short[CAPACITY];
+		values = new float[CAPACITY];
+		clear();
+	}
+
+	/**
+	 * Returns true if a move with value would currently make it into this list
+	 * being built.
+	 */
+	boolean admits(float value) {
+		return size < CAPACITY || value > values[CAPACITY - 1];
+	}
+
+	/** Considers move, with search value, for this list being built. */
+	void add(short move, float value) {
+		if (size == CAPACITY) {
+			if (value <= values[CAPACITY - 1]) {
+				threshold = Math.max(threshold, value);
+				return;
+			}
+			threshold = Math.max(threshold, values[CAPACITY - 1]);
+			size--;
+		}
+		int i = size;
+		while (i > 0 && values[i - 1] < value) {
+			moves[i] = moves[i - 1];
+			values[i] = values[i - 1];
+			i--;
+		}
+		moves[i] = move;
+		values[i] = value;
+		size++;
+	}
+
+	/** Empties the list and marks it as needing a refresh. */
+	synchronized void clear() {
+		expiration = Integer.MIN_VALUE;
+		size = 0;
+		threshold = NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Copies the moves and threshold of that (a newly built list) into this
+	 * one, making this valid until the node has expiration total runs.
+	 */
+	synchronized void copyDataFrom(CandidateList that, int expiration) {
+		for (int i = 0; i < that.size; i++) {
+			moves[i] = that.moves[i];
+			values[i] = that.values[i];
+		}
+		size = that.size;
+		threshold = that.threshold;
+		this.expiration = expiration;
+	}
+
+	/** Returns the ith best move. */
+	short get(int i) {
+		return moves[i];
+	}
+
+	/** Returns the threshold recorded at the last refresh. */
+	float getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns true if the list is still valid for a node with totalRuns
+	 * runs.
+	 */
+	boolean isValid(int totalRuns) {
+		return totalRuns < expiration;
+	}
+
+	/** Returns the number of moves in the list. */
+	int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,65 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.mcts.CandidateList.CAPACITY;
+import static java.lang.Float.NEGATIVE_INFINITY;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CandidateListTest {
+
+	private CandidateList list;
+
+	@Before
+	public void setUp() throws Exception {
+		list = new CandidateList();
+	}
+
+	@Test
+	public void testAdd() {
+		list.add((short) 30, 0.3f);
+		list.add((short) 50, 0.5f);
+		list.add((short) 40, 0.4f);
+		assertEquals(3, list.size());
+		assertEquals(50, list.get(0));
+		assertEquals(40, list.get(1));
+		assertEquals(30, list.get(2));
+		assertEquals(NEGATIVE_INFINITY, list.getThreshold(), 0.0001);
+	}
+
+	@Test
+	public void testThreshold() {
+		for (int i = 0; i < CAPACITY; i++) {
+			list.add((short) (10 + i), 0.5f + i * 0.01f);
+		}
+		assertTrue(list.admits(0.6f));
+		assertFalse(list.admits(0.4f));
+		list.add((short) 60, 0.4f);
+		assertEquals(0.4f, list.getThreshold(), 0.0001);
+		list.add((short) 70, 0.9f);
+		assertEquals(CAPACITY, list.size());
+		assertEquals(70, list.get(0));
+		// The worst move (10) was evicted
+		assertEquals(0.5f, list.getThreshold(), 0.0001);
+		for (int i = 0; i < CAPACITY; i++) {
+			assertTrue(list.get(i) != 10);
+		}
+	}
+
+	@Test
+	public void testValidity() {
+		assertFalse(list.isValid(0));
+		final CandidateList builder = new CandidateList();
+		builder.add((short) 20, 0.7f);
+		list.copyDataFrom(builder, 10);
+		assertEquals(1, list.size());
+		assertEquals(20, list.get(0));
+		assertTrue(list.isValid(9));
+		assertFalse(list.isValid(10));
+		list.clear();
+		assertFalse(list.isValid(0));
+		assertEquals(0, list.size());
+	}
+
+}
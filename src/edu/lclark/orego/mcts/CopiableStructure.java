@@ -8,35 +8,77 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.lclark.orego.core.Board;
+
 /**
- * A complicated structure with many parts. It can copy itself using
- * serialization. This is used mainly to copy the Board and associated
- * BoardObservers, etc. into each McRunnable.
- *
+ * A complicated structure with many parts. This is used mainly to copy the
+ * Board and associated BoardObservers, etc. into each McRunnable.
+ * <p>
+ * If the structure has a Recipe (as those made by CopiableStructureFactory
+ * do), a copy is made by building a new structure from the recipe, so that
+ * the parts' constructors wire them together, and then copying the board's
+ * data. Otherwise the structure copies itself using serialization.
  */
 @SuppressWarnings("serial")
 public final class CopiableStructure implements Serializable {
 
+	/**
+	 * Builds a new structure with the same parts as this one. A recipe is not
+	 * serialized, so a structure copied by serialization has none.
+	 */
+	public static interface Recipe {
+
+		/** Returns a new structure, as it would be for an empty board. */
+		public CopiableStructure build();
+
+	}
+
 	private final List<Serializable> contents;
 
+	/** May be null, in which case copies are made by serialization. */
+	private transient Recipe recipe;
+
 	public CopiableStructure() {
 		this.contents = new ArrayList<>();
 	}
 
-	/** Adds item to this CopiableStructure. */
+	/**
+	 * Adds item to this CopiableStructure. Because the recipe (if any) does not
+	 * know about item, the recipe is forgotten.
+	 */
 	public CopiableStructure add(Serializable item) {
 		contents.add(item);
+		recipe = null;
 		return this;
 	}
 
 	/**
-	 * Returns a deep copy of this CopiableStructure.
+	 * Returns a deep copy of this CopiableStructure. If there is a recipe, the
+	 * board's data (including that of its observers) is copied into the new
+	 * structure; any other data, such as that in tables, starts fresh.
+	 */
+	public CopiableStructure copy() {
+		if (recipe == null) {
+			return copyBySerialization();
+		}
+		final CopiableStructure result = recipe.build();
+		for (final Serializable obj : contents) {
+			if (obj instanceof Board) {
+				result.get(Board.class).copyDataFrom((Board) obj);
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a deep copy of this CopiableStructure made by serialization.
 	 *
 	 * Adapted from
 	 * http://www.javaworld.com/article/2077578/learn-java/java-tip-
 	 * 76--an-alternative-to-the-deep-copy-technique.html.
 	 */
-	public CopiableStructure copy() {
+	private CopiableStructure copyBySerialization() {
 		try {
 			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
 			@SuppressWarnings("resource")
@@ -76,4 +118,13 @@ public final class CopiableStructure implements Serializable {
 		throw new IllegalArgumentException();
 	}
 
+	/**
+	 * Sets the recipe used to copy this structure. This must be called after
+	 * all items have been added.
+	 */
+	public CopiableStructure withRecipe(Recipe recipe) {
+		this.recipe = recipe;
+		return this;
+	}
+
 }
@@ -1,7 +1,10 @@
 package edu.lclark.orego.mcts;
 
+import static edu.lclark.orego.move.PolicyMover.Filter.FEASIBLE;
 import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.BitPredicate;
 import edu.lclark.orego.feature.CaptureSuggester;
 import edu.lclark.orego.feature.Conjunction;
 import edu.lclark.orego.feature.Disjunction;
@@ -12,13 +15,18 @@ import edu.lclark.orego.feature.LgrfTable;
 import edu.lclark.orego.feature.NearAnotherStone;
 import edu.lclark.orego.feature.NotEyeLike;
 import edu.lclark.orego.feature.OnThirdOrFourthLine;
+import edu.lclark.orego.feature.PatternObserver;
 import edu.lclark.orego.feature.PatternSuggester;
 import edu.lclark.orego.feature.Predicate;
 import edu.lclark.orego.feature.StoneCountObserver;
 import edu.lclark.orego.feature.Suggester;
+import edu.lclark.orego.mcts.CopiableStructure.Recipe;
+import edu.lclark.orego.move.BitPredicateMover;
+import edu.lclark.orego.move.Mover;
 import edu.lclark.orego.move.MoverFactory;
-import edu.lclark.orego.move.PredicateMover;
+import edu.lclark.orego.move.PolicyMover;
 import edu.lclark.orego.move.SuggesterMover;
+import edu.lclark.orego.move.WeightedMover;
 import edu.lclark.orego.score.ChineseFinalScorer;
 import edu.lclark.orego.score.ChinesePlayoutScorer;
 
@@ -26,39 +34,57 @@ import edu.lclark.orego.score.ChinesePlayoutScorer;
 public final class CopiableStructureFactory {
 
 	/** Returns a structure with a board, scorers, and a stone counter. */
-	public static CopiableStructure basicParts(int width, double komi) {
+	public static CopiableStructure basicParts(final int width, final double komi) {
 		final Board board = new Board(width);
 		return new CopiableStructure().add(board)
 				.add(new ChinesePlayoutScorer(board, komi))
 				.add(new StoneCountObserver(board)).add(new HistoryObserver(board))
-				.add(new ChineseFinalScorer(board, komi));
+				.add(new ChineseFinalScorer(board, komi))
+				.withRecipe(new Recipe() {
+					@Override
+					public CopiableStructure build() {
+						return basicParts(width, komi);
+					}
+				});
 	}
 
 	/** Like feasible, but the returned structure captures when possible. */
-	public static CopiableStructure capturer(int width) {
+	public static CopiableStructure capturer(final int width) {
 		final CopiableStructure base = basicParts(width, 7.5);
 		final Board board = base.get(Board.class);
 		final AtariObserver atariObserver = new AtariObserver(board);
-		return base.add(MoverFactory.capturer(board, atariObserver));
+		base.add(MoverFactory.capturer(board, atariObserver));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return capturer(width);
+			}
+		});
 	}
 
 	/**
 	 * The returned structure uses an EscapeSuggester first, with a CaptureSuggester as a fallback.
 	 */
-	public static CopiableStructure escapeCapturer(int width) {
+	public static CopiableStructure escapeCapturer(final int width) {
 		final CopiableStructure base = basicParts(width, 7.5);
 		final Board board = base.get(Board.class);
 		final AtariObserver atariObserver = new AtariObserver(board);
 		base.add(new Conjunction(new NotEyeLike(board), new Disjunction(
 				OnThirdOrFourthLine.forWidth(board.getCoordinateSystem()
 						.getWidth()), new NearAnotherStone(board))));
-		return base.add(MoverFactory.escapeCapturer(board, atariObserver));
+		base.add(MoverFactory.escapeCapturer(board, atariObserver));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return escapeCapturer(width);
+			}
+		});
 	}
 
 	/**
 	 * The returned structure tries escaping, then pattern matching, then capturing (like MoGo).
 	 */
-	public static CopiableStructure escapePatternCapture(int width) {
+	public static CopiableStructure escapePatternCapture(final int width) {
 		final CopiableStructure base = basicParts(width, 7.5);
 		final Board board = base.get(Board.class);
 		final AtariObserver atariObserver = new AtariObserver(board);
@@ -66,15 +92,21 @@ public final class CopiableStructureFactory {
 		base.add(new Conjunction(new NotEyeLike(board), new Disjunction(
 				OnThirdOrFourthLine.forWidth(board.getCoordinateSystem()
 						.getWidth()), new NearAnotherStone(board))));
-		return base.add(MoverFactory.escapePatternCapturer(board, atariObserver,
+		base.add(MoverFactory.escapePatternCapturer(board, atariObserver,
 				historyObserver));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return escapePatternCapture(width);
+			}
+		});
 	}
 
 	/**
 	 * Like simpleRandom, but the returned structure plays moves that are on the 3rd or 4th line
 	 * or near another stone.
 	 */
-	public static CopiableStructure feasible(int width) {
+	public static CopiableStructure feasible(final int width) {
 		final CopiableStructure base = basicParts(width, 7.5);
 		final Board board = base.get(Board.class);
 		base.add(new Suggester[0]);
@@ -82,11 +114,26 @@ public final class CopiableStructureFactory {
 		base.add(new Conjunction(new NotEyeLike(board), new Disjunction(
 				OnThirdOrFourthLine.forWidth(board.getCoordinateSystem()
 						.getWidth()), new NearAnotherStone(board))));
-		return base.add(MoverFactory.feasible(board));
+		base.add(MoverFactory.feasible(board));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return feasible(width);
+			}
+		});
 	}
 
 	/** Similar to useWithBias, but incorporates LGRF2. */
-	public static CopiableStructure lgrfWithBias(int width, double komi){
+	public static CopiableStructure lgrfWithBias(int width, double komi) {
+		return lgrfWithBias(width, komi, new LgrfTable(CoordinateSystem.forWidth(width)));
+	}
+
+	/**
+	 * Builds the structure described by lgrfWithBias(int, double), using table,
+	 * which is shared by all copies.
+	 */
+	private static CopiableStructure lgrfWithBias(final int width, final double komi,
+			final LgrfTable table) {
 		final CopiableStructure base = basicParts(width, komi);
 		final Board board = base.get(Board.class);		
 		// Observers
@@ -98,11 +145,11 @@ public final class CopiableStructureFactory {
 						.getWidth()), new NearAnotherStone(board)));
 		base.add(filter);
 		// LGRF
-		final LgrfTable table = new LgrfTable(board.getCoordinateSystem());
 		base.add(table);
 		final LgrfSuggester lgrf = new LgrfSuggester(board, historyObserver, table, filter);
-		// This is added to the structure to that every LgrfSuggester can point to
-		// the same table. This is handled in the McRunnable constructor.
+		// This is added to the structure so that every LgrfSuggester can point to
+		// the same table. Copies built from the recipe already do; for copies
+		// made by serialization, this is handled in the McRunnable constructor.
 		base.add(lgrf);
 		// Suggesters
 		final EscapeSuggester escape = new EscapeSuggester(board, atariObserver);
@@ -112,24 +159,87 @@ public final class CopiableStructureFactory {
 		base.add(new Suggester[] { escape, patterns, capture });
 		base.add(new int[] { 20, 20, 20 });
 		// Mover
-		final SuggesterMover mover = new SuggesterMover(board, lgrf, new SuggesterMover(board, escape, new SuggesterMover(board,
-				patterns, new SuggesterMover(board, capture, new PredicateMover(board,
-						filter)))));
-		return base.add(mover);
+		final Mover mover = new PolicyMover(board, FEASIBLE, lgrf, escape,
+				patterns, capture);
+		base.add(mover);
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return lgrfWithBias(width, komi, table);
+			}
+		});
+	}
+
+	/**
+	 * Like lgrfWithBias, but the filter's predicates keep their values as
+	 * incrementally updated bit sets, and when no suggester has a move,
+	 * playout moves are drawn uniformly from the set bits.
+	 *
+	 * @see edu.lclark.orego.move.BitPredicateMover
+	 */
+	public static CopiableStructure lgrfWithBitFilters(int width, double komi) {
+		return lgrfWithBitFilters(width, komi, new LgrfTable(CoordinateSystem.forWidth(width)));
+	}
+
+	/**
+	 * Builds the structure described by lgrfWithBitFilters(int, double), using table,
+	 * which is shared by all copies.
+	 */
+	private static CopiableStructure lgrfWithBitFilters(final int width, final double komi,
+			final LgrfTable table) {
+		final CopiableStructure base = basicParts(width, komi);
+		final Board board = base.get(Board.class);
+		// Observers
+		final AtariObserver atariObserver = new AtariObserver(board);
+		final HistoryObserver historyObserver = base.get(HistoryObserver.class);
+		// Filter
+		final BitPredicate filter = new Conjunction(new NotEyeLike(board, true),
+				new Disjunction(OnThirdOrFourthLine.forWidth(board
+						.getCoordinateSystem().getWidth()),
+						new NearAnotherStone(board, true)));
+		base.add(filter);
+		// LGRF
+		base.add(table);
+		final LgrfSuggester lgrf = new LgrfSuggester(board, historyObserver, table, filter);
+		base.add(lgrf);
+		// Suggesters
+		final EscapeSuggester escape = new EscapeSuggester(board, atariObserver);
+		final PatternSuggester patterns = new PatternSuggester(board, historyObserver);
+		final CaptureSuggester capture = new CaptureSuggester(board, atariObserver);
+		// Bias
+		base.add(new Suggester[] { escape, patterns, capture });
+		base.add(new int[] { 20, 20, 20 });
+		// Mover
+		final Mover random = new BitPredicateMover(board, filter);
+		base.add(new SuggesterMover(board, lgrf, new SuggesterMover(board,
+				escape, new SuggesterMover(board, patterns, new SuggesterMover(
+						board, capture, random)))));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return lgrfWithBitFilters(width, komi, table);
+			}
+		});
 	}
 
 	/** Returns a structure that plays randomly except for eyelike points. */
-	public static CopiableStructure simpleRandom(int width) {
+	public static CopiableStructure simpleRandom(final int width) {
 		final CopiableStructure base = basicParts(width, 7.5);
 		final Board board = base.get(Board.class);
 		base.add(new NotEyeLike(board));
-		return base.add(MoverFactory.simpleRandom(board));
+		base.add(MoverFactory.simpleRandom(board));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return simpleRandom(width);
+			}
+		});
 	}
 
 	/**
 	 * Similar to escapePatternCapture, but also updates bias.
 	 */
-	public static CopiableStructure useWithBias(int width, double komi) {
+	public static CopiableStructure useWithBias(final int width, final double komi) {
 		final CopiableStructure base = basicParts(width, komi);
 		final Board board = base.get(Board.class);
 		// Observers
@@ -143,19 +253,69 @@ public final class CopiableStructureFactory {
 		base.add(new Suggester[] { escape, patterns, capture });
 		base.add(new int[] { 20, 20, 20 });
 		// Mover
-		final SuggesterMover mover = new SuggesterMover(board, escape,
-				new SuggesterMover(board, patterns, new SuggesterMover(board,
-						capture, new PredicateMover(board, new Conjunction(
-								new NotEyeLike(board), new Disjunction(
-										OnThirdOrFourthLine.forWidth(board
-												.getCoordinateSystem()
-												.getWidth()),
-										new NearAnotherStone(board)))))));
+		final Mover mover = new PolicyMover(board, FEASIBLE, escape, patterns,
+				capture);
 		// Filter
 		base.add(new Conjunction(new NotEyeLike(board), new Disjunction(
 				OnThirdOrFourthLine.forWidth(board.getCoordinateSystem()
 						.getWidth()), new NearAnotherStone(board))));
-		return base.add(mover);
+		base.add(mover);
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return useWithBias(width, komi);
+			}
+		});
+	}
+
+	/**
+	 * Similar to lgrfWithBias, but when there is no LGRF reply, playout moves
+	 * are drawn from a WeightedMover instead of a chain of suggesters.
+	 */
+	public static CopiableStructure weighted(int width, double komi) {
+		return weighted(width, komi, new LgrfTable(CoordinateSystem.forWidth(width)));
+	}
+
+	/**
+	 * Builds the structure described by weighted(int, double), using table,
+	 * which is shared by all copies.
+	 */
+	private static CopiableStructure weighted(final int width, final double komi,
+			final LgrfTable table) {
+		final CopiableStructure base = basicParts(width, komi);
+		final Board board = base.get(Board.class);
+		// Observers
+		final AtariObserver atariObserver = new AtariObserver(board);
+		final HistoryObserver historyObserver = base.get(HistoryObserver.class);
+		final PatternObserver patternObserver = new PatternObserver(board);
+		// Filter
+		final Predicate filter = new Conjunction(new NotEyeLike(board), new Disjunction(
+				OnThirdOrFourthLine.forWidth(board.getCoordinateSystem()
+						.getWidth()), new NearAnotherStone(board)));
+		base.add(filter);
+		// LGRF
+		base.add(table);
+		final LgrfSuggester lgrf = new LgrfSuggester(board, historyObserver, table, filter);
+		base.add(lgrf);
+		// Suggesters
+		final EscapeSuggester escape = new EscapeSuggester(board, atariObserver);
+		final PatternSuggester patterns = new PatternSuggester(board,
+				historyObserver, patternObserver);
+		final CaptureSuggester capture = new CaptureSuggester(board, atariObserver);
+		// Bias
+		base.add(new Suggester[] { escape, patterns, capture });
+		base.add(new int[] { 20, 20, 20 });
+		// Mover
+		final WeightedMover weighted = new WeightedMover(board, filter,
+				atariObserver, patternObserver,
+				PatternSuggester.loadGoodPatterns());
+		base.add(new SuggesterMover(board, lgrf, weighted));
+		return base.withRecipe(new Recipe() {
+			@Override
+			public CopiableStructure build() {
+				return weighted(width, komi, table);
+			}
+		});
 	}
 
 }
@@ -1,5 +1,6 @@
 package edu.lclark.orego.mcts;
 
+import static edu.lclark.orego.core.StoneColor.WHITE;
 import static org.junit.Assert.*;
 
 import java.io.Serializable;
@@ -7,6 +8,12 @@ import java.io.Serializable;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.feature.LgrfTable;
+import edu.lclark.orego.move.Mover;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
 public class CopiableStructureTest {
 
 	CopiableStructure cs;
@@ -33,6 +40,34 @@ public class CopiableStructureTest {
 		assertSame(w2.x.z, z2);
 	}
 
+	@Test
+	public void testCopyFromRecipe() {
+		cs = CopiableStructureFactory.lgrfWithBias(9, 7.5);
+		final Board board = cs.get(Board.class);
+		board.play("e5");
+		board.play("c3");
+		final CopiableStructure cs2 = cs.copy();
+		final Board board2 = cs2.get(Board.class);
+		assertNotSame(board, board2);
+		assertEquals(board.getHash(), board2.getHash());
+		assertEquals(WHITE, board2.getColorAt(board.getCoordinateSystem().at("c3")));
+		// The parts of the copy are wired to the copy's board
+		cs2.get(Mover.class).selectAndPlayOneMove(new MersenneTwisterFast(0L));
+		assertEquals(3, board2.getTurn());
+		assertEquals(2, board.getTurn());
+		assertEquals(board.getCoordinateSystem().at("c3"),
+				cs2.get(HistoryObserver.class).get(1));
+		// The copy shares the original's LGRF table instead of building one
+		assertSame(cs.get(LgrfTable.class), cs2.get(LgrfTable.class));
+	}
+
+	@Test
+	public void testAddForgetsRecipe() {
+		cs = CopiableStructureFactory.simpleRandom(9).add(w);
+		final W w2 = cs.copy().get(W.class);
+		assertNotSame(w, w2);
+	}
+
 	// The remaining classes are for setting up, e.g., dags for tests
 	
 	@SuppressWarnings("serial")
@@ -0,0 +1,125 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs a fixed number of playouts in such a way that, given the seeds of the
+ * McRunnables' random number generators, the resulting tree is exactly the
+ * same every time. This makes it possible to compare versions of the program,
+ * or settings, without noise from thread scheduling or machine load.
+ * <p>
+ * The playouts are run in rounds. Each McRunnable runs at most one playout
+ * per round, in three phases:
+ * <ol>
+ * <li>The searching thread descends the tree for each McRunnable in turn.
+ * Anything descent changes (biases, excluded moves, virtual losses, candidate
+ * lists) therefore changes in the same order every time.</li>
+ * <li>The playouts beyond the tree run in parallel, one thread per McRunnable.
+ * They read but do not modify shared structures such as the tree or the LGRF
+ * table.</li>
+ * <li>The searching thread incorporates the playouts into the tree in
+ * McRunnable order.</li>
+ * </ol>
+ * Only the playouts run in parallel, but they are where nearly all of the time
+ * goes.
+ * <p>
+ * The helper threads last for one search, so that they do not keep a discarded
+ * Player from being garbage collected.
+ */
+final class DeterministicSearch {
+
+	/** Waits at barrier, converting checked exceptions. */
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (final InterruptedException e) {
+			throw new IllegalStateException(e);
+		} catch (final BrokenBarrierException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Number of McRunnables taking part in the current round, or -1 when the
+	 * search is over.
+	 */
+	private int active;
+
+	/**
+	 * All threads wait here when the playouts of a round are done, before the
+	 * searching thread incorporates them.
+	 */
+	private final CyclicBarrier finish;
+
+	private final McRunnable[] runnables;
+
+	/**
+	 * All threads wait here after the searching thread has finished the
+	 * descents of a round.
+	 */
+	private final CyclicBarrier start;
+
+	DeterministicSearch(McRunnable[] runnables) {
+		this.runnables = runnables;
+		start = new CyclicBarrier(runnables.length);
+		finish = new CyclicBarrier(runnables.length);
+	}
+
+	/**
+	 * Creates and starts helper threads, one per McRunnable except the first,
+	 * whose playouts are run by the searching thread itself.
+	 */
+	private Thread[] createThreads() {
+		final Thread[] threads = new Thread[runnables.length - 1];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i + 1;
+			threads[i] = new Thread("Deterministic McRunnable " + index) {
+				@Override
+				public void run() {
+					while (true) {
+						await(start);
+						// active was written before start was tripped
+						if (active < 0) {
+							return;
+						}
+						if (index < active) {
+							runnables[index].continueDeterministicRun();
+						}
+						await(finish);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		return threads;
+	}
+
+	/** Runs playouts (in total, across all McRunnables) into the tree. */
+	void search(int playouts) {
+		final Thread[] threads = createThreads();
+		while (playouts > 0) {
+			active = Math.min(playouts, runnables.length);
+			for (int i = 0; i < active; i++) {
+				runnables[i].beginDeterministicRun();
+			}
+			await(start);
+			runnables[0].continueDeterministicRun();
+			await(finish);
+			for (int i = 0; i < active; i++) {
+				runnables[i].endDeterministicRun();
+			}
+			playouts -= active;
+		}
+		active = -1;
+		await(start);
+		for (final Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+}
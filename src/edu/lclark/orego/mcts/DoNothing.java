@@ -49,6 +49,11 @@ public final class DoNothing implements TreeDescender, TreeUpdater, OpeningBook
 		return NO_POINT;
 	}
 
+	@Override
+	public void shutdown() {
+		// Does nothing
+	}
+
 	@Override
 	public void updateForAcceptMove() {
 		// Does nothing
@@ -40,6 +40,11 @@ public final class LgrfUpdater implements TreeUpdater {
 		return table;
 	}
 
+	@Override
+	public void shutdown() {
+		updater.shutdown();
+	}
+
 	@Override
 	public void updateForAcceptMove() {
 		updater.updateForAcceptMove();
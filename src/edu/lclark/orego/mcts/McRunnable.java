@@ -16,6 +16,7 @@ import edu.lclark.orego.move.Mover;
 import edu.lclark.orego.score.ChinesePlayoutScorer;
 import edu.lclark.orego.score.PlayoutScorer;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.RandomSource;
 import edu.lclark.orego.util.ShortSet;
 import static edu.lclark.orego.experiment.Logging.*;
 
@@ -39,12 +40,31 @@ public final class McRunnable implements Runnable {
 	/** Keeps track of moves played. */
 	private final HistoryObserver historyObserver;
 
+	/**
+	 * True if board is rolled back to the player's position before each run,
+	 * rather than copied from the player's board.
+	 */
+	private boolean journaled;
+
+	/**
+	 * Version of the player's board when board was last marked.
+	 *
+	 * @see Board#getVersion()
+	 */
+	private long markedVersion;
+
 	/** Counts stones for fast mercy cutoffs of playouts. */
 	private final StoneCountObserver mercyObserver;
 
 	/** Generates moves beyond the tree. */
 	private final Mover mover;
 
+	/**
+	 * Winner of the playout between the phases of a run in a
+	 * DeterministicSearch.
+	 */
+	private Color pendingWinner;
+
 	/**
 	 * Used by RaveNode.recordPlayout. It is stored here rather than in RaveNode
 	 * to avoid creating millions of ShortSets.
@@ -54,18 +74,58 @@ public final class McRunnable implements Runnable {
 	/** The Player that launches the thread wrapped around this McRunnable. */
 	private final Player player;
 
-	/** Number of playouts completed. */
-	private long playoutsCompleted;
+	/**
+	 * Number of playouts completed. Only this McRunnable's thread writes it,
+	 * so the increments need no lock, but it is volatile because the thread
+	 * running SearchController reads it through Player.getPlayoutCount().
+	 */
+	private volatile long playoutsCompleted;
+
+	/**
+	 * Ring to which finished playouts are published, or null if this
+	 * McRunnable updates the tree itself.
+	 */
+	private PlayoutRing ring;
 
 	/** Random number generator. */
-	private final MersenneTwisterFast random;
+	private RandomSource random;
+
+	/**
+	 * Turn at the end of the playout most recently passed to replay(), or -1
+	 * if this McRunnable runs its own playouts.
+	 */
+	private int replayTurn;
+
+	/** Announces this McRunnable's runs, so nodes it holds are not reused. */
+	private final RunEpochs.Participant runEpoch;
 
 	/** Determines winners of playouts. */
 	private final PlayoutScorer scorer;
 
+	/** Used by the descender to compute all search values from a node at once. */
+	private final SearchValues searchValues;
+
 	/** An array of suggesters used for updating bias. */
 	private final Suggester[] suggesters;
 
+	/**
+	 * Number of virtual losses currently recorded in virtualLossNodes and
+	 * virtualLossMoves.
+	 */
+	private int virtualLosses;
+
+	/**
+	 * Moves through which this runnable has added a virtual loss during the
+	 * current run.
+	 */
+	private final short[] virtualLossMoves;
+
+	/**
+	 * Nodes to which this runnable has added a virtual loss during the current
+	 * run.
+	 */
+	private final SearchNode[] virtualLossNodes;
+
 	/** An array of weights for each suggester used for updating bias. */
 	private final int[] weights;
 
@@ -94,6 +154,11 @@ public final class McRunnable implements Runnable {
 		filter = copy.get(Predicate.class);
 		fancyHashes = new long[coords.getMaxMovesPerGame() + 1];
 		playedPoints = new ShortSet(coords.getFirstPointBeyondBoard());
+		searchValues = new SearchValues(coords.getFirstPointBeyondBoard());
+		virtualLossNodes = new SearchNode[coords.getMaxMovesPerGame() + 1];
+		virtualLossMoves = new short[coords.getMaxMovesPerGame() + 1];
+		replayTurn = -1;
+		runEpoch = player.getRunEpochs().register();
 	}
 
 	/**
@@ -108,12 +173,61 @@ public final class McRunnable implements Runnable {
 		fancyHashes[board.getTurn()] = board.getFancyHash();
 	}
 
-	/** Copies data from that (the player's real board) to the local board. */
+	/**
+	 * Adds a virtual loss for move p at node, so that other threads are less
+	 * likely to follow the same path while this run is in progress. The loss
+	 * is removed by removeVirtualLosses().
+	 */
+	void addVirtualLoss(SearchNode node, short p) {
+		node.update(p, 1, 0);
+		virtualLossNodes[virtualLosses] = node;
+		virtualLossMoves[virtualLosses] = p;
+		virtualLosses++;
+	}
+
+	/**
+	 * First phase of a run in a DeterministicSearch: returns to the player's
+	 * position and descends the tree.
+	 */
+	void beginDeterministicRun() {
+		runEpoch.enter();
+		returnToRoot();
+		player.descend(this);
+	}
+
+	/**
+	 * Second phase of a run in a DeterministicSearch: finishes the playout,
+	 * without touching the tree.
+	 */
+	void continueDeterministicRun() {
+		if (board.getPasses() == 2) {
+			pendingWinner = scorer.winner();
+		} else {
+			pendingWinner = playout(true);
+		}
+	}
+
+	/**
+	 * Copies data from that (the player's real board) to the local board. The
+	 * superko history is shared rather than copied, as that does not change
+	 * while this McRunnable is running.
+	 */
 	public void copyDataFrom(Board that) {
-		board.copyDataFrom(that);
+		board.copyDataSharingHistoryFrom(that);
 		fancyHashes[board.getTurn()] = board.getFancyHash();
 	}
 
+	/**
+	 * Last phase of a run in a DeterministicSearch: incorporates the playout
+	 * into the tree.
+	 */
+	void endDeterministicRun() {
+		removeVirtualLosses();
+		player.updateTree(pendingWinner, this);
+		playoutsCompleted++;
+		runEpoch.exit();
+	}
+
 	/** Returns the board associated with this runnable. */
 	public Board getBoard() {
 		return board;
@@ -150,17 +264,28 @@ public final class McRunnable implements Runnable {
 	}
 
 	/** Returns the random number generator associated with this runnable. */
-	public MersenneTwisterFast getRandom() {
+	public RandomSource getRandom() {
 		return random;
 	}
 
+	/** Returns the arrays used to compute all search values from a node. */
+	SearchValues getSearchValues() {
+		return searchValues;
+	}
+
 	/** Returns the list of suggesters used for updating biases. */
 	public Suggester[] getSuggesters() {
 		return suggesters;
 	}
 
-	/** Returns the current turn number on this runnable's board. */
+	/**
+	 * Returns the current turn number on this runnable's board, or the turn at
+	 * the end of the replayed playout.
+	 */
 	public int getTurn() {
+		if (replayTurn >= 0) {
+			return replayTurn;
+		}
 		return board.getTurn();
 	}
 
@@ -191,21 +316,27 @@ public final class McRunnable implements Runnable {
 	
 	/** @param mercy True if we should abandon the playout when one color has many more stones than the other. */
 	public Color performMcRun(boolean mercy) {
-		copyDataFrom(player.getBoard());
+		returnToRoot();
 		return performMcRun(mercy, board);
 	}
 	
 	public Color performMcRun(boolean mercy, Board originalBoard){
-		player.descend(this);
-		Color winner;
-		if (originalBoard.getPasses() == 2) {
-			winner = scorer.winner();
-		} else {
-			winner = playout(mercy);
+		runEpoch.enter();
+		try {
+			player.descend(this);
+			Color winner;
+			if (originalBoard.getPasses() == 2) {
+				winner = scorer.winner();
+			} else {
+				winner = playout(mercy);
+			}
+			removeVirtualLosses();
+			player.updateTree(winner, this);
+			playoutsCompleted++;
+			return winner;
+		} finally {
+			runEpoch.exit();
 		}
-		player.updateTree(winner, this);
-		playoutsCompleted++;
-		return winner;
 	}
 
 	/**
@@ -236,19 +367,117 @@ public final class McRunnable implements Runnable {
 		} while (true);
 	}
 
+	/**
+	 * Publishes the playout just completed to this McRunnable's PlayoutRing.
+	 * Returns false if there is no ring or it is full, in which case the
+	 * caller must update the tree directly.
+	 */
+	boolean publishPlayout(Color winner) {
+		return ring != null && ring.offer(this, winner);
+	}
+
+	/** Removes any virtual losses added during the current run. */
+	void removeVirtualLosses() {
+		while (virtualLosses > 0) {
+			virtualLosses--;
+			virtualLossNodes[virtualLosses].update(
+					virtualLossMoves[virtualLosses], -1, 0);
+			virtualLossNodes[virtualLosses] = null;
+		}
+	}
+
+	/**
+	 * Announces that this McRunnable is about to use tree nodes outside of a
+	 * normal run, as the updater threads of a PlayoutPipeline do.
+	 *
+	 * @see #exitRun()
+	 */
+	void enterRun() {
+		runEpoch.enter();
+	}
+
+	/** Announces that this McRunnable no longer holds any tree nodes. */
+	void exitRun() {
+		runEpoch.exit();
+	}
+
+	/**
+	 * Makes this McRunnable look, to a TreeUpdater, as if it had just played
+	 * the playout in record. Used by the updater threads of a PlayoutPipeline;
+	 * a McRunnable used this way never runs playouts of its own.
+	 */
+	void replay(PlayoutRecord record) {
+		historyObserver.copyMovesFrom(record.getMoves());
+		final int start = record.getStartTurn();
+		replayTurn = record.getTurn();
+		System.arraycopy(record.getFancyHashes(), start, fancyHashes, start,
+				replayTurn - start + 1);
+	}
+
+	/**
+	 * Makes this McRunnable's board match the player's, either by rolling back
+	 * the board's journal or by copying the player's board.
+	 */
+	private void returnToRoot() {
+		final Board root = player.getBoard();
+		if (journaled && board.isMarked()
+				&& markedVersion == root.getVersion()) {
+			// Undo the last run rather than copying the whole board
+			board.rollBack();
+			fancyHashes[board.getTurn()] = board.getFancyHash();
+		} else {
+			copyDataFrom(root);
+			if (journaled) {
+				board.mark();
+				markedVersion = root.getVersion();
+			}
+		}
+	}
+
 	/**
 	 * Performs runs and incorporate them into player's search tree until this
-	 * thread is interrupted.
+	 * thread is interrupted or the player's playout budget has all been
+	 * claimed. Playouts are claimed from the budget in chunks.
 	 */
 	@Override
 	public void run() {
-		while (getPlayer().shouldKeepRunning()) {
-			performMcRun();
+		final SearchBudget budget = player.getBudget();
+		while (player.shouldKeepRunning()) {
+			final int claimed = budget.claimPlayouts();
+			if (claimed == 0) {
+				break;
+			}
+			int completed = 0;
+			while (completed < claimed && player.shouldKeepRunning()) {
+				performMcRun();
+				completed++;
+			}
+			budget.completePlayouts(completed);
 		}
 		log("Playouts completed: " + playoutsCompleted);
 		player.notifyMcRunnableDone();
 	}
 
+	/**
+	 * Sets whether this McRunnable returns to the player's position by rolling
+	 * back its board's journal instead of copying the player's board.
+	 *
+	 * @see Board#mark()
+	 */
+	public void setJournaled(boolean journaled) {
+		this.journaled = journaled;
+	}
+
+	/** Sets the random number generator used by this McRunnable. */
+	public void setRandom(RandomSource random) {
+		this.random = random;
+	}
+
+	/** Sets the ring to which finished playouts are published. */
+	void setPlayoutRing(PlayoutRing ring) {
+		this.ring = ring;
+	}
+
 	private short selectAndPlayOneMove() {
 		return mover.selectAndPlayOneMove(random);
 	}
@@ -73,4 +73,20 @@ public class McRunnableTest {
 		assertEquals(player.getBoard().toString(), runnable.getBoard().toString());
 	}
 
+	@Test
+	public void testJournaled() {
+		player = new PlayerBuilder().threads(1).boardWidth(5).memorySize(64)
+				.openingBook(false).journaledBoards(true).build();
+		runnable = player.getMcRunnable(0);
+		runnable.performMcRun();
+		assertTrue(runnable.getBoard().isMarked());
+		runnable.performMcRun();
+		assertTrue(runnable.getBoard().isMarked());
+		// A change to the player's board forces a fresh copy
+		player.getBoard().play(at("c3"));
+		runnable.performMcRun();
+		assertEquals(at("c3"), runnable.getHistoryObserver().get(0));
+		assertEquals(BLACK, runnable.getBoard().getColorAt(at("c3")));
+	}
+
 }
@@ -0,0 +1,231 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.BitVector;
+
+/**
+ * Stores the statistics of all nodes in a TranspositionTable in a few large
+ * primitive arrays, indexed by node id, instead of giving each node its own
+ * arrays. This avoids allocating several small arrays per node, packs more
+ * nodes into the same memory, and keeps the data for one node contiguous.
+ * <p>
+ * The arena is also the SearchNodeBuilder for its table: each call to build()
+ * returns a node backed by the next unused id.
+ * <p>
+ * A sparse arena instead builds SparseSearchNodes (or SparseRaveNodes), which
+ * keep their statistics in small maps until they have enough runs. Only one
+ * dense block of statistics is stored for every NODES_PER_BLOCK nodes; nodes
+ * take blocks when they are promoted and return them when they are freed.
+ * While no blocks are free, a TranspositionTable built on the arena creates no
+ * new nodes.
+ *
+ * @see TranspositionTable#TranspositionTable(NodeArena, CoordinateSystem,
+ *      boolean)
+ */
+public final class NodeArena implements SearchNodeBuilder {
+
+	/**
+	 * Approximate number of bytes per node beyond the arrays stored here: the
+	 * node object and its BitVector, the table slot, and the ListNodes
+	 * allocated for each node.
+	 */
+	private static final int NODE_OVERHEAD = 192;
+
+	/**
+	 * Portion of the memory budget used by the arena. The rest is left for
+	 * boards, McRunnables, etc.
+	 */
+	private static final double PORTION_OF_MEMORY = 0.75;
+
+	/**
+	 * Approximate number of bytes used by the map in each SparseSearchNode,
+	 * including the array objects.
+	 */
+	private static final int SPARSE_MAP_BYTES = 12 * SparseSearchNode.MAP_CAPACITY + 64;
+
+	/** In a sparse arena, number of nodes for each dense block. */
+	static final int NODES_PER_BLOCK = 8;
+
+	/** Number of nodes in this arena. */
+	private final int capacity;
+
+	/**
+	 * Indices of the dense blocks not currently used by any node. Only used
+	 * in a sparse arena.
+	 */
+	private final int[] freeBlocks;
+
+	/** Number of valid entries in freeBlocks. */
+	private volatile int freeBlockCount;
+
+	/** hasChild bits for all nodes. */
+	private final long[] hasChild;
+
+	/** Number of longs in hasChild used by each node. */
+	private final int longsPerNode;
+
+	/** Id of the next node to be built. */
+	private int nextId;
+
+	/** Number of entries in stats (and raveStats) used by each node. */
+	private final int pointsPerNode;
+
+	/** Packed RAVE runs and wins for all nodes, or null if not using RAVE. */
+	private final AtomicLongArray raveStats;
+
+	/** True if this arena builds sparse nodes. */
+	private final boolean sparse;
+
+	/** Packed runs and wins for all nodes (or blocks, if sparse). */
+	private final AtomicLongArray stats;
+
+	/**
+	 * @param megabytes
+	 *            Memory budget, in megabytes, as for TranspositionTable.
+	 * @param rave
+	 *            If true, this arena builds RaveNodes; otherwise
+	 *            SimpleSearchNodes.
+	 */
+	public NodeArena(int megabytes, CoordinateSystem coords, boolean rave) {
+		this(megabytes, coords, rave, false);
+	}
+
+	/**
+	 * @param megabytes
+	 *            Memory budget, in megabytes, as for TranspositionTable.
+	 * @param rave
+	 *            If true, this arena builds nodes with RAVE statistics.
+	 * @param sparse
+	 *            If true, this arena builds SparseSearchNodes, which only take
+	 *            dense blocks of statistics once they have enough runs.
+	 */
+	public NodeArena(int megabytes, CoordinateSystem coords, boolean rave,
+			boolean sparse) {
+		this.sparse = sparse;
+		pointsPerNode = coords.getFirstPointBeyondBoard();
+		longsPerNode = BitVector.longsFor(pointsPerNode);
+		final long blockBytes = 8L * pointsPerNode * (rave ? 2 : 1);
+		long bytesPerNode = 8L * longsPerNode + NODE_OVERHEAD;
+		if (sparse) {
+			bytesPerNode += SPARSE_MAP_BYTES + blockBytes / NODES_PER_BLOCK;
+			if (rave) {
+				bytesPerNode += 4L * ((pointsPerNode + 1) / 2);
+			}
+		} else {
+			bytesPerNode += blockBytes;
+		}
+		long nodes = (long) (megabytes * 1024L * 1024 * PORTION_OF_MEMORY / bytesPerNode);
+		// Arrays are indexed by int, and probe buckets must be complete
+		nodes = Math.min(nodes, Integer.MAX_VALUE / pointsPerNode);
+		nodes -= nodes % TranspositionTable.BUCKET_SIZE;
+		capacity = (int) Math.max(nodes, TranspositionTable.BUCKET_SIZE);
+		final int blocks;
+		if (sparse) {
+			blocks = Math.max(1, capacity / NODES_PER_BLOCK);
+			freeBlocks = new int[blocks];
+			for (int i = 0; i < blocks; i++) {
+				freeBlocks[i] = blocks - 1 - i;
+			}
+			freeBlockCount = blocks;
+		} else {
+			blocks = capacity;
+			freeBlocks = null;
+		}
+		stats = new AtomicLongArray(blocks * pointsPerNode);
+		raveStats = rave ? new AtomicLongArray(blocks * pointsPerNode)
+				: null;
+		hasChild = new long[capacity * longsPerNode];
+		nextId = 0;
+	}
+
+	/**
+	 * Returns the offset in the statistics arrays of a free dense block, or -1
+	 * if there is none. Only used in a sparse arena.
+	 */
+	int allocateBlock() {
+		if (freeBlockCount == 0) {
+			return -1;
+		}
+		synchronized (this) {
+			if (freeBlockCount == 0) {
+				return -1;
+			}
+			freeBlockCount--;
+			return freeBlocks[freeBlockCount] * pointsPerNode;
+		}
+	}
+
+	/**
+	 * Returns a node backed by the next unused id in this arena.
+	 *
+	 * @throws IllegalStateException
+	 *             if all capacity nodes have already been built.
+	 */
+	@Override
+	public SimpleSearchNode build() {
+		if (nextId == capacity) {
+			throw new IllegalStateException("All " + capacity
+					+ " nodes in arena have been built");
+		}
+		final int offset = nextId * pointsPerNode;
+		final BitVector bits = new BitVector(hasChild, nextId * longsPerNode,
+				pointsPerNode);
+		nextId++;
+		if (sparse) {
+			if (raveStats != null) {
+				return new SparseRaveNode(this, bits);
+			}
+			return new SparseSearchNode(this, bits);
+		}
+		if (raveStats != null) {
+			return new RaveNode(stats, raveStats, offset, bits);
+		}
+		return new SimpleSearchNode(stats, offset, bits);
+	}
+
+	/**
+	 * Returns the dense block at offset (as returned by allocateBlock()) to
+	 * this arena.
+	 */
+	synchronized void freeBlock(int offset) {
+		assert freeBlockCount < freeBlocks.length;
+		freeBlocks[freeBlockCount] = offset / pointsPerNode;
+		freeBlockCount++;
+	}
+
+	/** Returns the number of nodes in this arena. */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** Returns the number of dense blocks not in use. For testing. */
+	int getFreeBlockCount() {
+		return freeBlockCount;
+	}
+
+	/** Returns the number of statistics entries used by each node. */
+	int getPointsPerNode() {
+		return pointsPerNode;
+	}
+
+	/**
+	 * Returns true if this arena is not sparse or has at least one free dense
+	 * block.
+	 */
+	boolean hasFreeBlock() {
+		return !sparse || freeBlockCount > 0;
+	}
+
+	/** Returns the packed RAVE statistics, or null if not using RAVE. */
+	AtomicLongArray getRaveStats() {
+		return raveStats;
+	}
+
+	/** Returns the packed statistics. */
+	AtomicLongArray getStats() {
+		return stats;
+	}
+
+}
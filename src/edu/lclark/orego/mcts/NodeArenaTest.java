@@ -0,0 +1,59 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class NodeArenaTest {
+
+	private CoordinateSystem coords;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		coords = CoordinateSystem.forWidth(5);
+	}
+
+	@Test
+	public void testCapacity() {
+		NodeArena arena = new NodeArena(1, coords, false);
+		assertEquals(0, arena.getCapacity() % TranspositionTable.BUCKET_SIZE);
+		assertTrue(arena.getCapacity() > new NodeArena(1, coords, true).getCapacity());
+	}
+
+	@Test
+	public void testNodesAreIndependent() {
+		NodeArena arena = new NodeArena(1, coords, true);
+		RaveNode a = (RaveNode) arena.build();
+		RaveNode b = (RaveNode) arena.build();
+		a.clear(1L, coords);
+		b.clear(2L, coords);
+		a.update(at("c3"), 1, 1);
+		a.addRaveWin(at("c3"));
+		a.setHasChild(at("c3"));
+		assertEquals(3, a.getRuns(at("c3")));
+		assertEquals(3, a.getRaveRuns(at("c3")));
+		assertTrue(a.hasChild(at("c3")));
+		assertEquals(2, b.getRuns(at("c3")));
+		assertEquals(2, b.getRaveRuns(at("c3")));
+		assertFalse(b.hasChild(at("c3")));
+		b.clear(3L, coords);
+		assertEquals(3, a.getRuns(at("c3")));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBuildTooMany() {
+		NodeArena arena = new NodeArena(1, coords, false);
+		for (int i = 0; i <= arena.getCapacity(); i++) {
+			arena.build();
+		}
+	}
+
+}
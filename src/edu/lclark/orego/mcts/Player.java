@@ -8,9 +8,6 @@ import static edu.lclark.orego.core.StoneColor.*;
 import static edu.lclark.orego.experiment.Logging.*;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import edu.lclark.orego.book.OpeningBook;
 import edu.lclark.orego.core.Board;
@@ -19,9 +16,11 @@ import edu.lclark.orego.core.Legality;
 import edu.lclark.orego.core.StoneColor;
 import edu.lclark.orego.feature.HistoryObserver;
 import edu.lclark.orego.score.FinalScorer;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
 import edu.lclark.orego.time.TimeManager;
 import edu.lclark.orego.util.ShortList;
 import edu.lclark.orego.util.ShortSet;
+import edu.lclark.orego.util.XoshiroRandom;
 
 /** Runs playouts and chooses moves. */
 public final class Player {
@@ -30,6 +29,9 @@ public final class Player {
 
 	private OpeningBook book;
 
+	/** Limits on playouts and nodes per search. */
+	private final SearchBudget budget;
+
 	/**
 	 * True if we should search for opponent's dead stones and bias moves that
 	 * kill them.
@@ -43,8 +45,14 @@ public final class Player {
 
 	private TreeDescender descender;
 
-	/** For managing threads. */
-	private ExecutorService executor;
+	/**
+	 * Runs searches of a fixed number of playouts reproducibly, or null if
+	 * searches are timed.
+	 */
+	private DeterministicSearch deterministic;
+
+	/** Playouts per move in a deterministic search. */
+	private int deterministicPlayouts;
 
 	private final FinalScorer finalScorer;
 
@@ -54,20 +62,32 @@ public final class Player {
 	 * True if the threads should keep running, e.g., because time has not run
 	 * out.
 	 */
-	private boolean keepRunning;
-
-	/** Used to verify that all McRunnables have stopped. */
-	private CountDownLatch latch;
+	private volatile boolean keepRunning;
 
 	/** Number of milliseconds to spend on the next move. */
 	private int msecPerMove;
 
+	/**
+	 * Applies playouts to the tree on separate updater threads, or null if
+	 * each McRunnable updates the tree itself.
+	 */
+	private PlayoutPipeline pipeline;
+
 	/** True if we should think during the opponent's turn. */
 	private boolean ponder;
 
+	/**
+	 * The McRunnables announce their runs here, so the TranspositionTable
+	 * knows when evicted nodes can no longer be in use.
+	 */
+	private final RunEpochs runEpochs;
+
 	/** For running playouts. */
 	private final McRunnable[] runnables;
 
+	/** The threads that run the McRunnables. */
+	private final SearchThreads threads;
+
 	/**
 	 * True if the setTimeRemaining method has been called, because a time_left
 	 * command was received. If true, use the time manager. Otherwise just
@@ -75,6 +95,9 @@ public final class Player {
 	 */
 	private boolean timeLeftWasSent;
 
+	/** Decides when to stop searching. */
+	private final SearchController controller;
+
 	/** Object used to calculate amount of time used in generating a move. */
 	private TimeManager timeManager;
 
@@ -91,10 +114,13 @@ public final class Player {
 		board = copy.get(Board.class);
 		historyObserver = copy.get(HistoryObserver.class);
 		finalScorer = copy.get(FinalScorer.class);
+		runEpochs = new RunEpochs();
 		runnables = new McRunnable[threads];
-		for (int i = 0; i < runnables.length; i++) {
-			runnables[i] = new McRunnable(this, stuff);
-		}
+		createRunnables(stuff);
+		this.threads = new SearchThreads(runnables);
+		controller = new SearchController();
+		budget = new SearchBudget(controller, threads);
+		controller.setBudget(budget);
 		descender = new DoNothing();
 		updater = new DoNothing();
 		book = new DoNothing();
@@ -107,7 +133,7 @@ public final class Player {
 		final Legality legality = board.play(point);
 		assert legality == OK;
 		updater.updateForAcceptMove();
-		if (ponder) {
+		if (ponder && deterministic == null) {
 			startThreads();
 		}
 		return legality;
@@ -130,32 +156,23 @@ public final class Player {
 			}
 			findCleanupMoves();
 		}
+		if (deterministic != null) {
+			updateRootBias();
+			budget.reset();
+			deterministic.search(deterministicPlayouts);
+			return descender.bestPlayMove();
+		}
+		// The threads run continuously while this thread watches the clock
+		startThreads();
 		if (!timeLeftWasSent) {
 			// No time left signal was received
-			startThreads();
-			try {
-				Thread.sleep(msecPerMove);
-			} catch (final InterruptedException e) {
-				e.printStackTrace();
-				System.exit(1);
-			}
-			stopThreads();
+			controller.awaitStop(msecPerMove);
 		} else {
 			// Time left signal was received
 			timeManager.startNewTurn();
-			msecPerMove = timeManager.getMsec();
-			do {
-				startThreads();
-				try {
-					Thread.sleep(msecPerMove);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-					System.exit(1);
-				}
-				stopThreads();
-				msecPerMove = timeManager.getMsec();
-			} while (msecPerMove > 0);
+			controller.awaitStop(timeManager);
 		}
+		stopThreads();
 		return descender.bestPlayMove();
 	}
 
@@ -190,6 +207,49 @@ public final class Player {
 		cleanupMode = false;
 	}
 
+	/**
+	 * Creates the McRunnables, each in its own thread, so that copying stuff
+	 * is done in parallel. (The copy made in the constructor has already
+	 * initialized any static tables the copies share.) If any builder thread
+	 * fails, its exception is rethrown here once all builders have finished.
+	 */
+	private void createRunnables(final CopiableStructure stuff) {
+		final Thread[] builders = new Thread[runnables.length];
+		final Throwable[] failures = new Throwable[runnables.length];
+		for (int i = 0; i < builders.length; i++) {
+			final int index = i;
+			builders[i] = new Thread("McRunnable builder " + i) {
+				@Override
+				public void run() {
+					try {
+						runnables[index] = new McRunnable(Player.this, stuff);
+					} catch (final Throwable t) {
+						failures[index] = t;
+					}
+				}
+			};
+			builders[i].start();
+		}
+		try {
+			for (final Thread builder : builders) {
+				builder.join();
+			}
+		} catch (final InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+		for (final Throwable failure : failures) {
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			if (failure != null) {
+				throw new IllegalStateException(failure);
+			}
+		}
+	}
+
 	/** Play any moves within the tree (or other structure). */
 	public void descend(McRunnable runnable) {
 		descender.descend(runnable);
@@ -292,6 +352,16 @@ public final class Player {
 		return descender;
 	}
 
+	/** Returns the limits on playouts and nodes per search. */
+	SearchBudget getBudget() {
+		return budget;
+	}
+
+	/** Returns the controller that decides when to stop searching. */
+	SearchController getController() {
+		return controller;
+	}
+
 	/** Returns the scorer. */
 	public FinalScorer getFinalScorer() {
 		return finalScorer;
@@ -328,6 +398,11 @@ public final class Player {
 		return runnables.length;
 	}
 
+	/** Returns the PlayoutPipeline, or null if there is none. For testing. */
+	PlayoutPipeline getPipeline() {
+		return pipeline;
+	}
+
 	public int getPlayoutCount() {
 		int playouts = 0;
 		for (final McRunnable runnable : runnables) {
@@ -340,6 +415,16 @@ public final class Player {
 		return updater.getRoot();
 	}
 
+	/** Returns the RunEpochs with which the McRunnables announce their runs. */
+	RunEpochs getRunEpochs() {
+		return runEpochs;
+	}
+
+	/** Returns the threads that run the McRunnables. For testing. */
+	SearchThreads getSearchThreads() {
+		return threads;
+	}
+
 	public TimeManager getTimeManager() {
 		return timeManager;
 	}
@@ -351,7 +436,7 @@ public final class Player {
 
 	/** Indicate that one McRunnable has stopped. */
 	void notifyMcRunnableDone() {
-		latch.countDown();
+		threads.threadDone();
 	}
 
 	/** Sets whether we think during the opponent's turn. */
@@ -385,11 +470,92 @@ public final class Player {
 		msecPerMove = msec;
 	}
 
+	/**
+	 * Applies playouts to the tree on updaterThreads separate threads instead
+	 * of on the McRunnables' threads. Must be called after the TreeUpdater is
+	 * set and at most once.
+	 */
+	void setUpdaterThreads(int updaterThreads, CopiableStructure stuff) {
+		final McRunnable[] replays = new McRunnable[updaterThreads];
+		for (int i = 0; i < replays.length; i++) {
+			replays[i] = new McRunnable(this, stuff);
+		}
+		pipeline = new PlayoutPipeline(this, replays);
+	}
+
+	/**
+	 * Sets whether the McRunnables return to the current position by rolling
+	 * back their boards' journals rather than copying this player's board.
+	 */
+	public void setJournaledBoards(boolean journaled) {
+		for (final McRunnable runnable : runnables) {
+			runnable.setJournaled(journaled);
+		}
+	}
+
+	/**
+	 * Sets whether search stops as soon as the best move cannot be overtaken
+	 * in the time remaining.
+	 */
+	public void setUnassailable(boolean enabled) {
+		controller.stopWhenUnassailable(enabled ? this : null);
+	}
+
+	/**
+	 * Makes each search run exactly playouts playouts, in such a way that the
+	 * resulting tree depends only on the McRunnables' random number generator
+	 * seeds, not on timing. If playouts is 0, searches are timed as usual.
+	 *
+	 * @see DeterministicSearch
+	 * @see #setRandomGenerators(boolean, long)
+	 */
+	public void setDeterministicPlayouts(int playouts) {
+		stopThreads();
+		deterministicPlayouts = playouts;
+		if (playouts > 0 && deterministic == null) {
+			deterministic = new DeterministicSearch(runnables);
+		} else if (playouts == 0) {
+			deterministic = null;
+		}
+	}
+
+	/**
+	 * Sets the maximum number of tree nodes allocated in each search. 0 (the
+	 * default) means no limit. Search still stops if time runs out first.
+	 */
+	public void setNodeBudget(int nodes) {
+		budget.setNodeLimit(nodes);
+	}
+
 	/** Sets which opening book to use. Default is DoNothing. */
 	public void setOpeningBook(OpeningBook book) {
 		this.book = book;
 	}
 
+	/**
+	 * Sets the number of playouts in each search. 0 (the default) means no
+	 * limit. Search still stops if time runs out first.
+	 */
+	public void setPlayoutBudget(int playouts) {
+		budget.setPlayoutLimit(playouts);
+	}
+
+	/**
+	 * Gives each McRunnable a new random number generator: an XoshiroRandom if
+	 * xoshiro is true, otherwise a MersenneTwisterFast. The McRunnables are
+	 * seeded with seed, seed + 1, and so on, so each makes the same random
+	 * choices every time this is called with the same seed.
+	 */
+	public void setRandomGenerators(boolean xoshiro, long seed) {
+		for (int i = 0; i < runnables.length; i++) {
+			if (xoshiro) {
+				runnables[i].setRandom(new XoshiroRandom(seed + i));
+			} else {
+				runnables[i].setRandom(new MersenneTwisterFast(seed + i));
+			}
+		}
+	}
+
 	/** Handles a time left signal from GTP. */
 	public void setRemainingTime(int seconds) {
 		timeLeftWasSent = true;
@@ -432,24 +598,29 @@ public final class Player {
 		return keepRunning;
 	}
 
+	/**
+	 * Stops search and ends the threads this player uses, so that a player
+	 * that is being replaced can be garbage collected. The player cannot
+	 * search afterward.
+	 */
+	public void shutdown() {
+		stopThreads();
+		threads.shutdown();
+		if (pipeline != null) {
+			pipeline.shutdown();
+		}
+		updater.shutdown();
+	}
+
 	/** Starts the McRunnables' threads. */
 	private void startThreads() {
 		if (keepRunning) {
 			return; // If the threads were already running, do nothing
 		}
-		SearchNode root = getRoot();
-		if(!root.biasUpdated()){
-			getMcRunnable(0).copyDataFrom(board);
-			root.updateBias(getMcRunnable(0));
-		}
+		updateRootBias();
+		budget.reset();
 		keepRunning = true;
-		int n = runnables.length; // # of threads
-		latch = new CountDownLatch(n);
-		executor = Executors.newFixedThreadPool(n);
-		for (int i = 0; i < n; i++) {
-			executor.execute(runnables[i]);
-		}
-		executor.shutdown();
+		threads.resume();
 	}
 
 	/** Stops the McRunnables' threads. */
@@ -459,7 +630,10 @@ public final class Player {
 		}
 		try {
 			keepRunning = false;
-			latch.await();
+			threads.awaitPause();
+			if (pipeline != null) {
+				pipeline.awaitDrained();
+			}
 		} catch (final InterruptedException e) {
 			e.printStackTrace();
 			System.exit(1);
@@ -500,9 +674,23 @@ public final class Player {
 		return true;
 	}
 
-	/** Incorporate the result of a run in the tree. */
+	/** Updates the bias of the root, if that has not yet been done. */
+	private void updateRootBias() {
+		final SearchNode root = getRoot();
+		if (!root.biasUpdated()) {
+			getMcRunnable(0).copyDataFrom(board);
+			root.updateBias(getMcRunnable(0));
+		}
+	}
+
+	/**
+	 * Incorporate the result of a run in the tree. While search is running
+	 * with a PlayoutPipeline, the run is handed to an updater thread instead.
+	 */
 	public void updateTree(Color winner, McRunnable mcRunnable) {
-		updater.updateTree(winner, mcRunnable);
+		if (!(keepRunning && mcRunnable.publishPlayout(winner))) {
+			updater.updateTree(winner, mcRunnable);
+		}
 	}
 
 }
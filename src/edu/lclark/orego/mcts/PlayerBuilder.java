@@ -12,18 +12,66 @@ import edu.lclark.orego.time.UniformTimeManager;
 @SuppressWarnings("hiding")
 public final class PlayerBuilder {
 
+	/**
+	 * True if node statistics should be stored in a NodeArena rather than in
+	 * per-node arrays.
+	 */
+	private boolean arena;
+
 	private int biasDelay;
 
+	/**
+	 * True if playouts should draw random moves from bit sets kept by the
+	 * filter's predicates.
+	 */
+	private boolean bitFilters;
+
 	private boolean book;
 
+	/** True if the descender should compute all search values at once. */
+	private boolean bulkEvaluation;
+
+	/**
+	 * Runs through a node between rebuilds of its candidate list, or 0 if
+	 * candidate lists are not used.
+	 */
+	private int candidateRefresh;
+
+	/** True if the transposition table should use lock-free slot claiming. */
+	private boolean concurrentTable;
+
 	private boolean coupDeGrace;
 
+	/**
+	 * Playouts per move in a deterministic search, or 0 if searches are
+	 * timed.
+	 */
+	private int deterministicPlayouts;
+
+	/**
+	 * Nodes with fewer than this many runs may be evicted from the
+	 * transposition table during search. 0 turns eviction off.
+	 */
+	private int evictionThreshold;
+
 	private int gestation;
 
 	private double komi;
 
+	/**
+	 * True if McRunnables roll their boards back after each run instead of
+	 * copying the player's board.
+	 */
+	private boolean journaledBoards;
+
 	private boolean lgrf2;
 
+	/**
+	 * True if sweeping unreachable nodes is left to the search threads after
+	 * each move.
+	 */
+	private boolean lazySweep;
+
 	private String managerType;
 
 	/** Amount of memory allocated to Orego, in megabytes. The transposition table is scaled accordingly. */
@@ -31,17 +79,60 @@ public final class PlayerBuilder {
 
 	private int msecPerMove;
 
+	/** Maximum tree nodes allocated per search, or 0 for no limit. */
+	private int nodeBudget;
+
+	/**
+	 * True if marking and sweeping are split across the threads that run the
+	 * McRunnables.
+	 */
+	private boolean parallelReclaim;
+
+	/** Playouts per search, or 0 for no limit. */
+	private int playoutBudget;
+
+	/** Kind of random number generator: "mersenne" or "xoshiro". */
+	private String randomGenerator;
+
 	private boolean rave;
 
+	/**
+	 * Seed for the McRunnables' random number generators, or 0 to seed them
+	 * from the clock.
+	 */
+	private long seed;
+
+	/**
+	 * True if nodes should keep sparse statistics until they have enough runs.
+	 * Implies arena.
+	 */
+	private boolean sparseNodes;
+
 	private int threads;
 
 	private boolean ponder;
 
+	/** True if search stops once the best move cannot be overtaken. */
+	private boolean unassailable;
+
+	/**
+	 * Number of threads that apply playouts to the tree. 0 means each
+	 * McRunnable updates the tree itself.
+	 */
+	private int updaterThreads;
+
+	/** True if descent should add virtual losses. */
+	private boolean virtualLoss;
+
+	/** True if playouts should draw moves from a WeightedMover. */
+	private boolean weightedPlayouts;
+
 	private int width;
 
 	public PlayerBuilder() {
 		// Default values
 		biasDelay = 800;
+		bitFilters = false;
 		gestation = 4;
 		komi = 7.5;
 		threads = 2;
@@ -51,9 +142,36 @@ public final class PlayerBuilder {
 		ponder = false;
 		book = true;
 		managerType = "uniform";
+		randomGenerator = "mersenne";
+		seed = 0;
+		deterministicPlayouts = 0;
 		coupDeGrace = false;
 		lgrf2 = true;
 		rave = true;
+		concurrentTable = false;
+		virtualLoss = false;
+		arena = false;
+		sparseNodes = false;
+		evictionThreshold = 0;
+		parallelReclaim = false;
+		lazySweep = false;
+		unassailable = false;
+		journaledBoards = false;
+		updaterThreads = 0;
+		candidateRefresh = 0;
+		bulkEvaluation = false;
+		weightedPlayouts = false;
+	}
+
+	/**
+	 * Sets whether node statistics are stored in a few large arrays shared by
+	 * all nodes.
+	 *
+	 * @see NodeArena
+	 */
+	public PlayerBuilder arena(boolean arena) {
+		this.arena = arena;
+		return this;
 	}
 
 	public PlayerBuilder biasDelay(int biasDelay) {
@@ -61,6 +179,18 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets whether playout moves (other than suggested ones) are drawn from
+	 * incrementally updated bit sets of feasible points, instead of by probing
+	 * vacant points. This implies lgrf2.
+	 *
+	 * @see CopiableStructureFactory#lgrfWithBitFilters(int, double)
+	 */
+	public PlayerBuilder bitFilters(boolean bitFilters) {
+		this.bitFilters = bitFilters;
+		return this;
+	}
+
 	public PlayerBuilder boardWidth(int width) {
 		this.width = width;
 		return this;
@@ -68,27 +198,50 @@ public final class PlayerBuilder {
 
 	/** Creates the Player. */
 	public Player build() {
-		final CopiableStructure copyStructure = lgrf2 ? CopiableStructureFactory.lgrfWithBias(width,
-				komi) : CopiableStructureFactory.useWithBias(width, komi);
+		final CopiableStructure copyStructure;
+		if (weightedPlayouts) {
+			copyStructure = CopiableStructureFactory.weighted(width, komi);
+		} else if (bitFilters) {
+			copyStructure = CopiableStructureFactory.lgrfWithBitFilters(width, komi);
+		} else if (lgrf2) {
+			copyStructure = CopiableStructureFactory.lgrfWithBias(width, komi);
+		} else {
+			copyStructure = CopiableStructureFactory.useWithBias(width, komi);
+		}
 		final Player result = new Player(threads, copyStructure);
 		final Board board = result.getBoard();
 		final CoordinateSystem coords = board.getCoordinateSystem();
 		TranspositionTable table;
-		if (rave) {
+		AbstractDescender descender;
+		if (arena || sparseNodes) {
+			table = new TranspositionTable(new NodeArena(memorySize, coords, rave,
+					sparseNodes), coords, concurrentTable);
+		} else if (rave) {
 			table = new TranspositionTable(memorySize, new RaveNodeBuilder(coords),
-					coords);
-			result.setTreeDescender(new RaveDescender(board, table, biasDelay));
+					coords, concurrentTable);
 		} else {
 			table = new TranspositionTable(memorySize, new SimpleSearchNodeBuilder(coords),
-					coords);
-			result.setTreeDescender(new UctDescender(board, table, biasDelay));
+					coords, concurrentTable);
 		}
+		table.setEvictionThreshold(evictionThreshold);
+		table.setRunEpochs(result.getRunEpochs());
+		if (rave) {
+			descender = new RaveDescender(board, table, biasDelay);
+		} else {
+			descender = new UctDescender(board, table, biasDelay);
+		}
+		descender.setVirtualLoss(virtualLoss);
+		descender.setCandidateRefresh(candidateRefresh);
+		descender.setBulkEvaluation(bulkEvaluation);
+		result.setTreeDescender(descender);
+		final TreeReclaimer reclaimer = new TreeReclaimer(table,
+				parallelReclaim ? result.getSearchThreads() : null, lazySweep);
 		TreeUpdater updater;
 		if (lgrf2) {
-			updater = new LgrfUpdater(new SimpleTreeUpdater(board, table, gestation),
-					copyStructure.get(LgrfTable.class));
+			updater = new LgrfUpdater(new SimpleTreeUpdater(board, table, gestation,
+					reclaimer), copyStructure.get(LgrfTable.class));
 		} else {
-			updater = new SimpleTreeUpdater(board, table, gestation);
+			updater = new SimpleTreeUpdater(board, table, gestation, reclaimer);
 		}
 		if (managerType.equals("exiting")) {
 			result.setTimeManager(new ExitingTimeManager(result));
@@ -98,23 +251,86 @@ public final class PlayerBuilder {
 			result.setTimeManager(new SimpleTimeManager(msecPerMove));
 		}
 		result.setCoupDeGrace(coupDeGrace);
+		result.setUnassailable(unassailable);
+		result.setJournaledBoards(journaledBoards);
 		if (book && width == 19) {
 			result.setOpeningBook(new FusekiBook());
 		} else {
 			result.setOpeningBook(new DoNothing());
 		}
 		result.setTreeUpdater(updater);
+		if (updaterThreads > 0) {
+			result.setUpdaterThreads(updaterThreads, copyStructure);
+		}
+		long randomSeed = seed;
+		if (randomSeed == 0 && deterministicPlayouts > 0) {
+			// Deterministic search needs fixed seeds
+			randomSeed = 1;
+		}
+		if (!randomGenerator.equals("mersenne") || randomSeed != 0) {
+			result.setRandomGenerators(randomGenerator.equals("xoshiro"),
+					randomSeed != 0 ? randomSeed : System.nanoTime());
+		}
+		result.setDeterministicPlayouts(deterministicPlayouts);
 		result.setMsecPerMove(msecPerMove);
+		result.setPlayoutBudget(playoutBudget);
+		result.setNodeBudget(nodeBudget);
 		result.ponder(ponder);
 		result.clear();
 		return result;
 	}
 
+	/**
+	 * Sets whether the descender computes the search values of all moves from
+	 * a node at once.
+	 */
+	public PlayerBuilder bulkEvaluation(boolean bulk) {
+		this.bulkEvaluation = bulk;
+		return this;
+	}
+
+	/**
+	 * Sets the number of runs through a node between rebuilds of its candidate
+	 * list. If 0, descent examines every move at every node.
+	 */
+	public PlayerBuilder candidateRefresh(int runs) {
+		this.candidateRefresh = runs;
+		return this;
+	}
+
+	/** Sets whether the transposition table uses lock-free slot claiming. */
+	public PlayerBuilder concurrentTable(boolean concurrent) {
+		this.concurrentTable = concurrent;
+		return this;
+	}
+
 	public PlayerBuilder coupDeGrace(boolean grace) {
 		this.coupDeGrace = grace;
 		return this;
 	}
 
+	/**
+	 * Sets the number of playouts per move in a deterministic search, whose
+	 * results depend only on the random seed. If no seed has been set, 1 is
+	 * used. If 0 (the default), searches are timed.
+	 *
+	 * @see Player#setDeterministicPlayouts(int)
+	 */
+	public PlayerBuilder deterministicPlayouts(int playouts) {
+		this.deterministicPlayouts = playouts;
+		return this;
+	}
+
+	/**
+	 * Sets the number of runs below which nodes may be evicted from the
+	 * transposition table during search, when it is nearly full. 0 turns
+	 * eviction off.
+	 */
+	public PlayerBuilder evictionThreshold(int runs) {
+		this.evictionThreshold = runs;
+		return this;
+	}
+
 	public PlayerBuilder gestation(int gestation) {
 		this.gestation = gestation;
 		return this;
@@ -125,6 +341,26 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets whether unreachable nodes are swept by the search threads, a little
+	 * at a time, instead of all at once after each move.
+	 */
+	public PlayerBuilder lazySweep(boolean lazy) {
+		this.lazySweep = lazy;
+		return this;
+	}
+
+	/**
+	 * Sets whether each McRunnable returns to the player's position by undoing
+	 * the moves of its last run, instead of copying the whole board.
+	 *
+	 * @see edu.lclark.orego.core.Board#rollBack()
+	 */
+	public PlayerBuilder journaledBoards(boolean journaled) {
+		this.journaledBoards = journaled;
+		return this;
+	}
+
 	public PlayerBuilder lgrf2(boolean lgrf2) {
 		this.lgrf2 = lgrf2;
 		return this;
@@ -140,26 +376,127 @@ public final class PlayerBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets the maximum number of tree nodes allocated in each search. 0 (the
+	 * default) means no limit.
+	 *
+	 * @see Player#setNodeBudget(int)
+	 */
+	public PlayerBuilder nodeBudget(int nodes) {
+		this.nodeBudget = nodes;
+		return this;
+	}
+
 	public PlayerBuilder openingBook(boolean book) {
 		this.book = book;
 		return this;
 	}
 
+	/**
+	 * Sets whether marking and sweeping the tree after each move are split
+	 * across the search threads, which are otherwise idle at that point.
+	 */
+	public PlayerBuilder parallelReclaim(boolean parallel) {
+		this.parallelReclaim = parallel;
+		return this;
+	}
+
+	/**
+	 * Sets the number of playouts in each search. 0 (the default) means no
+	 * limit.
+	 *
+	 * @see Player#setPlayoutBudget(int)
+	 */
+	public PlayerBuilder playoutBudget(int playouts) {
+		this.playoutBudget = playouts;
+		return this;
+	}
+
 	public PlayerBuilder ponder(boolean ponder) {
 		this.ponder = ponder;
 		return this;
 	}
 
+	/**
+	 * Sets the kind of random number generator used by the McRunnables:
+	 * "mersenne" (MersenneTwisterFast, the default) or "xoshiro"
+	 * (XoshiroRandom).
+	 */
+	public PlayerBuilder randomGenerator(String generator) {
+		this.randomGenerator = generator;
+		return this;
+	}
+
 	public PlayerBuilder rave(boolean rave) {
 		this.rave = rave;
 		return this;
 	}
 
+	/**
+	 * Sets the seed for the McRunnables' random number generators. If 0 (the
+	 * default), they are seeded from the clock.
+	 */
+	public PlayerBuilder seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Sets whether nodes store statistics only for the moves they have seen
+	 * until they have enough runs. This implies arena.
+	 *
+	 * @see SparseSearchNode
+	 */
+	public PlayerBuilder sparseNodes(boolean sparse) {
+		this.sparseNodes = sparse;
+		return this;
+	}
+
 	public PlayerBuilder threads(int threads) {
 		this.threads = threads;
 		return this;
 	}
 
+	/**
+	 * Sets whether search stops early once the move with the most wins could
+	 * not be overtaken by the runner-up in the time remaining.
+	 */
+	public PlayerBuilder unassailable(boolean unassailable) {
+		this.unassailable = unassailable;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads that apply finished playouts to the tree. If
+	 * this is 0 (the default), each McRunnable updates the tree itself.
+	 *
+	 * @see PlayoutPipeline
+	 */
+	public PlayerBuilder updaterThreads(int updaterThreads) {
+		this.updaterThreads = updaterThreads;
+		return this;
+	}
+
+	/**
+	 * Sets whether moves chosen during descent are temporarily charged with a
+	 * loss, to spread threads out across the tree.
+	 */
+	public PlayerBuilder virtualLoss(boolean virtualLoss) {
+		this.virtualLoss = virtualLoss;
+		return this;
+	}
+
+	/**
+	 * Sets whether playout moves (other than LGRF replies) are sampled in
+	 * proportion to pattern, atari, and proximity weights.
+	 *
+	 * @see edu.lclark.orego.move.WeightedMover
+	 */
+	public PlayerBuilder weightedPlayouts(boolean weighted) {
+		this.weightedPlayouts = weighted;
+		return this;
+	}
+
 	/** Sets the type of time manager to use, e.g., "exiting" or "uniform". */
 	public PlayerBuilder timeManagement(String managerType) {
 		this.managerType = managerType;
@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.lclark.orego.util.XoshiroRandom;
+
 public class PlayerBuilderTest {
 
 	private PlayerBuilder builder;
@@ -22,6 +24,43 @@ public class PlayerBuilderTest {
 		assertEquals(19, builder.build().getBoard().getCoordinateSystem().getWidth());
 	}
 
+	@Test
+	public void testBulkEvaluation() {
+		assertFalse(((AbstractDescender) builder.build().getDescender()).isBulkEvaluation());
+		builder.bulkEvaluation(true);
+		assertTrue(((AbstractDescender) builder.build().getDescender()).isBulkEvaluation());
+	}
+
+	@Test
+	public void testCandidateRefresh() {
+		assertEquals(0, ((AbstractDescender) builder.build().getDescender()).getCandidateRefresh());
+		builder.candidateRefresh(16);
+		assertEquals(16, ((AbstractDescender) builder.build().getDescender()).getCandidateRefresh());
+	}
+
+	@Test
+	public void testBudgets() {
+		final Player player = builder.memorySize(64).playoutBudget(500)
+				.nodeBudget(200).build();
+		assertEquals(500, player.getBudget().getPlayoutLimit());
+		assertEquals(200, player.getBudget().getNodeLimit());
+	}
+
+	@Test
+	public void testRandomGenerator() {
+		builder.memorySize(64).randomGenerator("xoshiro").seed(5);
+		final Player player1 = builder.build();
+		final Player player2 = builder.build();
+		assertTrue(player1.getMcRunnable(0).getRandom() instanceof XoshiroRandom);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(player1.getMcRunnable(0).getRandom().nextInt(), player2
+					.getMcRunnable(0).getRandom().nextInt());
+		}
+		// Each runnable has its own stream
+		assertTrue(player1.getMcRunnable(0).getRandom().nextLong() != player1
+				.getMcRunnable(1).getRandom().nextLong());
+	}
+
 	@Test
 	public void testKomi() {
 		builder.komi(3.5);
@@ -52,4 +91,21 @@ public class PlayerBuilderTest {
 		assertEquals(173, builder.build().getDescender().getBiasDelay());				
 	}
 
+	@Test
+	public void testVirtualLoss() {
+		assertFalse(((AbstractDescender) builder.build().getDescender()).isVirtualLoss());
+		builder.virtualLoss(true);
+		assertTrue(((AbstractDescender) builder.build().getDescender()).isVirtualLoss());
+	}
+
+	@Test
+	public void testWeightedPlayouts() {
+		builder.boardWidth(9).weightedPlayouts(true);
+		final Player player = builder.build();
+		for (int i = 0; i < 10; i++) {
+			player.getMcRunnable(0).performMcRun();
+		}
+		assertEquals(10, player.getMcRunnable(0).getPlayoutsCompleted());
+	}
+
 }
@@ -45,6 +45,197 @@ public class PlayerTest {
 		assertEquals(at("e3"), move);
 	}
 
+	@Test
+	public void testConcurrentTable() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5).memorySize(64)
+				.openingBook(false).concurrentTable(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+	}
+
+	@Test
+	public void testDeterministic() {
+		final Player[] players = new Player[2];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = new PlayerBuilder().threads(4).boardWidth(5).memorySize(64)
+					.openingBook(false).deterministicPlayouts(200).seed(7).build();
+		}
+		final short first = players[0].bestMove();
+		assertEquals(first, players[1].bestMove());
+		assertEquals(200, players[0].getPlayoutCount());
+		assertEquals(200, players[1].getPlayoutCount());
+		final SearchNode[] roots = {players[0].getRoot(), players[1].getRoot()};
+		assertEquals(roots[0].getTotalRuns(), roots[1].getTotalRuns());
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(roots[0].getRuns(p), roots[1].getRuns(p));
+			assertEquals(roots[0].getWins(p), roots[1].getWins(p), 0.0);
+		}
+		// The search continues deterministically on later moves
+		for (final Player p : players) {
+			p.acceptMove(first);
+		}
+		assertEquals(players[0].bestMove(), players[1].bestMove());
+		assertEquals(400, players[0].getPlayoutCount());
+	}
+
+	@Test
+	public void testDeterministicNodeBudget() {
+		player = new PlayerBuilder().threads(2).boardWidth(5).memorySize(16)
+				.openingBook(false).deterministicPlayouts(500).seed(7)
+				.nodeBudget(50).build();
+		final TranspositionTable table = ((AbstractDescender) player
+				.getDescender()).getTable();
+		player.getRoot();
+		final int before = table.getNodesInUse();
+		player.bestMove();
+		assertEquals(50, table.getNodesInUse() - before);
+		// The budget is renewed for the next search
+		player.acceptMove(at("c3"));
+		final int after = table.getNodesInUse();
+		player.bestMove();
+		assertTrue(table.getNodesInUse() > after);
+	}
+
+	@Test
+	public void testPlayoutBudget() {
+		player = new PlayerBuilder().msecPerMove(10000).threads(4).boardWidth(5)
+				.memorySize(16).openingBook(false).playoutBudget(1000).build();
+		final long start = System.currentTimeMillis();
+		player.bestMove();
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(1000, player.getPlayoutCount());
+		player.acceptMove(at("c3"));
+		player.bestMove();
+		assertEquals(2000, player.getPlayoutCount());
+	}
+
+	@Test
+	public void testNodeBudget() {
+		player = new PlayerBuilder().msecPerMove(10000).threads(4).boardWidth(5)
+				.memorySize(16).openingBook(false).nodeBudget(100).build();
+		final TranspositionTable table = ((AbstractDescender) player
+				.getDescender()).getTable();
+		// The root is allocated before the search starts
+		player.getRoot();
+		final int before = table.getNodesInUse();
+		final long start = System.currentTimeMillis();
+		player.bestMove();
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(100, table.getNodesInUse() - before);
+	}
+
+	@Test
+	public void testUpdaterThreads() {
+		player = new PlayerBuilder().msecPerMove(500).threads(2).boardWidth(5).memorySize(64)
+				.openingBook(false).updaterThreads(1).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+		// Every playout reached the tree before bestMove returned
+		int runs = player.getRoot().getTotalRuns();
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			// Let the test proceed
+		}
+		assertEquals(runs, player.getRoot().getTotalRuns());
+	}
+
+	@Test
+	public void testBitFilters() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5).memorySize(16)
+				.openingBook(false).bitFilters(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+	}
+
+	@Test
+	public void testJournaledBoards() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5).memorySize(64)
+				.openingBook(false).journaledBoards(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+	}
+
+	@Test
+	public void testParallelReclaim() {
+		player = new PlayerBuilder().msecPerMove(50).threads(2).boardWidth(5).memorySize(16)
+				.openingBook(false).parallelReclaim(true).build();
+		final TranspositionTable table = ((AbstractDescender) player
+				.getDescender()).getTable();
+		player.bestMove();
+		final int before = table.getNodesInUse();
+		player.acceptMove(at("c3"));
+		// The idle search threads swept the nodes no longer reachable
+		assertTrue(table.getNodesInUse() < before);
+		assertNotNull(player.getRoot());
+		player.bestMove();
+		assertTrue(table.getNodesInUse() > 0);
+	}
+
+	@Test
+	public void testArena() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5).memorySize(64)
+				.openingBook(false).arena(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+	}
+
+	@Test
+	public void testSparseNodes() {
+		player = new PlayerBuilder().msecPerMove(100).threads(4).boardWidth(5).memorySize(64)
+				.openingBook(false).sparseNodes(true).build();
+		String[] before = {
+				".##OO",
+				".#OO.",
+				".#O..",
+				".#OO.",
+				".##OO",
+		};
+		player.getBoard().setUpProblem(before, BLACK);
+		short move = player.bestMove();
+		assertEquals(at("e3"), move);
+	}
+
 	@Test
 	public void testFilter() {
 		String[] before = {
@@ -106,6 +297,55 @@ public class PlayerTest {
 		assertEquals(asOneString(after), player.getBoard().toString());
 	}
 
+	@Test
+	public void testUnassailable() {
+		player = new PlayerBuilder().msecPerMove(5000).threads(2).boardWidth(5)
+				.memorySize(64).openingBook(false).unassailable(true).build();
+		coords = player.getBoard().getCoordinateSystem();
+		player.getRoot().update(at("c3"), 100000000, 100000000);
+		long start = System.currentTimeMillis();
+		assertEquals(at("c3"), player.bestMove());
+		assertTrue(System.currentTimeMillis() - start < 2500);
+	}
+
+	@Test
+	public void testThreadsPersistAcrossSearches() {
+		player = new PlayerBuilder().msecPerMove(50).threads(2).boardWidth(5)
+				.openingBook(false).build();
+		assertNull(player.getSearchThreads().getThread(0));
+		player.bestMove();
+		Thread first = player.getSearchThreads().getThread(0);
+		assertNotNull(first);
+		int playouts = player.getPlayoutCount();
+		player.acceptMove(at("c3"));
+		player.bestMove();
+		assertSame(first, player.getSearchThreads().getThread(0));
+		assertTrue(first.isAlive());
+		assertTrue(player.getPlayoutCount() > playouts);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRunnableConstructionFailure() {
+		// There are no Suggesters or Mover, so the McRunnables cannot be built
+		new Player(2, CopiableStructureFactory.basicParts(5, 7.5));
+	}
+
+	@Test
+	public void testShutdown() throws InterruptedException {
+		player = new PlayerBuilder().msecPerMove(50).threads(2).boardWidth(5)
+				.memorySize(16).openingBook(false).updaterThreads(1).build();
+		player.bestMove();
+		Thread thread = player.getSearchThreads().getThread(0);
+		Thread updater = player.getPipeline().getThread(0);
+		assertTrue(thread.isAlive());
+		assertTrue(updater.isAlive());
+		player.shutdown();
+		thread.join(5000);
+		updater.join(5000);
+		assertFalse(thread.isAlive());
+		assertFalse(updater.isAlive());
+	}
+
 	@Test
 	public void testGetPlayouts() {
 		player.clear();
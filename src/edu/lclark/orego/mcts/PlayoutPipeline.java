@@ -0,0 +1,151 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves tree updates off the playout threads. Each McRunnable publishes its
+ * finished playouts to its own PlayoutRing (see Player.updateTree), and one or more updater threads
+ * apply them to the tree in batches. This keeps the playout threads from
+ * contending for node and table locks. If a ring is full, the McRunnable
+ * updates the tree itself rather than waiting.
+ * <p>
+ * Each ring is drained by exactly one updater thread. Each updater thread
+ * replays records through its own McRunnable, which never runs playouts, so
+ * the TreeUpdaters and SearchNodes need not know where the playouts came from.
+ * <p>
+ * The updater threads are daemons. They park briefly whenever there is
+ * nothing to do, and exit after shutdown().
+ */
+final class PlayoutPipeline {
+
+	/** Largest number of records taken from one ring at a time. */
+	private static final int BATCH_SIZE = 32;
+
+	/**
+	 * Nanoseconds an updater thread sleeps when it finds nothing to do. After
+	 * IDLE_PASSES such passes, it sleeps IDLE_NANOS_LONG instead.
+	 */
+	private static final long IDLE_NANOS = 20_000;
+
+	/** @see #IDLE_NANOS */
+	private static final long IDLE_NANOS_LONG = 1_000_000;
+
+	/** @see #IDLE_NANOS */
+	private static final int IDLE_PASSES = 1000;
+
+	private final Player player;
+
+	/** One ring per McRunnable, in the same order. */
+	private final PlayoutRing[] rings;
+
+	/** True once the updater threads should exit. */
+	private volatile boolean stopped;
+
+	/** The updater threads. */
+	private final Thread[] threads;
+
+	/**
+	 * True while some thread is in awaitDrained(), so the updater threads
+	 * notify this pipeline after each pass.
+	 */
+	private volatile boolean waiting;
+
+	/**
+	 * @param replays
+	 *            One McRunnable per updater thread, used only to replay
+	 *            records.
+	 */
+	PlayoutPipeline(Player player, McRunnable[] replays) {
+		this.player = player;
+		rings = new PlayoutRing[player.getNumberOfThreads()];
+		for (int i = 0; i < rings.length; i++) {
+			rings[i] = new PlayoutRing(player.getBoard().getCoordinateSystem());
+			player.getMcRunnable(i).setPlayoutRing(rings[i]);
+		}
+		threads = new Thread[replays.length];
+		for (int i = 0; i < replays.length; i++) {
+			final int first = i;
+			final int step = replays.length;
+			final McRunnable replay = replays[i];
+			threads[i] = new Thread("Tree updater " + i) {
+				@Override
+				public void run() {
+					consume(first, step, replay);
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Waits until every published playout has been applied to the tree. The
+	 * updater threads wake us after each pass over their rings.
+	 */
+	synchronized void awaitDrained() throws InterruptedException {
+		waiting = true;
+		try {
+			while (!isDrained()) {
+				wait();
+			}
+		} finally {
+			waiting = false;
+		}
+	}
+
+	/**
+	 * Repeatedly drains rings first, first + step, first + 2 * step, etc.,
+	 * until shutdown() is called.
+	 */
+	private void consume(int first, int step, McRunnable replay) {
+		int idle = 0;
+		while (!stopped) {
+			int applied = 0;
+			replay.enterRun();
+			for (int i = first; i < rings.length; i += step) {
+				applied += rings[i].drain(player.getUpdater(), replay,
+						BATCH_SIZE);
+			}
+			replay.exitRun();
+			if (waiting) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+			if (applied > 0) {
+				idle = 0;
+			} else {
+				idle++;
+				LockSupport.parkNanos(idle < IDLE_PASSES ? IDLE_NANOS
+						: IDLE_NANOS_LONG);
+			}
+		}
+	}
+
+	/** Returns the ith updater thread. For testing. */
+	Thread getThread(int i) {
+		return threads[i];
+	}
+
+	/** Returns true if every ring is empty. */
+	private boolean isDrained() {
+		for (final PlayoutRing ring : rings) {
+			if (!ring.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the updater threads exit. Any playouts not yet applied are
+	 * discarded.
+	 */
+	void shutdown() {
+		stopped = true;
+		for (final Thread thread : threads) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+}
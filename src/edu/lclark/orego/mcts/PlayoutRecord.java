@@ -0,0 +1,67 @@
+package edu.lclark.orego.mcts;
+
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Everything a TreeUpdater needs to know about one finished playout: the moves
+ * played, the fancy hashes of the positions visited in the tree, and the
+ * winner. Records are preallocated in a PlayoutRing and overwritten in place.
+ */
+final class PlayoutRecord {
+
+	/**
+	 * Fancy hashes, indexed by turn. Only the elements from startTurn to turn
+	 * (inclusive) are valid.
+	 */
+	private final long[] fancyHashes;
+
+	/** Moves played, from the beginning of the game. */
+	private final ShortList moves;
+
+	/** Turn on the player's real board when the playout started. */
+	private int startTurn;
+
+	/** Turn at the end of the playout. */
+	private int turn;
+
+	private Color winner;
+
+	PlayoutRecord(CoordinateSystem coords) {
+		fancyHashes = new long[coords.getMaxMovesPerGame() + 1];
+		moves = new ShortList(coords.getMaxMovesPerGame());
+	}
+
+	/** Copies the playout just completed by runnable into this record. */
+	void copyFrom(McRunnable runnable, Color winner) {
+		this.winner = winner;
+		startTurn = runnable.getPlayer().getBoard().getTurn();
+		turn = runnable.getTurn();
+		runnable.getHistoryObserver().copyMovesTo(moves);
+		System.arraycopy(runnable.getFancyHashes(), startTurn, fancyHashes,
+				startTurn, turn - startTurn + 1);
+	}
+
+	/** @see #fancyHashes */
+	long[] getFancyHashes() {
+		return fancyHashes;
+	}
+
+	ShortList getMoves() {
+		return moves;
+	}
+
+	int getStartTurn() {
+		return startTurn;
+	}
+
+	int getTurn() {
+		return turn;
+	}
+
+	Color getWinner() {
+		return winner;
+	}
+
+}
@@ -0,0 +1,76 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.lclark.orego.core.Color;
+import edu.lclark.orego.core.CoordinateSystem;
+
+/**
+ * A lock-free ring of PlayoutRecords with a single producer (one McRunnable)
+ * and a single consumer (one updater thread of a PlayoutPipeline). The records
+ * are allocated once and reused, so publishing a playout only copies its
+ * moves and hashes.
+ */
+final class PlayoutRing {
+
+	/** Number of records; a power of two. */
+	static final int CAPACITY = 256;
+
+	/** Number of records published so far. Written only by the producer. */
+	private final AtomicLong head;
+
+	private final PlayoutRecord[] records;
+
+	/** Number of records consumed so far. Written only by the consumer. */
+	private final AtomicLong tail;
+
+	PlayoutRing(CoordinateSystem coords) {
+		records = new PlayoutRecord[CAPACITY];
+		for (int i = 0; i < CAPACITY; i++) {
+			records[i] = new PlayoutRecord(coords);
+		}
+		head = new AtomicLong();
+		tail = new AtomicLong();
+	}
+
+	/**
+	 * Passes up to max records, oldest first, to updater, replaying each
+	 * through replay. Returns the number of records consumed. Called only by
+	 * the consumer.
+	 */
+	int drain(TreeUpdater updater, McRunnable replay, int max) {
+		final long t = tail.get();
+		final int n = (int) Math.min(head.get() - t, max);
+		for (int i = 0; i < n; i++) {
+			final PlayoutRecord record = records[(int) (t + i) & CAPACITY - 1];
+			replay.replay(record);
+			updater.updateTree(record.getWinner(), replay);
+		}
+		if (n > 0) {
+			// The whole batch is released at once
+			tail.lazySet(t + n);
+		}
+		return n;
+	}
+
+	/** Returns true if every published record has been consumed. */
+	boolean isEmpty() {
+		return tail.get() == head.get();
+	}
+
+	/**
+	 * Copies the playout just completed by runnable into the ring. Returns
+	 * false, without copying, if the ring is full. Called only by the
+	 * producer.
+	 */
+	boolean offer(McRunnable runnable, Color winner) {
+		final long h = head.get();
+		if (h - tail.get() == CAPACITY) {
+			return false;
+		}
+		records[(int) h & CAPACITY - 1].copyFrom(runnable, winner);
+		head.lazySet(h + 1);
+		return true;
+	}
+
+}
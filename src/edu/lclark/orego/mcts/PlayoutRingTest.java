@@ -0,0 +1,67 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.StoneColor.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlayoutRingTest {
+
+	private Player player;
+
+	private PlayoutRing ring;
+
+	private TextUpdater textUpdater;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return player.getBoard().getCoordinateSystem().at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		player = new Player(1, CopiableStructureFactory.feasible(5));
+		textUpdater = new TextUpdater();
+		player.setTreeUpdater(textUpdater);
+		ring = new PlayoutRing(player.getBoard().getCoordinateSystem());
+	}
+
+	@Test
+	public void testReplay() {
+		McRunnable runnable = player.getMcRunnable(0);
+		McRunnable replay = new McRunnable(player,
+				CopiableStructureFactory.feasible(5));
+		runnable.acceptMove(at("b1"));
+		runnable.acceptMove(at("c4"));
+		assertTrue(ring.offer(runnable, BLACK));
+		runnable.copyDataFrom(player.getBoard());
+		runnable.acceptMove(at("e5"));
+		assertTrue(ring.offer(runnable, WHITE));
+		assertFalse(ring.isEmpty());
+		assertEquals("", textUpdater.toString());
+		assertEquals(2, ring.drain(textUpdater, replay, 10));
+		assertTrue(ring.isEmpty());
+		assertEquals("BLACK: [B1, C4]\nWHITE: [E5]\n", textUpdater.toString());
+		assertEquals(1, replay.getTurn());
+		assertEquals(runnable.getFancyHashes()[1], replay.getFancyHashes()[1]);
+	}
+
+	@Test
+	public void testFull() {
+		McRunnable runnable = player.getMcRunnable(0);
+		McRunnable replay = new McRunnable(player,
+				CopiableStructureFactory.feasible(5));
+		runnable.acceptMove(at("b1"));
+		for (int i = 0; i < PlayoutRing.CAPACITY; i++) {
+			assertTrue(ring.offer(runnable, BLACK));
+		}
+		assertFalse(ring.offer(runnable, BLACK));
+		assertEquals(10, ring.drain(textUpdater, replay, 10));
+		assertTrue(ring.offer(runnable, BLACK));
+		assertEquals(PlayoutRing.CAPACITY - 9, ring.drain(textUpdater, replay,
+				PlayoutRing.CAPACITY));
+		assertTrue(ring.isEmpty());
+	}
+
+}
@@ -40,13 +40,41 @@ public final class RaveDescender extends AbstractDescender {
 		if (move == PASS) {
 			return node.getWinRate(move);
 		}
-		final RaveNode raveNode = (RaveNode) node;
-		final float c = raveNode.getRuns(move);
-		final float r = raveNode.getWinRate(move);
-		final float rc = raveNode.getRaveRuns(move);
-		final float rr = raveNode.getRaveWinRate(move);
+		final RaveSearchNode raveNode = (RaveSearchNode) node;
+		return searchValue(raveNode.getRuns(move), raveNode.getWinRate(move),
+				raveNode.getRaveRuns(move), raveNode.getRaveWinRate(move));
+	}
+
+	/**
+	 * Returns the search value of a move with c runs, win rate r, rc RAVE runs,
+	 * and RAVE win rate rr.
+	 */
+	private float searchValue(float c, float r, float rc, float rr) {
 		final float coef = raveCoefficient(c, rc);
 		return r * (1 - coef) + rr * coef;
 	}
 
+	/** Computes the same values as searchValue(), for all moves at once. */
+	@Override
+	void searchValues(SearchNode node, SearchValues result) {
+		final int[] runs = result.runs;
+		final float[] wins = result.wins;
+		final int[] raveRuns = result.raveRuns;
+		final float[] raveWins = result.raveWins;
+		final float[] values = result.values;
+		node.getRunsAndWins(runs, wins);
+		((RaveSearchNode) node).getRaveRunsAndWins(raveRuns, raveWins);
+		for (int p = 0; p < values.length; p++) {
+			values[p] = searchValue(runs[p], wins[p] / runs[p], raveRuns[p],
+					raveWins[p] / raveRuns[p]);
+		}
+		// Special cases, as in searchValue()
+		values[PASS] = wins[PASS] / runs[PASS];
+		for (int p = 0; p < values.length; p++) {
+			if (wins[p] == Integer.MIN_VALUE) {
+				values[p] = NEGATIVE_INFINITY;
+			}
+		}
+	}
+
 }
@@ -1,12 +1,14 @@
 package edu.lclark.orego.mcts;
 
 import static org.junit.Assert.*;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.StoneColor.*;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.ShortSet;
 
 public class RaveDescenderTest {
 	
@@ -56,4 +58,23 @@ public class RaveDescenderTest {
 		assertEquals(0.2856f, descender.searchValue(root, at("a2")), 0.01f);
 	}
 
+	@Test
+	public void testSearchValues() {
+		player.acceptMove(at("a1"));
+		RaveNode root = (RaveNode) updater.getRoot();
+		for (int i = 0; i < 20; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.performMcRun();
+		}
+		root.exclude(at("e5"));
+		SearchValues values = runnable.getSearchValues();
+		descender.searchValues(root, values);
+		ShortSet vacantPoints = player.getBoard().getVacantPoints();
+		for (int i = 0; i < vacantPoints.size(); i++) {
+			short p = vacantPoints.get(i);
+			assertEquals(descender.searchValue(root, p), values.values[p], 0.0001f);
+		}
+		assertEquals(descender.searchValue(root, PASS), values.values[PASS], 0.0001f);
+	}
+
 }
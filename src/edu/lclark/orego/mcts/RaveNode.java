@@ -3,24 +3,72 @@ package edu.lclark.orego.mcts;
 import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static java.lang.String.format;
 
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ShortSet;
 
-/** Incorporates RAVE information. */
-public final class RaveNode extends SimpleSearchNode {
+/**
+ * Incorporates RAVE information. RAVE runs and wins are packed and updated
+ * atomically, like the ordinary statistics in SimpleSearchNode.
+ */
+public final class RaveNode extends SimpleSearchNode implements RaveSearchNode {
 
-	/** Number of RAVE runs through each child of this node. */
-	private final int[] raveRuns;
+	/**
+	 * Records RAVE runs in node for the moves made by the player to move at
+	 * node, from turn t to the end of runnable's playout. Only the first move
+	 * at each point counts.
+	 */
+	static void recordRavePlayout(RaveSearchNode node, float winProportion,
+			McRunnable runnable, int t) {
+		final ShortSet playedPoints = runnable.getPlayedPoints();
+		playedPoints.clear();
+		while (t < runnable.getTurn()) {
+			short move = runnable.getHistoryObserver().get(t);
+			if (move != PASS && !playedPoints.contains(move)) {
+				assert runnable.getBoard().getCoordinateSystem()
+						.isOnBoard(move);
+				playedPoints.addKnownAbsent(move);
+				node.addRaveRun(move, winProportion);
+			}
+			t++;
+			if (t >= runnable.getTurn()) {
+				return;
+			}
+			move = runnable.getHistoryObserver().get(t);
+			playedPoints.add(move);
+			t++;
+		}
+	}
+
+	/**
+	 * Index in raveStats of the entry for move 0.
+	 *
+	 * @see SimpleSearchNode#SimpleSearchNode(AtomicLongArray, int, BitVector)
+	 */
+	private final int offset;
 
-	/** RAVE winrate through the children of this node. */
-	private final float[] raveWinRates;
+	/** Packed RAVE runs and wins through each child of this node. */
+	private final AtomicLongArray raveStats;
 
 	public RaveNode(CoordinateSystem coords) {
 		super(coords);
-		raveRuns = new int[coords.getFirstPointBeyondBoard()];
-		raveWinRates = new float[coords.getFirstPointBeyondBoard()];
+		raveStats = new AtomicLongArray(coords.getFirstPointBeyondBoard());
+		offset = 0;
+	}
+
+	/**
+	 * Creates a node whose statistics are stored in stats and raveStats
+	 * starting at index offset.
+	 *
+	 * @see NodeArena
+	 */
+	RaveNode(AtomicLongArray stats, AtomicLongArray raveStats, int offset,
+			BitVector hasChild) {
+		super(stats, offset, hasChild);
+		this.raveStats = raveStats;
+		this.offset = offset;
 	}
 
 	/** Adds a RAVE loss for p. */
@@ -28,15 +76,9 @@ public final class RaveNode extends SimpleSearchNode {
 		addRaveRun(p, 0);
 	}
 
-	/**
-	 * Adds one RAVE playout for p.
-	 * 
-	 * @param w The win rate for this playout, usually 0 for a loss or 1 for a win.
-	 */
+	@Override
 	public void addRaveRun(int p, float w) {
-		raveWinRates[p] = (w + raveWinRates[p] * raveRuns[p])
-				/ (1 + raveRuns[p]);
-		raveRuns[p]++;
+		addToStats(raveStats, offset + p, 1, w);
 	}
 
 	/** Adds a RAVE win for p. */
@@ -47,47 +89,43 @@ public final class RaveNode extends SimpleSearchNode {
 	@Override
 	public void clear(long fancyHash, CoordinateSystem coords) {
 		super.clear(fancyHash, coords);
-		Arrays.fill(raveRuns, 2);
-		Arrays.fill(raveWinRates, 0.5f);
+		final long initial = pack(2, 1);
+		final int end = offset + coords.getFirstPointBeyondBoard();
+		for (int i = offset; i < end; i++) {
+			raveStats.set(i, initial);
+		}
 	}
 
-	/** Returns the number of RAVE runs through move p. */
+	@Override
 	public int getRaveRuns(short p) {
-		return raveRuns[p];
+		return unpackRuns(raveStats.get(offset + p));
+	}
+
+	@Override
+	public void getRaveRunsAndWins(int[] runs, float[] wins) {
+		for (int p = 0; p < runs.length; p++) {
+			final long s = raveStats.get(offset + p);
+			runs[p] = unpackRuns(s);
+			wins[p] = unpackWins(s);
+		}
 	}
 
-	/** Returns the RAVE win rate for move p. */
+	@Override
 	public float getRaveWinRate(short p) {
-		return raveWinRates[p];
+		final long s = raveStats.get(offset + p);
+		return unpackWins(s) / unpackRuns(s);
 	}
 
-	/** Returns the number of RAVE wins through move p. */
+	@Override
 	public float getRaveWins(int p) {
-		return raveWinRates[p] * raveRuns[p];
+		return unpackWins(raveStats.get(offset + p));
 	}
 
 	@Override
 	public void recordPlayout(float winProportion, McRunnable runnable, int t) {
-		final ShortSet playedPoints = runnable.getPlayedPoints();
 		super.recordPlayout(winProportion, runnable, t);
-		playedPoints.clear();
 		// The remaining moves in the sequence are recorded for RAVE
-		while (t < runnable.getTurn()) {
-			short move = runnable.getHistoryObserver().get(t);
-			if (move != PASS && !playedPoints.contains(move)) {
-				assert runnable.getBoard().getCoordinateSystem()
-						.isOnBoard(move);
-				playedPoints.addKnownAbsent(move);
-				addRaveRun(move, winProportion);
-			}
-			t++;
-			if (t >= runnable.getTurn()) {
-				return;
-			}
-			move = runnable.getHistoryObserver().get(t);
-			playedPoints.add(move);
-			t++;
-		}
+		recordRavePlayout(this, winProportion, runnable, t);
 	}
 
 	/**
@@ -134,7 +172,7 @@ public final class RaveNode extends SimpleSearchNode {
 	String toString(short p, CoordinateSystem coords) {
 		return format("%s: %7d/%7d (%1.4f) RAVE %d (%1.4f)\n",
 				coords.toString(p), (int) getWins(p), super.getRuns(p),
-				super.getWinRate(p), raveRuns[p], raveWinRates[p]);
+				super.getWinRate(p), getRaveRuns(p), getRaveWinRate(p));
 	}
 
 }
@@ -0,0 +1,28 @@
+package edu.lclark.orego.mcts;
+
+/** A search node that also keeps Rapid Action Value Estimation statistics. */
+public interface RaveSearchNode extends SearchNode {
+
+	/**
+	 * Adds one RAVE playout for p.
+	 * 
+	 * @param w The win rate for this playout, usually 0 for a loss or 1 for a win.
+	 */
+	public void addRaveRun(int p, float w);
+
+	/** Returns the number of RAVE runs through move p. */
+	public int getRaveRuns(short p);
+
+	/**
+	 * Copies the RAVE runs and wins of every move p from 0 up to runs.length
+	 * into runs[p] and wins[p].
+	 */
+	public void getRaveRunsAndWins(int[] runs, float[] wins);
+
+	/** Returns the RAVE win rate for move p. */
+	public float getRaveWinRate(short p);
+
+	/** Returns the number of RAVE wins through move p. */
+	public float getRaveWins(int p);
+
+}
@@ -0,0 +1,96 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tells a TranspositionTable when no run can still hold a reference to a node
+ * it has evicted, so that the node's slot can safely be reused.
+ * <p>
+ * Each McRunnable registers as a Participant and announces the current epoch
+ * when it starts a run (enter()), and withdraws the announcement when the run
+ * ends (exit()). A node retired in epoch e, after which the epoch is advanced,
+ * can only be referenced by runs that announced e or earlier. Once every
+ * announced epoch is later than e, the node can be reused.
+ */
+final class RunEpochs {
+
+	/** The announcement of a Participant that is not in the middle of a run. */
+	static final int IDLE = Integer.MAX_VALUE;
+
+	/** One McRunnable's announcement. */
+	static final class Participant {
+
+		/** The epoch in which the current run started, or IDLE. */
+		private volatile int announced = IDLE;
+
+		private final RunEpochs epochs;
+
+		Participant(RunEpochs epochs) {
+			this.epochs = epochs;
+		}
+
+		/** Announces the start of a run. */
+		void enter() {
+			announced = epochs.current.get();
+		}
+
+		/** Announces the end of a run. */
+		void exit() {
+			announced = IDLE;
+		}
+
+	}
+
+	/** The current epoch. */
+	private final AtomicInteger current;
+
+	/** All registered Participants. */
+	private final CopyOnWriteArrayList<Participant> participants;
+
+	RunEpochs() {
+		current = new AtomicInteger();
+		participants = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * Ends the current epoch. Nodes retired before this call may be reused
+	 * once isSafe() says so.
+	 */
+	void advance() {
+		current.incrementAndGet();
+	}
+
+	/** Returns the current epoch, in which nodes retired now are recorded. */
+	int getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Returns the earliest epoch announced by any run in progress, or IDLE if
+	 * no run is in progress.
+	 */
+	int getOldestAnnounced() {
+		int result = IDLE;
+		for (final Participant p : participants) {
+			result = Math.min(result, p.announced);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if a node retired in epoch retired can be reused, given
+	 * the value of getOldestAnnounced().
+	 */
+	static boolean isSafe(int retired, int oldestAnnounced) {
+		return retired < oldestAnnounced;
+	}
+
+	/** Registers a new Participant. */
+	Participant register() {
+		final Participant result = new Participant(this);
+		participants.add(result);
+		return result;
+	}
+
+}
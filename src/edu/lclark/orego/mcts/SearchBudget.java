@@ -0,0 +1,159 @@
+package edu.lclark.orego.mcts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits a search by the number of playouts completed and/or the number of
+ * tree nodes allocated, so that search effort can be expressed in fixed
+ * computational units rather than time. The SearchController stops the search
+ * as soon as either limit (or the time limit) is reached. A limit of 0 means no
+ * limit.
+ * <p>
+ * To keep contention on the shared counter low, McRunnables claim playouts in
+ * chunks of up to CHUNK. Every claimed playout is completed before the budget
+ * counts as exhausted, so (unless time runs out first) exactly the budgeted
+ * number of playouts is run. Nodes are claimed one at a time, but far fewer
+ * nodes are allocated than playouts are run. The TranspositionTable claims a
+ * node only at the moment it allocates one, and gives the claim back if
+ * another thread takes the slot first, so (unless time runs out first) exactly
+ * the budgeted number of nodes is allocated.
+ *
+ * @see Player#setNodeBudget(int)
+ * @see Player#setPlayoutBudget(int)
+ */
+final class SearchBudget {
+
+	/** Maximum number of playouts a McRunnable claims at once. */
+	static final int CHUNK = 16;
+
+	/** Number of playouts completed in the current search. */
+	private final AtomicInteger completed;
+
+	/** Told to stop the search when the budget is exhausted. */
+	private final SearchController controller;
+
+	/** True once some limit of the current search has been reached. */
+	private volatile boolean exhausted;
+
+	/** Maximum nodes allocated per search, or 0 for no limit. */
+	private int nodeLimit;
+
+	/** Nodes that may still be allocated in the current search. */
+	private final AtomicInteger nodesLeft;
+
+	/** Maximum playouts per search, or 0 for no limit. */
+	private int playoutLimit;
+
+	/** Playouts that have not yet been claimed in the current search. */
+	private final AtomicInteger playoutsLeft;
+
+	/** Number of McRunnables sharing this budget. */
+	private final int threads;
+
+	SearchBudget(SearchController controller, int threads) {
+		this.controller = controller;
+		this.threads = threads;
+		completed = new AtomicInteger();
+		nodesLeft = new AtomicInteger();
+		playoutsLeft = new AtomicInteger();
+	}
+
+	/**
+	 * Claims permission to allocate one tree node. Returns false (and ends the
+	 * search) if the node budget is used up.
+	 */
+	boolean claimNode() {
+		if (nodeLimit == 0) {
+			return true;
+		}
+		while (true) {
+			final int left = nodesLeft.get();
+			if (left <= 0) {
+				exhaust();
+				return false;
+			}
+			if (nodesLeft.compareAndSet(left, left - 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Claims some playouts for a McRunnable and returns how many. Returns 0 if
+	 * all playouts in the budget have been claimed.
+	 */
+	int claimPlayouts() {
+		if (playoutLimit == 0) {
+			return Integer.MAX_VALUE;
+		}
+		while (true) {
+			final int left = playoutsLeft.get();
+			if (left <= 0) {
+				return 0;
+			}
+			// Smaller chunks near the end keep the threads evenly loaded
+			final int n = Math.min(CHUNK, Math.max(1, left / threads));
+			if (playoutsLeft.compareAndSet(left, left - n)) {
+				return n;
+			}
+		}
+	}
+
+	/**
+	 * Records that a McRunnable has completed n of the playouts it claimed.
+	 * Ends the search if all budgeted playouts are complete.
+	 */
+	void completePlayouts(int n) {
+		if (playoutLimit > 0 && completed.addAndGet(n) >= playoutLimit) {
+			exhaust();
+		}
+	}
+
+	/** Marks the budget as exhausted and wakes the controller. */
+	private void exhaust() {
+		exhausted = true;
+		controller.requestStop();
+	}
+
+	int getNodeLimit() {
+		return nodeLimit;
+	}
+
+	int getPlayoutLimit() {
+		return playoutLimit;
+	}
+
+	/** Returns true if some limit of the current search has been reached. */
+	boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * Gives back a node claimed by claimNode() that was not allocated after
+	 * all.
+	 */
+	void releaseNode() {
+		if (nodeLimit > 0) {
+			nodesLeft.incrementAndGet();
+		}
+	}
+
+	/** Makes the whole budget available for a new search. */
+	void reset() {
+		completed.set(0);
+		nodesLeft.set(nodeLimit);
+		playoutsLeft.set(playoutLimit);
+		exhausted = false;
+	}
+
+	/** Sets the maximum nodes allocated per search. 0 means no limit. */
+	void setNodeLimit(int nodes) {
+		nodeLimit = nodes;
+	}
+
+	/** Sets the maximum playouts per search. 0 means no limit. */
+	void setPlayoutLimit(int playouts) {
+		playoutLimit = playouts;
+	}
+
+}
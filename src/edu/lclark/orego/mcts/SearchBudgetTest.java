@@ -0,0 +1,71 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchBudgetTest {
+
+	private SearchBudget budget;
+
+	@Before
+	public void setUp() throws Exception {
+		budget = new SearchBudget(new SearchController(), 2);
+	}
+
+	@Test
+	public void testNoLimits() {
+		budget.reset();
+		assertEquals(Integer.MAX_VALUE, budget.claimPlayouts());
+		assertTrue(budget.claimNode());
+		budget.completePlayouts(1000000);
+		assertFalse(budget.isExhausted());
+	}
+
+	@Test
+	public void testClaimPlayouts() {
+		budget.setPlayoutLimit(40);
+		budget.reset();
+		int total = 0;
+		int n = budget.claimPlayouts();
+		while (n > 0) {
+			assertTrue(n <= SearchBudget.CHUNK);
+			total += n;
+			n = budget.claimPlayouts();
+		}
+		assertEquals(40, total);
+		assertFalse(budget.isExhausted());
+		budget.completePlayouts(39);
+		assertFalse(budget.isExhausted());
+		budget.completePlayouts(1);
+		assertTrue(budget.isExhausted());
+		// A new search gets the whole budget again
+		budget.reset();
+		assertFalse(budget.isExhausted());
+		assertEquals(SearchBudget.CHUNK, budget.claimPlayouts());
+	}
+
+	@Test
+	public void testClaimNode() {
+		budget.setNodeLimit(3);
+		budget.reset();
+		for (int i = 0; i < 3; i++) {
+			assertTrue(budget.claimNode());
+		}
+		assertFalse(budget.isExhausted());
+		assertFalse(budget.claimNode());
+		assertTrue(budget.isExhausted());
+	}
+
+	@Test
+	public void testReleaseNode() {
+		budget.setNodeLimit(1);
+		budget.reset();
+		assertTrue(budget.claimNode());
+		budget.releaseNode();
+		assertTrue(budget.claimNode());
+		assertFalse(budget.claimNode());
+	}
+
+}
@@ -0,0 +1,205 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.experiment.Logging.log;
+import edu.lclark.orego.time.TimeManager;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Decides when to stop a search that is running continuously. The thread that
+ * calls one of the awaitStop methods acts as a monitor: it wakes every
+ * POLL_MSEC milliseconds to check the elapsed time and any early-stopping
+ * rules, and returns as soon as one of them says to stop. The search threads
+ * are not paused between the time slices handed out by a TimeManager. Any
+ * thread may also call requestStop() to end the wait immediately.
+ * <p>
+ * If stopWhenUnassailable() has been called, search also stops once the move
+ * with the most wins at the root could not be overtaken even if every
+ * remaining playout went to the runner-up and won. The number of remaining
+ * playouts is estimated from the rate measured so far in this search.
+ * <p>
+ * If a SearchBudget has been set, search also stops once that budget is
+ * exhausted.
+ */
+final class SearchController {
+
+	/**
+	 * Minimum time (in msec) a search must run before its playout rate is
+	 * trusted.
+	 */
+	private static final int MIN_MEASURED_MSEC = 20;
+
+	/** Milliseconds between checks of the stopping rules. */
+	static final int POLL_MSEC = 5;
+
+	/**
+	 * The estimate of remaining playouts is multiplied by this, because the
+	 * playout rate tends to rise as the tree warms up.
+	 */
+	private static final double RATE_MARGIN = 1.5;
+
+	/**
+	 * Returns true if the move with the most wins among vacant and PASS at
+	 * root leads the runner-up by more than remainingPlayouts wins.
+	 * <p>
+	 * The wins compared include the prior and bias wins at root. This is safe
+	 * because bestPlayMove also chooses by these raw wins, and the root's bias
+	 * is applied before the threads start, so during the rest of the search
+	 * only playouts add wins, at most one per playout to any move.
+	 */
+	static boolean isUnassailable(SearchNode root, ShortSet vacant,
+			double remainingPlayouts) {
+		float most = root.getWins(PASS);
+		float second = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < vacant.size(); i++) {
+			final float w = root.getWins(vacant.get(i));
+			if (w > most) {
+				second = most;
+				most = w;
+			} else if (w > second) {
+				second = w;
+			}
+		}
+		return most - second > remainingPlayouts;
+	}
+
+	/** Limits on playouts and nodes, or null if there are none. */
+	private SearchBudget budget;
+
+	/**
+	 * Player whose root is examined by the unassailable move rule, or null if
+	 * that rule is off.
+	 */
+	private Player player;
+
+	/** Playouts completed when the current search started. */
+	private long startPlayouts;
+
+	/** Time when the current search started. */
+	private long startTime;
+
+	/** True if some thread has asked for the current search to stop. */
+	private boolean stopRequested;
+
+	/**
+	 * Waits until manager has no more time to give, manager decides to stop
+	 * early, the best move is unassailable, or stop is requested. Time saved
+	 * by the unassailable move rule is handed back to manager.
+	 */
+	void awaitStop(TimeManager manager) {
+		reset();
+		int msec = manager.getMsec();
+		long deadline = System.currentTimeMillis() + msec;
+		while (msec > 0) {
+			final long now = System.currentTimeMillis();
+			if (now >= deadline) {
+				// Start the next slice without stopping the threads
+				msec = manager.getMsec();
+				deadline += msec;
+			} else if (manager.stopEarly((int) (deadline - now))) {
+				break;
+			} else if (isBestMoveUnassailable(now, deadline - now
+					+ manager.getMsecInLaterSlices())) {
+				manager.saveTime((int) (deadline - now));
+				break;
+			} else if (waitForStopRequest(Math.min(POLL_MSEC, deadline - now))) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Waits until msec milliseconds have passed, the best move is
+	 * unassailable, or stop is requested.
+	 */
+	void awaitStop(int msec) {
+		reset();
+		final long deadline = System.currentTimeMillis() + msec;
+		long now = System.currentTimeMillis();
+		while (now < deadline) {
+			if (isBestMoveUnassailable(now, deadline - now)
+					|| waitForStopRequest(Math.min(POLL_MSEC, deadline - now))) {
+				break;
+			}
+			now = System.currentTimeMillis();
+		}
+	}
+
+	/** Returns true if there is a budget and it is exhausted. */
+	private boolean isBudgetExhausted() {
+		return budget != null && budget.isExhausted();
+	}
+
+	/**
+	 * Returns true if the unassailable move rule is on and says to stop, given
+	 * that msecLeft milliseconds of search remain.
+	 */
+	private boolean isBestMoveUnassailable(long now, long msecLeft) {
+		if (player == null) {
+			return false;
+		}
+		final long elapsed = now - startTime;
+		if (elapsed < MIN_MEASURED_MSEC) {
+			return false;
+		}
+		final long playouts = player.getPlayoutCount() - startPlayouts;
+		final double remaining = RATE_MARGIN * playouts * msecLeft / elapsed;
+		if (isUnassailable(player.getRoot(), player.getBoard()
+				.getVacantPoints(), remaining)) {
+			log("Stopping with " + msecLeft
+					+ " msec left because the best move is unassailable");
+			return true;
+		}
+		return false;
+	}
+
+	/** Asks the thread waiting in awaitStop to return immediately. */
+	synchronized void requestStop() {
+		stopRequested = true;
+		notifyAll();
+	}
+
+	/**
+	 * Clears any stop request left over from an earlier search and starts
+	 * measuring the playout rate.
+	 */
+	private synchronized void reset() {
+		stopRequested = false;
+		startTime = System.currentTimeMillis();
+		if (player != null) {
+			startPlayouts = player.getPlayoutCount();
+		}
+	}
+
+	/** Sets the budget whose exhaustion stops search. */
+	void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Turns on the unassailable move rule, applied to player's root. If player
+	 * is null, turns the rule off.
+	 */
+	void stopWhenUnassailable(Player player) {
+		this.player = player;
+	}
+
+	/**
+	 * Waits for up to msec milliseconds for a stop request. Returns true if
+	 * one has been made or the budget is exhausted. (The budget is checked as
+	 * well because it may have been exhausted, and its stop request cleared by
+	 * reset(), before awaitStop was called.)
+	 */
+	private synchronized boolean waitForStopRequest(long msec) {
+		if (!stopRequested && !isBudgetExhausted()) {
+			try {
+				wait(msec);
+			} catch (final InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		return stopRequested || isBudgetExhausted();
+	}
+
+}
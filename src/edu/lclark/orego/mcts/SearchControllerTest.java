@@ -0,0 +1,157 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.time.SimpleTimeManager;
+import edu.lclark.orego.time.TimeManager;
+
+public class SearchControllerTest {
+
+	/** Hands out a fixed number of equal slices. */
+	private static class FakeTimeManager implements TimeManager {
+
+		private final int msecPerSlice;
+
+		/** Time passed to saveTime, or -1 if it has not been called. */
+		private int saved;
+
+		private int slices;
+
+		private final boolean stopEarly;
+
+		FakeTimeManager(int slices, int msecPerSlice, boolean stopEarly) {
+			this.slices = slices;
+			this.msecPerSlice = msecPerSlice;
+			this.stopEarly = stopEarly;
+			saved = -1;
+		}
+
+		@Override
+		public int getMsec() {
+			if (slices == 0) {
+				return 0;
+			}
+			slices--;
+			return msecPerSlice;
+		}
+
+		@Override
+		public int getMsecInLaterSlices() {
+			return slices * msecPerSlice;
+		}
+
+		@Override
+		public void saveTime(int msecLeft) {
+			saved = msecLeft + slices * msecPerSlice;
+		}
+
+		@Override
+		public boolean stopEarly(int msecLeft) {
+			return stopEarly;
+		}
+
+		@Override
+		public void setRemainingSeconds(int seconds) {
+			// Does nothing
+		}
+
+		@Override
+		public void startNewTurn() {
+			// Does nothing
+		}
+
+	}
+
+	private SearchController controller;
+
+	@Before
+	public void setUp() throws Exception {
+		controller = new SearchController();
+	}
+
+	@Test
+	public void testAwaitStop() {
+		long start = System.currentTimeMillis();
+		controller.awaitStop(100);
+		assertTrue(System.currentTimeMillis() - start >= 100);
+	}
+
+	@Test
+	public void testAwaitStopWithManager() {
+		TimeManager manager = new SimpleTimeManager(100);
+		manager.startNewTurn();
+		long start = System.currentTimeMillis();
+		controller.awaitStop(manager);
+		assertTrue(System.currentTimeMillis() - start >= 100);
+	}
+
+	@Test
+	public void testSlicesWithoutStopping() {
+		TimeManager manager = new FakeTimeManager(3, 50, false);
+		long start = System.currentTimeMillis();
+		controller.awaitStop(manager);
+		assertTrue(System.currentTimeMillis() - start >= 150);
+	}
+
+	@Test
+	public void testStopEarly() {
+		TimeManager manager = new FakeTimeManager(1, 10000, true);
+		long start = System.currentTimeMillis();
+		controller.awaitStop(manager);
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void testRequestStop() {
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					// Let the test time out
+				}
+				controller.requestStop();
+			}
+		}.start();
+		long start = System.currentTimeMillis();
+		controller.awaitStop(10000);
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void testIsUnassailable() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		Board board = new Board(5);
+		SearchNode root = new SimpleSearchNode(coords);
+		root.clear(0L, coords);
+		root.update(coords.at("c3"), 100, 100);
+		root.update(coords.at("b2"), 100, 60);
+		// c3 has 101 wins, b2 61
+		assertTrue(SearchController.isUnassailable(root,
+				board.getVacantPoints(), 39));
+		assertFalse(SearchController.isUnassailable(root,
+				board.getVacantPoints(), 40));
+	}
+
+	@Test
+	public void testUnassailableSavesTime() {
+		Player player = new PlayerBuilder().threads(1).boardWidth(5)
+				.memorySize(64).openingBook(false).unassailable(true).build();
+		FakeTimeManager manager = new FakeTimeManager(3, 2000, false);
+		player.setTimeManager(manager);
+		player.setRemainingTime(1000);
+		player.getRoot().update(player.getBoard().getCoordinateSystem().at("c3"),
+				100000000, 100000000);
+		long start = System.currentTimeMillis();
+		player.bestMove();
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		assertTrue(manager.saved > 4000);
+	}
+
+}
@@ -27,6 +27,9 @@ public interface SearchNode {
 	 */
 	public void clear(long fancyHash, CoordinateSystem coords);
 
+	/** Marks move p as no longer having a child. */
+	public void clearHasChild(short p);
+
 	/**
 	 * Returns a human-readable representation of the subtree rooted at this
 	 * node, up to max depth.
@@ -43,6 +46,13 @@ public interface SearchNode {
 	/** Mark this node as unused until the next time it is reset. */
 	public void free();
 
+	/**
+	 * Returns this node's cached list of promising moves.
+	 *
+	 * @see AbstractDescender#setCandidateRefresh(int)
+	 */
+	public CandidateList getCandidates();
+
 	/** Returns the (beginning of the linked list of) children of this node. */
 	public ListNode<SearchNode> getChildren();
 
@@ -58,6 +68,12 @@ public interface SearchNode {
 	/** Returns the number of runs through move p. */
 	public int getRuns(short p);
 
+	/**
+	 * Copies the runs and wins of every move p from 0 up to runs.length into
+	 * runs[p] and wins[p].
+	 */
+	public void getRunsAndWins(int[] runs, float[] wins);
+
 	/** Returns the total number of runs through this node. */
 	public int getTotalRuns();
 
@@ -139,7 +155,8 @@ public interface SearchNode {
 
 	/**
 	 * Updates the win rate for p, by adding n runs and the specified number of
-	 * wins. Also updates the counts of total runs and runs.
+	 * wins. Also updates the counts of total runs and runs. n may be negative
+	 * to remove runs added earlier, e.g., a virtual loss.
 	 */
 	public void update(short p, int n, float wins);
 
@@ -0,0 +1,156 @@
+package edu.lclark.orego.mcts;
+
+/**
+ * Long-lived threads that run a Player's McRunnables. The threads are created
+ * the first time search starts. Between searches they are parked rather than
+ * destroyed, so resuming search costs a notify instead of creating a thread
+ * pool. Each thread always runs the same McRunnable, so the runnable's board,
+ * random number generator, and other state are preserved across pauses.
+ * <p>
+ * While search is paused, the threads can also be lent out to run other
+ * tasks, such as marking and sweeping the tree after a move.
+ * <p>
+ * The threads are daemons, so they do not keep the program running. They
+ * exit when shutdown() interrupts them; until then, they keep their Player
+ * reachable.
+ */
+final class SearchThreads {
+
+	/**
+	 * Incremented each time search resumes. Each thread runs its McRunnable
+	 * once per generation.
+	 */
+	private int generation;
+
+	/** Number of threads that have not yet finished the current generation. */
+	private int running;
+
+	private final McRunnable[] runnables;
+
+	/**
+	 * Tasks the threads run in the current generation instead of their
+	 * McRunnables, or null.
+	 */
+	private Runnable[] tasks;
+
+	/** The threads, or null if they have not been created yet. */
+	private Thread[] threads;
+
+	SearchThreads(McRunnable[] runnables) {
+		this.runnables = runnables;
+	}
+
+	/**
+	 * Waits until all threads have finished the current generation. The
+	 * caller must already have told the McRunnables to stop.
+	 */
+	synchronized void awaitPause() throws InterruptedException {
+		while (running > 0) {
+			wait();
+		}
+	}
+
+	/** Waits until generation is greater than seen, and returns it. */
+	synchronized int awaitResume(int seen) throws InterruptedException {
+		while (generation == seen) {
+			wait();
+		}
+		return generation;
+	}
+
+	/** Returns the ith thread, or null if it has not been created. For testing. */
+	synchronized Thread getThread(int i) {
+		return threads == null ? null : threads[i];
+	}
+
+	/** Returns the number of threads. */
+	int getThreadCount() {
+		return runnables.length;
+	}
+
+	/**
+	 * Returns the task thread i is to run in the current generation, or null
+	 * if it is to run its McRunnable.
+	 */
+	private synchronized Runnable getTask(int i) {
+		return tasks == null ? null : tasks[i];
+	}
+
+	/**
+	 * Interrupts the threads, which makes them exit. The caller must already
+	 * have paused search. Search cannot be resumed afterward.
+	 */
+	synchronized void shutdown() {
+		if (threads != null) {
+			for (final Thread thread : threads) {
+				thread.interrupt();
+			}
+		}
+	}
+
+	/** Starts the threads, creating them if necessary. */
+	synchronized void resume() {
+		start(null);
+	}
+
+	/**
+	 * Runs tasks[i] on thread i, for each i, and waits for all of them to
+	 * finish. There must be one task per thread. Search must be paused.
+	 */
+	void runTasks(Runnable[] tasks) throws InterruptedException {
+		assert tasks.length == runnables.length;
+		start(tasks);
+		awaitPause();
+	}
+
+	/**
+	 * Starts a new generation, creating the threads if necessary. The threads
+	 * run tasks, or their McRunnables if tasks is null.
+	 */
+	private synchronized void start(Runnable[] tasks) {
+		this.tasks = tasks;
+		if (threads == null) {
+			threads = new Thread[runnables.length];
+			for (int i = 0; i < threads.length; i++) {
+				final int index = i;
+				threads[i] = new Thread("McRunnable " + i) {
+					@Override
+					public void run() {
+						int seen = 0;
+						try {
+							while (true) {
+								seen = awaitResume(seen);
+								final Runnable task = getTask(index);
+								if (task != null) {
+									try {
+										task.run();
+									} finally {
+										threadDone();
+									}
+								} else {
+									runnables[index].run();
+								}
+							}
+						} catch (final InterruptedException e) {
+							// Thread is being shut down
+						}
+					}
+				};
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+		}
+		generation++;
+		running = threads.length;
+		notifyAll();
+	}
+
+	/** Indicates that one thread has finished the current generation. */
+	synchronized void threadDone() {
+		running--;
+		if (running == 0) {
+			notifyAll();
+		}
+	}
+
+}
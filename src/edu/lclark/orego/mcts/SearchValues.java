@@ -0,0 +1,40 @@
+package edu.lclark.orego.mcts;
+
+/**
+ * Arrays, indexed by point, used to compute the search values of all moves
+ * from a node at once. Each McRunnable has its own, so that threads do not
+ * share them.
+ *
+ * @see AbstractDescender#setBulkEvaluation(boolean)
+ */
+final class SearchValues {
+
+	/** RAVE runs of each move. Only used by RaveDescender. */
+	final int[] raveRuns;
+
+	/** RAVE wins of each move. Only used by RaveDescender. */
+	final float[] raveWins;
+
+	/** Runs through each move. */
+	final int[] runs;
+
+	/** Search value of each move. */
+	final float[] values;
+
+	/** Wins through each move. */
+	final float[] wins;
+
+	/**
+	 * @param points
+	 *            Number of points, including those beyond the board, i.e.,
+	 *            CoordinateSystem.getFirstPointBeyondBoard().
+	 */
+	SearchValues(int points) {
+		raveRuns = new int[points];
+		raveWins = new float[points];
+		runs = new int[points];
+		values = new float[points];
+		wins = new float[points];
+	}
+
+}
@@ -3,7 +3,10 @@ package edu.lclark.orego.mcts;
 import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static java.lang.String.format;
-import static java.util.Arrays.fill;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.feature.HistoryObserver;
@@ -12,18 +15,64 @@ import edu.lclark.orego.util.BitVector;
 import edu.lclark.orego.util.ListNode;
 import edu.lclark.orego.util.ShortSet;
 
-/** A node in the search tree / transposition table. */
+/**
+ * A node in the search tree / transposition table.
+ * <p>
+ * The runs and wins for each move are packed into a single long (runs in the
+ * high 32 bits, the float bits of the win count in the low 32 bits), so that
+ * both can be updated together with compare-and-set. This lets several threads
+ * update the same node without locks and without losing updates.
+ */
 public class SimpleSearchNode implements SearchNode {
 
 	/**
 	 * When reset is called, a pass is given this many runs, only one of which
 	 * is a win, to discourage passing unless all other moves are awful.
 	 */
-	private static final int INITIAL_PASS_RUNS = 10;
+	static final int INITIAL_PASS_RUNS = 10;
+
+	/** Used to update totalRuns atomically. */
+	private static final AtomicIntegerFieldUpdater<SimpleSearchNode> TOTAL_RUNS = AtomicIntegerFieldUpdater
+			.newUpdater(SimpleSearchNode.class, "totalRuns");
+
+	/** Returns the run count stored in a packed statistics word. */
+	static int unpackRuns(long stats) {
+		return (int) (stats >>> 32);
+	}
+
+	/** Returns the win count stored in a packed statistics word. */
+	static float unpackWins(long stats) {
+		return Float.intBitsToFloat((int) stats);
+	}
+
+	/** Returns a statistics word holding the given runs and wins. */
+	static long pack(int runs, float wins) {
+		return ((long) runs << 32)
+				| (Float.floatToRawIntBits(wins) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Atomically adds n runs and the specified number of wins to element i of
+	 * stats.
+	 */
+	static void addToStats(AtomicLongArray stats, int i, int n, float wins) {
+		long old;
+		long updated;
+		do {
+			old = stats.get(i);
+			updated = pack(unpackRuns(old) + n, unpackWins(old) + wins);
+		} while (!stats.compareAndSet(i, old, updated));
+	}
 
 	/** True if bias for this node has been set. */
 	private boolean biasUpdated;
 
+	/**
+	 * Created on the first call to getCandidates(), so that nodes do not pay
+	 * for it when candidate lists are not used.
+	 */
+	private volatile CandidateList candidates;
+
 	/** Children of this node. */
 	private ListNode<SearchNode> children;
 
@@ -41,33 +90,47 @@ public class SimpleSearchNode implements SearchNode {
 	 */
 	private final BitVector hasChild;
 
-	/** Number of runs through each child of this node. */
-	private final int[] runs;
+	/**
+	 * Index in stats of the entry for move 0. This is nonzero when stats is
+	 * shared with other nodes in a NodeArena.
+	 */
+	private final int offset;
+
+	/** Packed runs and wins through each child of this node. */
+	private final AtomicLongArray stats;
 
 	/**
 	 * Total number of runs through this node. For not-in-use nodes this is set
 	 * to -1.
 	 */
-	private int totalRuns;
+	private volatile int totalRuns;
 
 	/** @see #getWinningMove() */
 	private short winningMove;
 
-	/** Number of wins through each child of this node. */
-	private final float[] winRates;
-
 	public SimpleSearchNode(CoordinateSystem coords) {
-		runs = new int[coords.getFirstPointBeyondBoard()];
-		winRates = new float[coords.getFirstPointBeyondBoard()];
-		hasChild = new BitVector(coords.getFirstPointBeyondBoard());
+		this(new AtomicLongArray(coords.getFirstPointBeyondBoard()), 0,
+				new BitVector(coords.getFirstPointBeyondBoard()));
+	}
+
+	/**
+	 * Creates a node whose statistics are stored in stats starting at index
+	 * offset.
+	 *
+	 * @see NodeArena
+	 */
+	SimpleSearchNode(AtomicLongArray stats, int offset, BitVector hasChild) {
+		this.stats = stats;
+		this.offset = offset;
+		this.hasChild = hasChild;
 		totalRuns = -1; // Indicates this node is not in use
 	}
 
 	@Override
 	public String bestWinCountReport(CoordinateSystem coords) {
 		final short best = getMoveWithMostWins(coords);
-		return coords.toString(best) + " wins " + winRates[best] * runs[best]
-				+ "/" + runs[best] + " = " + getWinRate(best);
+		return coords.toString(best) + " wins " + getWins(best) + "/"
+				+ getRuns(best) + " = " + getWinRate(best);
 	}
 
 	@Override
@@ -91,15 +154,19 @@ public class SimpleSearchNode implements SearchNode {
 			CoordinateSystem coords) {
 		this.fancyHash = fancyHash;
 		totalRuns = 2 * coords.getArea() + INITIAL_PASS_RUNS;
-		fill(runs, 2);
-		fill(winRates, 0.5f);
+		resetStatistics(coords);
 		hasChild.clear();
-		// Make passing look very bad, so it will only be tried if all other
-		// moves lose
-		runs[PASS] = 10;
-		winRates[PASS] = 1.0f / INITIAL_PASS_RUNS;
 		children = null;
 		winningMove = NO_POINT;
+		final CandidateList list = candidates;
+		if (list != null) {
+			list.clear();
+		}
+	}
+
+	@Override
+	public void clearHasChild(short p) {
+		hasChild.set(p, false);
 	}
 
 	@Override
@@ -151,9 +218,22 @@ public class SimpleSearchNode implements SearchNode {
 		return result;
 	}
 
+	/**
+	 * Adds n runs and the specified number of wins to the statistics for move
+	 * p, without touching totalRuns.
+	 */
+	void addToMove(short p, int n, float wins) {
+		addToStats(stats, offset + p, n, wins);
+	}
+
 	@Override
 	public void exclude(short p) {
-		winRates[p] = -1;
+		long old;
+		int r;
+		do {
+			old = stats.get(offset + p);
+			r = unpackRuns(old);
+		} while (!stats.compareAndSet(offset + p, old, pack(r, -r)));
 	}
 
 	@Override
@@ -161,6 +241,21 @@ public class SimpleSearchNode implements SearchNode {
 		totalRuns = -1;
 	}
 
+	@Override
+	public CandidateList getCandidates() {
+		CandidateList result = candidates;
+		if (result == null) {
+			synchronized (this) {
+				result = candidates;
+				if (result == null) {
+					result = new CandidateList();
+					candidates = result;
+				}
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public ListNode<SearchNode> getChildren() {
 		return children;
@@ -184,7 +279,21 @@ public class SimpleSearchNode implements SearchNode {
 
 	@Override
 	public int getRuns(short p) {
-		return runs[p];
+		return unpackRuns(getStats(p));
+	}
+
+	@Override
+	public void getRunsAndWins(int[] runs, float[] wins) {
+		for (short p = 0; p < runs.length; p++) {
+			final long s = getStats(p);
+			runs[p] = unpackRuns(s);
+			wins[p] = unpackWins(s);
+		}
+	}
+
+	/** Returns the packed runs and wins for move p. */
+	long getStats(short p) {
+		return stats.get(offset + p);
 	}
 
 	@Override
@@ -199,12 +308,13 @@ public class SimpleSearchNode implements SearchNode {
 
 	@Override
 	public float getWinRate(short p) {
-		return winRates[p];
+		final long s = getStats(p);
+		return unpackWins(s) / unpackRuns(s);
 	}
 
 	@Override
 	public float getWins(short p) {
-		return winRates[p] * runs[p];
+		return unpackWins(getStats(p));
 	}
 
 	@Override
@@ -271,6 +381,21 @@ public class SimpleSearchNode implements SearchNode {
 		}
 	}
 
+	/**
+	 * Gives every move two runs and one win, except that passing gets
+	 * INITIAL_PASS_RUNS runs and one win.
+	 */
+	void resetStatistics(CoordinateSystem coords) {
+		final long initial = pack(2, 1);
+		final int end = offset + coords.getFirstPointBeyondBoard();
+		for (int i = offset; i < end; i++) {
+			stats.set(i, initial);
+		}
+		// Make passing look very bad, so it will only be tried if all other
+		// moves lose
+		stats.set(offset + PASS, pack(INITIAL_PASS_RUNS, 1));
+	}
+
 	@Override
 	public void setBiasUpdated(boolean value) {
 		biasUpdated = value;
@@ -300,11 +425,11 @@ public class SimpleSearchNode implements SearchNode {
 	public String toString(CoordinateSystem coords) {
 		String result = "Total runs: " + totalRuns + "\n";
 		for (final short p : coords.getAllPointsOnBoard()) {
-			if (runs[p] > 2) {
+			if (getRuns(p) > 2) {
 				result += toString(p, coords);
 			}
 		}
-		if (runs[PASS] > 10) {
+		if (getRuns(PASS) > 10) {
 			result += toString(PASS, coords);
 		}
 		return result;
@@ -313,14 +438,13 @@ public class SimpleSearchNode implements SearchNode {
 	@SuppressWarnings("boxing")
 	String toString(short p, CoordinateSystem coords) {
 		return format("%s: %7d/%7d (%1.4f)\n", coords.toString(p),
-				(int) getWins(p), runs[p], winRates[p]);
+				(int) getWins(p), getRuns(p), getWinRate(p));
 	}
 
 	@Override
-	public synchronized void update(short p, int n, float wins) {
-		totalRuns += n;
-		winRates[p] = (wins + winRates[p] * runs[p]) / (n + runs[p]);
-		runs[p] += n;
+	public void update(short p, int n, float wins) {
+		TOTAL_RUNS.addAndGet(this, n);
+		addToMove(p, n, wins);
 	}
 
 	@Override
@@ -90,6 +90,30 @@ public class SimpleSearchNodeTest {
 		assertEquals(0.5, node.getWinRate(at("a1")), 0.001);
 	}
 
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		final short p = at("c3");
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						node.update(p, 1, j % 2);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// No updates are lost
+		assertEquals(2 + 40000, node.getRuns(p));
+		assertEquals(1 + 20000, node.getWins(p), 0.001);
+		assertEquals(2 * coords.getArea() + 10 + 40000, node.getTotalRuns());
+	}
+
 	@Test
 	public void testIsInUse() {
 		assertTrue(node.isInUse());
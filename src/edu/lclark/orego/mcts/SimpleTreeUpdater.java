@@ -16,13 +16,49 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 	 */
 	private final int gestation;
 
+	/** Frees unreachable nodes after each move. */
+	private final TreeReclaimer reclaimer;
+
 	private final TranspositionTable table;
 
 	public SimpleTreeUpdater(Board board, TranspositionTable table,
 			int gestation) {
+		this(board, table, gestation, new TreeReclaimer(table, false));
+	}
+
+	public SimpleTreeUpdater(Board board, TranspositionTable table,
+			int gestation, TreeReclaimer reclaimer) {
 		this.board = board;
 		this.table = table;
 		this.gestation = gestation;
+		this.reclaimer = reclaimer;
+	}
+
+	/**
+	 * Returns the child of node reached by playing p, which has the given fancy
+	 * hash and occurs at the given turn. If this child does not exist yet but p
+	 * has been tried enough times from node, the child is created, if budget
+	 * allows. Returns null if the tree update should stop here, i.e., if there
+	 * is no child, if the child was just created, if the node budget is used
+	 * up, or if the table is full.
+	 */
+	private SearchNode findChild(SearchNode node, short p, long fancyHash,
+			int turn, SearchBudget budget) {
+		SearchNode child = table.findIfPresent(fancyHash);
+		if (child == null) {
+			if (node.getRuns(p) >= gestation) {
+				child = table.findOrAllocate(fancyHash, turn, budget);
+				if (child == null) {
+					return null; // Table is full or node budget is used up
+				}
+				if (table.addChildIfNew(node, p, child)) {
+					return null;
+				}
+				return child;
+			}
+			return null;
+		}
+		return child;
 	}
 
 	@Override
@@ -38,7 +74,8 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 	/** Returns the root node (creating it if necessary). */
 	@Override
 	public SearchNode getRoot() {
-		return table.findOrAllocate(board.getFancyHash());
+		return table.findOrAllocateRoot(board.getFancyHash(),
+				board.getTurn());
 	}
 
 	/** For testing. Returns the table. */
@@ -46,6 +83,11 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 		return table;
 	}
 
+	@Override
+	public void shutdown() {
+		// The reclaimer runs on the Player's search threads, if any
+	}
+
 	/** Returns a human-readable representation of the tree, up to maxDepth. */
 	public String toString(int maxDepth) {
 		return getRoot().deepToString(board, table, maxDepth);
@@ -54,8 +96,7 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 	@Override
 	public void updateForAcceptMove() {
 		SearchNode root = getRoot();
-		table.markNodesReachableFrom(root);
-		table.sweep();
+		reclaimer.reclaim(root);
 		root = getRoot();
 		assert root != null;
 	}
@@ -67,6 +108,7 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 		assert node != null;
 		final HistoryObserver history = runnable.getHistoryObserver();
 		final long[] fancyHashes = runnable.getFancyHashes();
+		final SearchBudget budget = runnable.getPlayer().getBudget();
 		float winProportion = winner == board.getColorToPlay() ? 1 : 0;
 		if (winner == VACANT) {
 			winProportion = 0.5f;
@@ -78,27 +120,20 @@ public final class SimpleTreeUpdater implements TreeUpdater {
 					+ table.getCapacity() + "="
 					+ (((double) table.getNodesInUse()) / table.getCapacity());
 			node.recordPlayout(winProportion, runnable, t);
+			final short p = history.get(t);
 			final long fancyHash = fancyHashes[t + 1];
-			synchronized (table) {
-				SearchNode child = table.findIfPresent(fancyHash);
-				if (child == null) {
-					final short p = history.get(t);
-					if (node.getRuns(p) >= gestation) {
-						child = table.findOrAllocate(fancyHash);
-						if (child == null) {
-							return; // Table is full
-						}
-						if (!node.hasChild(p)) {
-							node.setHasChild(p);
-							table.addChild(node, child);
-							return;
-						}
-					} else {
-						return;
-					}
+			SearchNode child;
+			if (table.isConcurrent()) {
+				child = findChild(node, p, fancyHash, t + 1, budget);
+			} else {
+				synchronized (table) {
+					child = findChild(node, p, fancyHash, t + 1, budget);
 				}
-				node = child;
 			}
+			if (child == null) {
+				return;
+			}
+			node = child;
 			winProportion = 1 - winProportion;
 		}
 	}
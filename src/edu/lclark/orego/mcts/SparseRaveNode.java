@@ -0,0 +1,191 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static java.lang.String.format;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.BitVector;
+
+/**
+ * A SparseSearchNode that also keeps RAVE statistics. A single playout adds
+ * RAVE runs for about half the board, so these cannot usefully go in a map.
+ * Instead, while the node is sparse, the RAVE runs and wins for each point
+ * are packed into 16 bits: 8 bits of runs and 8 bits of twice the wins (win
+ * proportions are always 0, 0.5, or 1). Two points share each int. If a point
+ * reaches MAX_SPARSE_RAVE_RUNS, which only happens if the node could not be
+ * promoted earlier, the node must be promoted (if necessary to an overflow
+ * block) before the run is recorded.
+ */
+public final class SparseRaveNode extends SparseSearchNode implements
+		RaveSearchNode {
+
+	/**
+	 * Largest number of RAVE runs recorded for a point while sparse. This
+	 * keeps twice the wins below 256.
+	 */
+	private static final int MAX_SPARSE_RAVE_RUNS = 127;
+
+	/** Packed sparse RAVE statistics for a point after clear(). */
+	private static final int INITIAL_HALF = 2 << 8 | 2;
+
+	/**
+	 * Value stored in an element of compactRave once it has been copied to the
+	 * dense block. Its runs exceed MAX_SPARSE_RAVE_RUNS, so it never happens
+	 * for a real entry.
+	 */
+	private static final int SEALED = -1;
+
+	/** Sparse RAVE statistics, two points per int. */
+	private final AtomicIntegerArray compactRave;
+
+	/**
+	 * The array containing this node's dense block of RAVE statistics, set
+	 * along with getDenseStats().
+	 */
+	private AtomicLongArray denseRaveStats;
+
+	SparseRaveNode(NodeArena arena, BitVector hasChild) {
+		super(arena, hasChild);
+		compactRave = new AtomicIntegerArray((arena.getPointsPerNode() + 1) / 2);
+	}
+
+	/** Adds a RAVE loss for p. */
+	public void addRaveLoss(short p) {
+		addRaveRun(p, 0);
+	}
+
+	@Override
+	public void addRaveRun(int p, float w) {
+		if (getDenseOffset() < 0) {
+			final int i = p >> 1;
+			final int shift = (p & 1) << 4;
+			final int w2 = (int) (2 * w);
+			assert w2 == 2 * w;
+			int old;
+			do {
+				old = compactRave.get(i);
+				if (old == SEALED) {
+					break;
+				}
+				final int half = old >>> shift & 0xFFFF;
+				final int runs = half >>> 8;
+				if (runs >= MAX_SPARSE_RAVE_RUNS) {
+					promote(true);
+					break;
+				}
+				final int updated = runs + 1 << 8 | (half & 0xFF) + w2;
+				if (compactRave.compareAndSet(i, old, old
+						& ~(0xFFFF << shift) | updated << shift)) {
+					return;
+				}
+			} while (true);
+		}
+		final int offset = awaitDenseOffset();
+		addToStats(denseRaveStats, offset + p, 1, w);
+	}
+
+	/** Adds a RAVE win for p. */
+	public void addRaveWin(short p) {
+		addRaveRun(p, 1);
+	}
+
+	@Override
+	void copyToDense(int offset) {
+		super.copyToDense(offset);
+		final int points = getArena().getPointsPerNode();
+		if (isOverflow()) {
+			denseRaveStats = new AtomicLongArray(points);
+		} else {
+			denseRaveStats = getArena().getRaveStats();
+		}
+		final AtomicLongArray raveStats = denseRaveStats;
+		for (int i = 0; i < compactRave.length(); i++) {
+			final int packed = compactRave.getAndSet(i, SEALED);
+			for (int j = 0; j < 2 && 2 * i + j < points; j++) {
+				final int half = packed >>> (j << 4) & 0xFFFF;
+				raveStats.set(offset + 2 * i + j,
+						pack(half >>> 8, (half & 0xFF) / 2.0f));
+			}
+		}
+	}
+
+	@Override
+	public int getRaveRuns(short p) {
+		return unpackRuns(getRaveStats(p));
+	}
+
+	@Override
+	public void getRaveRunsAndWins(int[] runs, float[] wins) {
+		for (int p = 0; p < runs.length; p++) {
+			final long s = getRaveStats(p);
+			runs[p] = unpackRuns(s);
+			wins[p] = unpackWins(s);
+		}
+	}
+
+	/** Returns the packed RAVE runs and wins for move p. */
+	private long getRaveStats(int p) {
+		if (getDenseOffset() < 0) {
+			final int packed = compactRave.get(p >> 1);
+			if (packed != SEALED) {
+				final int half = packed >>> ((p & 1) << 4) & 0xFFFF;
+				return pack(half >>> 8, (half & 0xFF) / 2.0f);
+			}
+		}
+		final int offset = awaitDenseOffset();
+		return denseRaveStats.get(offset + p);
+	}
+
+	@Override
+	public float getRaveWinRate(short p) {
+		final long s = getRaveStats(p);
+		return unpackWins(s) / unpackRuns(s);
+	}
+
+	@Override
+	public float getRaveWins(int p) {
+		return unpackWins(getRaveStats(p));
+	}
+
+	@Override
+	public void recordPlayout(float winProportion, McRunnable runnable, int t) {
+		super.recordPlayout(winProportion, runnable, t);
+		// The remaining moves in the sequence are recorded for RAVE
+		RaveNode.recordRavePlayout(this, winProportion, runnable, t);
+	}
+
+	@Override
+	void resetStatistics(CoordinateSystem coords) {
+		super.resetStatistics(coords);
+		final int initial = INITIAL_HALF << 16 | INITIAL_HALF;
+		for (int i = 0; i < compactRave.length(); i++) {
+			compactRave.set(i, initial);
+		}
+	}
+
+	@Override
+	public String toString(CoordinateSystem coords) {
+		String result = "Total runs: " + super.getTotalRuns() + "\n";
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (super.getRuns(p) > 2) {
+				result += toString(p, coords);
+			}
+		}
+		if (super.getRuns(PASS) > 10) {
+			result += toString(PASS, coords);
+		}
+		return result;
+	}
+
+	@Override
+	@SuppressWarnings("boxing")
+	String toString(short p, CoordinateSystem coords) {
+		return format("%s: %7d/%7d (%1.4f) RAVE %d (%1.4f)\n",
+				coords.toString(p), (int) getWins(p), super.getRuns(p),
+				super.getWinRate(p), getRaveRuns(p), getRaveWinRate(p));
+	}
+
+}
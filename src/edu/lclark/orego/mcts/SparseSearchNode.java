@@ -0,0 +1,364 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.util.BitVector;
+
+/**
+ * A node that starts out storing statistics only for the moves that have
+ * actually been updated, in a small open-addressed map from moves to packed
+ * statistics words. Moves not in the map have the initial statistics given by
+ * clear(). Once the node has received enough runs, or the map fills up, the
+ * node is promoted: it takes a dense block of statistics from its NodeArena
+ * and behaves like a SimpleSearchNode from then on. The block is returned to
+ * the arena when the node is freed.
+ * <p>
+ * Since most nodes receive only a handful of runs before the game moves on,
+ * this fits several times as many nodes into the same memory.
+ * <p>
+ * Updates to moves already in the map are lock-free. Adding a move to the map
+ * and promotion synchronize on the node. Promotion seals each map entry with
+ * compare-and-set before copying it, so no update is lost: a thread that finds
+ * a sealed entry waits for the dense block to be published and updates that
+ * instead.
+ * <p>
+ * If the arena has no free blocks, a node promoted because of its runs simply
+ * stays sparse (without taking its lock) until a block is freed. A node whose map is full, however, must be promoted, or
+ * updates would be lost; it takes a private overflow block instead, which is
+ * discarded when the node is freed. A TranspositionTable built on a sparse
+ * arena creates no new nodes while the arena has no free blocks, so overflow
+ * blocks are rare.
+ *
+ * @see NodeArena#NodeArena(int, CoordinateSystem, boolean, boolean)
+ */
+public class SparseSearchNode extends SimpleSearchNode {
+
+	/**
+	 * Number of slots in the map. Must be a power of two.
+	 */
+	static final int MAP_CAPACITY = 32;
+
+	/** The map is considered full when it holds this many moves. */
+	private static final int MAP_LIMIT = MAP_CAPACITY * 3 / 4;
+
+	/**
+	 * Number of runs (beyond those given by clear()) after which the node is
+	 * promoted.
+	 */
+	static final int PROMOTION_RUNS = 16;
+
+	/**
+	 * Value stored in a map entry once it has been copied to the dense block.
+	 * It has -1 runs, which never happens for a real entry.
+	 */
+	private static final long SEALED = -1L;
+
+	/** The arena from which dense blocks are taken. */
+	private final NodeArena arena;
+
+	/**
+	 * Offset of this node's dense block in the arena's statistics, or -1 if
+	 * this node is still sparse.
+	 */
+	private volatile int denseOffset;
+
+	/**
+	 * The array containing this node's dense block: either the arena's
+	 * statistics or a private overflow block. Written before denseOffset.
+	 */
+	private AtomicLongArray denseStats;
+
+	/**
+	 * Moves in the map, with 0 (NO_POINT) for an empty slot. A key is only
+	 * written after its value, so a thread that sees the key also sees the
+	 * value.
+	 */
+	private final AtomicIntegerArray keys;
+
+	/** Number of moves in the map. */
+	private int size;
+
+	/** Total runs right after clear(), used to decide when to promote. */
+	private int initialTotalRuns;
+
+	/** True if this node's dense block is a private overflow block. */
+	private boolean overflow;
+
+	/** Packed statistics for the moves in keys. */
+	private final AtomicLongArray values;
+
+	/**
+	 * Creates a sparse node whose dense block, if any, will come from arena.
+	 * The superclass statistics are never used.
+	 */
+	SparseSearchNode(NodeArena arena, BitVector hasChild) {
+		super(null, 0, hasChild);
+		this.arena = arena;
+		keys = new AtomicIntegerArray(MAP_CAPACITY);
+		values = new AtomicLongArray(MAP_CAPACITY);
+		denseOffset = -1;
+	}
+
+	@Override
+	void addToMove(short p, int n, float wins) {
+		if (denseOffset < 0) {
+			final int slot = findOrInsert(p);
+			if (slot >= 0) {
+				long old;
+				do {
+					old = values.get(slot);
+					if (old == SEALED) {
+						break;
+					}
+				} while (!values.compareAndSet(slot, old,
+						pack(unpackRuns(old) + n, unpackWins(old) + wins)));
+				if (old != SEALED) {
+					// Checking for a free block first keeps updates lock-free
+					// while the arena is exhausted
+					if (getTotalRuns() - initialTotalRuns >= PROMOTION_RUNS
+							&& arena.hasFreeBlock()) {
+						promote(false);
+					}
+					return;
+				}
+			} else {
+				promote(true);
+			}
+		}
+		final int offset = awaitDenseOffset();
+		addToStats(denseStats, offset + p, n, wins);
+	}
+
+	/**
+	 * Returns the dense offset, waiting if a promotion is in progress.
+	 */
+	int awaitDenseOffset() {
+		int result = denseOffset;
+		while (result < 0) {
+			Thread.yield();
+			result = denseOffset;
+		}
+		return result;
+	}
+
+	@Override
+	public void clear(long fancyHash, CoordinateSystem coords) {
+		super.clear(fancyHash, coords);
+		initialTotalRuns = getTotalRuns();
+	}
+
+	/**
+	 * Copies this node's sparse statistics into the dense block at offset in
+	 * getDenseStats(), sealing each map entry. Called while holding the lock on
+	 * this node.
+	 */
+	void copyToDense(int offset) {
+		final AtomicLongArray stats = denseStats;
+		final long initial = pack(2, 1);
+		final int end = offset + arena.getPointsPerNode();
+		for (int i = offset; i < end; i++) {
+			stats.set(i, initial);
+		}
+		stats.set(offset + PASS, pack(INITIAL_PASS_RUNS, 1));
+		for (int slot = 0; slot < MAP_CAPACITY; slot++) {
+			final int key = keys.get(slot);
+			if (key != 0) {
+				stats.set(offset + key, values.getAndSet(slot, SEALED));
+			}
+		}
+	}
+
+	@Override
+	public void exclude(short p) {
+		if (denseOffset < 0) {
+			final int slot = findOrInsert(p);
+			if (slot >= 0) {
+				long old;
+				do {
+					old = values.get(slot);
+					if (old == SEALED) {
+						break;
+					}
+				} while (!values.compareAndSet(slot, old,
+						pack(unpackRuns(old), -unpackRuns(old))));
+				if (old != SEALED) {
+					return;
+				}
+			} else {
+				promote(true);
+			}
+		}
+		final int i = awaitDenseOffset() + p;
+		final AtomicLongArray stats = denseStats;
+		long old;
+		int r;
+		do {
+			old = stats.get(i);
+			r = unpackRuns(old);
+		} while (!stats.compareAndSet(i, old, pack(r, -r)));
+	}
+
+	/**
+	 * Returns the slot in the map holding p, or -1 if p is not in the map.
+	 */
+	private int find(short p) {
+		int slot = p & MAP_CAPACITY - 1;
+		for (int i = 0; i < MAP_CAPACITY; i++) {
+			final int key = keys.get(slot);
+			if (key == p) {
+				return slot;
+			}
+			if (key == 0) {
+				return -1;
+			}
+			slot = slot + 1 & MAP_CAPACITY - 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the slot in the map holding p, adding p if necessary. Returns -1
+	 * if p is absent and either the map is full or the node has been promoted.
+	 */
+	private int findOrInsert(short p) {
+		final int slot = find(p);
+		if (slot >= 0) {
+			return slot;
+		}
+		synchronized (this) {
+			if (denseOffset >= 0 || size == MAP_LIMIT) {
+				return -1;
+			}
+			int s = p & MAP_CAPACITY - 1;
+			while (true) {
+				final int key = keys.get(s);
+				if (key == p) {
+					return s;
+				}
+				if (key == 0) {
+					values.set(s, initialStats(p));
+					keys.set(s, p);
+					size++;
+					return s;
+				}
+				s = s + 1 & MAP_CAPACITY - 1;
+			}
+		}
+	}
+
+	@Override
+	public void free() {
+		super.free();
+		releaseDenseBlock();
+	}
+
+	/** Returns the arena from which this node takes its dense block. */
+	NodeArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Returns the array containing this node's dense block. Only valid once
+	 * getDenseOffset() (or awaitDenseOffset()) has returned a nonnegative
+	 * value, or while promoting.
+	 */
+	AtomicLongArray getDenseStats() {
+		return denseStats;
+	}
+
+	/**
+	 * Returns the dense offset of this node, or -1 if it is still sparse.
+	 */
+	int getDenseOffset() {
+		return denseOffset;
+	}
+
+	@Override
+	long getStats(short p) {
+		if (denseOffset < 0) {
+			final int slot = find(p);
+			if (slot < 0) {
+				return initialStats(p);
+			}
+			final long result = values.get(slot);
+			if (result != SEALED) {
+				return result;
+			}
+		}
+		final int offset = awaitDenseOffset();
+		return denseStats.get(offset + p);
+	}
+
+	/** Returns the statistics given to p by clear(). */
+	private static long initialStats(short p) {
+		if (p == PASS) {
+			return pack(INITIAL_PASS_RUNS, 1);
+		}
+		return pack(2, 1);
+	}
+
+	/** Returns true if this node has been promoted to a dense block. */
+	boolean isDense() {
+		return denseOffset >= 0;
+	}
+
+	/** Returns true if this node's dense block is a private overflow block. */
+	boolean isOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * Takes a dense block from the arena and copies this node's statistics
+	 * into it. If the arena has no free blocks, returns false, unless required
+	 * is true, in which case a private overflow block is used.
+	 */
+	synchronized boolean promote(boolean required) {
+		if (denseOffset >= 0) {
+			return true;
+		}
+		int offset = arena.allocateBlock();
+		if (offset >= 0) {
+			denseStats = arena.getStats();
+			overflow = false;
+		} else if (required) {
+			offset = 0;
+			denseStats = new AtomicLongArray(arena.getPointsPerNode());
+			overflow = true;
+		} else {
+			return false;
+		}
+		copyToDense(offset);
+		denseOffset = offset;
+		return true;
+	}
+
+	/**
+	 * Returns this node's dense block, if any, to the arena. An overflow block
+	 * is simply discarded.
+	 */
+	private void releaseDenseBlock() {
+		final int offset = denseOffset;
+		if (offset >= 0) {
+			denseOffset = -1;
+			if (!overflow) {
+				arena.freeBlock(offset);
+			}
+			denseStats = null;
+			overflow = false;
+		}
+	}
+
+	@Override
+	void resetStatistics(CoordinateSystem coords) {
+		releaseDenseBlock();
+		for (int slot = 0; slot < MAP_CAPACITY; slot++) {
+			keys.set(slot, 0);
+		}
+		size = 0;
+	}
+
+}
@@ -0,0 +1,201 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class SparseSearchNodeTest {
+
+	private CoordinateSystem coords;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		coords = CoordinateSystem.forWidth(5);
+	}
+
+	@Test
+	public void testInitialValues() {
+		NodeArena arena = new NodeArena(1, coords, true, true);
+		SparseRaveNode node = (SparseRaveNode) arena.build();
+		node.clear(0L, coords);
+		assertFalse(node.isDense());
+		assertEquals(2, node.getRuns(at("c3")));
+		assertEquals(1, node.getWins(at("c3")), 0.001);
+		assertEquals(10, node.getRuns(PASS));
+		assertEquals(2, node.getRaveRuns(at("c3")));
+		assertEquals(1, node.getRaveWins(at("c3")), 0.001);
+		assertTrue(node.isFresh(coords));
+	}
+
+	@Test
+	public void testSparseUpdates() {
+		NodeArena arena = new NodeArena(1, coords, true, true);
+		SparseRaveNode node = (SparseRaveNode) arena.build();
+		node.clear(0L, coords);
+		node.update(at("c3"), 1, 1);
+		node.update(at("b2"), 1, 0);
+		node.addRaveWin(at("c3"));
+		node.addRaveRun(at("d4"), 0.5f);
+		node.exclude(at("a1"));
+		assertFalse(node.isDense());
+		assertEquals(3, node.getRuns(at("c3")));
+		assertEquals(2, node.getWins(at("c3")), 0.001);
+		assertEquals(3, node.getRuns(at("b2")));
+		assertEquals(1, node.getWins(at("b2")), 0.001);
+		assertEquals(-2, node.getWins(at("a1")), 0.001);
+		assertEquals(3, node.getRaveRuns(at("c3")));
+		assertEquals(2, node.getRaveWins(at("c3")), 0.001);
+		assertEquals(1.5, node.getRaveWins(at("d4")), 0.001);
+		assertEquals(2, node.getRaveRuns(at("d5")));
+	}
+
+	@Test
+	public void testPromotion() {
+		NodeArena arena = new NodeArena(1, coords, true, true);
+		SparseRaveNode node = (SparseRaveNode) arena.build();
+		node.clear(0L, coords);
+		final int blocks = arena.getFreeBlockCount();
+		node.addRaveWin(at("e5"));
+		node.exclude(at("a1"));
+		for (int i = 0; i < SparseSearchNode.PROMOTION_RUNS; i++) {
+			node.update(at("c3"), 1, 1);
+		}
+		assertTrue(node.isDense());
+		assertEquals(blocks - 1, arena.getFreeBlockCount());
+		assertEquals(2 + SparseSearchNode.PROMOTION_RUNS, node.getRuns(at("c3")));
+		assertEquals(2, node.getRuns(at("b2")));
+		assertEquals(-2, node.getWins(at("a1")), 0.001);
+		assertEquals(10, node.getRuns(PASS));
+		assertEquals(3, node.getRaveRuns(at("e5")));
+		assertEquals(2, node.getRaveWins(at("e5")), 0.001);
+		node.update(at("b2"), 1, 1);
+		node.addRaveWin(at("e5"));
+		assertEquals(3, node.getRuns(at("b2")));
+		assertEquals(4, node.getRaveRuns(at("e5")));
+		node.free();
+		assertEquals(blocks, arena.getFreeBlockCount());
+	}
+
+	@Test
+	public void testPromotionWhenMapIsFull() {
+		NodeArena arena = new NodeArena(1, coords, false, true);
+		SparseSearchNode node = (SparseSearchNode) arena.build();
+		node.clear(0L, coords);
+		for (short p : coords.getAllPointsOnBoard()) {
+			node.exclude(p);
+		}
+		assertTrue(node.isDense());
+		for (short p : coords.getAllPointsOnBoard()) {
+			assertEquals(-2, node.getWins(p), 0.001);
+		}
+	}
+
+	@Test
+	public void testOverflowBlock() {
+		NodeArena arena = new NodeArena(1, coords, true, true);
+		SparseRaveNode node = (SparseRaveNode) arena.build();
+		node.clear(0L, coords);
+		while (arena.allocateBlock() >= 0) {
+			// Use up all of the arena's blocks
+		}
+		final int blocks = arena.getFreeBlockCount();
+		// Promotion because of runs is optional
+		for (int i = 0; i < SparseSearchNode.PROMOTION_RUNS; i++) {
+			node.update(at("c3"), 1, 1);
+		}
+		assertFalse(node.isDense());
+		// Once the map is full, no update is lost
+		for (short p : coords.getAllPointsOnBoard()) {
+			node.update(p, 1, 0);
+			node.addRaveWin(p);
+		}
+		assertTrue(node.isDense());
+		assertTrue(node.isOverflow());
+		int sum = node.getRuns(PASS);
+		for (short p : coords.getAllPointsOnBoard()) {
+			sum += node.getRuns(p);
+			assertEquals(3, node.getRaveRuns(p));
+		}
+		assertEquals(node.getTotalRuns(), sum);
+		assertEquals(3 + SparseSearchNode.PROMOTION_RUNS, node.getRuns(at("c3")));
+		// A virtual loss can be removed
+		node.update(at("a1"), 1, 0);
+		node.update(at("a1"), -1, 0);
+		assertEquals(3, node.getRuns(at("a1")));
+		node.free();
+		assertEquals(blocks, arena.getFreeBlockCount());
+	}
+
+	@Test
+	public void testNoLockingWithoutFreeBlocks() throws InterruptedException {
+		NodeArena arena = new NodeArena(1, coords, false, true);
+		final SparseSearchNode node = (SparseSearchNode) arena.build();
+		node.clear(0L, coords);
+		node.update(at("c3"), 1, 1);
+		while (arena.allocateBlock() >= 0) {
+			// Use up all of the arena's blocks
+		}
+		final Thread updater = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 2 * SparseSearchNode.PROMOTION_RUNS; i++) {
+					node.update(at("c3"), 1, 1);
+				}
+			}
+		};
+		synchronized (node) {
+			updater.start();
+			updater.join(10000);
+			assertFalse(updater.isAlive());
+		}
+		assertFalse(node.isDense());
+		assertEquals(3 + 2 * SparseSearchNode.PROMOTION_RUNS, node.getRuns(at("c3")));
+	}
+
+	@Test
+	public void testNoNodesCreatedWithoutFreeBlocks() {
+		NodeArena arena = new NodeArena(1, coords, false, true);
+		TranspositionTable table = new TranspositionTable(arena, coords, false);
+		assertNotNull(table.findOrAllocate(1L));
+		while (arena.allocateBlock() >= 0) {
+			// Use up all of the arena's blocks
+		}
+		assertNull(table.findOrAllocate(2L));
+		// Existing nodes can still be found
+		assertNotNull(table.findOrAllocate(1L));
+	}
+
+	@Test
+	public void testClearReleasesBlock() {
+		NodeArena arena = new NodeArena(1, coords, false, true);
+		SparseSearchNode node = (SparseSearchNode) arena.build();
+		node.clear(0L, coords);
+		final int blocks = arena.getFreeBlockCount();
+		node.promote(false);
+		node.update(at("c3"), 1, 1);
+		assertEquals(blocks - 1, arena.getFreeBlockCount());
+		node.clear(1L, coords);
+		assertFalse(node.isDense());
+		assertEquals(blocks, arena.getFreeBlockCount());
+		assertEquals(2, node.getRuns(at("c3")));
+	}
+
+	@Test
+	public void testFitsMoreNodes() {
+		CoordinateSystem big = CoordinateSystem.forWidth(19);
+		assertTrue(new NodeArena(64, big, true, true).getCapacity() > 2 * new NodeArena(
+				64, big, true, false).getCapacity());
+		assertTrue(new NodeArena(64, big, false, true).getCapacity() > 2 * new NodeArena(
+				64, big, false, false).getCapacity());
+	}
+
+}
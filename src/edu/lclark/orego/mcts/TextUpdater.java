@@ -26,6 +26,11 @@ public final class TextUpdater implements TreeUpdater {
 		return null;
 	}
 
+	@Override
+	public void shutdown() {
+		// Does nothing
+	}
+
 	@Override
 	public String toString() {
 		return data.toString();
@@ -1,29 +1,279 @@
 package edu.lclark.orego.mcts;
 
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
 import static edu.lclark.orego.core.SuperKoTable.IGNORE_SIGN_BIT;
+import static java.lang.String.format;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.experiment.Logging;
 import edu.lclark.orego.util.ListNode;
 import edu.lclark.orego.util.Pool;
 
-/** A hash table of nodes representing board configurations. */
+/**
+ * A hash table of nodes representing board configurations.
+ * <p>
+ * The state (FREE, CLAIMED, READY, or DELETED) and fancy hash of each slot are
+ * kept in arrays parallel to the nodes, so probing does not touch the nodes
+ * themselves. In the default mode, lookups and allocations are synchronized on
+ * the table. In concurrent mode, threads claim free slots with compare-and-set,
+ * so no thread ever blocks on a monitor. Lookups never wait; allocations only
+ * wait for another thread that is in the middle of claiming a slot along the
+ * same probe sequence.
+ * <p>
+ * A table built on a NodeArena starts each probe sequence at the beginning of
+ * a bucket of BUCKET_SIZE slots, so the first probes for a hash fall within a
+ * single cache line of the hash array.
+ * <p>
+ * If an eviction threshold is set, the table does not wait for the next
+ * sweep() to reclaim slots. Once more than HIGH_WATER of the slots are in use,
+ * the next thread to allocate a node runs a clock sweep over the table until
+ * no more than LOW_WATER of the slots are in use. The victims are nodes left
+ * unreachable by the last move (if they have not been swept yet) and nodes
+ * with fewer than the threshold runs (beyond their initial runs). The root and
+ * the nodes less than MIN_EVICTION_DEPTH moves below it are never evicted.
+ * Each slot has a recently-used flag, set whenever its node is found; the
+ * clock hand clears the flag instead of evicting the node, giving it a second
+ * chance. Other threads never wait for the eviction: if another thread is
+ * already evicting, they allocate (or fail) as usual.
+ * <p>
+ * A node freed during search is unlinked from the parent that created it and
+ * its slot becomes a DELETED tombstone, which probes pass over, so no probe
+ * sequence is cut short. Other threads may still hold references to the node
+ * until their runs end, so the node is left intact and the slot is only
+ * reused once RunEpochs says that every run in progress started after the
+ * node was freed. Allocations reuse the first such tombstone along their probe
+ * sequence, and turn tombstones just before a free slot back into free slots.
+ * In concurrent mode, an allocation that meets a tombstone takes the lock on
+ * the table. compact() frees all tombstones; it is called between moves when
+ * few slots remain FREE.
+ * <p>
+ * Instead of sweeping the whole table at once, sweepLazily() lets the search
+ * threads do it: each allocation sweeps the next LAZY_SWEEP_CHUNK slots. Each
+ * slot records the sweep cycle in which its node was allocated, so nodes
+ * allocated after marking are never mistaken for garbage. Until the lazy sweep
+ * is finished, finding a node also stamps it with the current cycle, because
+ * an unmarked node can become reachable again during search.
+ */
 public final class TranspositionTable {
 
+	/**
+	 * Number of slots in a probe bucket for tables built on a NodeArena. Eight
+	 * longs fill a typical 64-byte cache line.
+	 */
+	static final int BUCKET_SIZE = 8;
+
+	/** Slot state: the node is not in use. */
+	private static final int FREE = 0;
+
+	/**
+	 * Slot state: some thread has claimed the slot and is clearing or freeing
+	 * the node.
+	 */
+	private static final int CLAIMED = 1;
+
+	/** Slot state: the node is in use and initialized. */
+	private static final int READY = 2;
+
+	/**
+	 * Slot state: the node has been freed during search, but the slot may not
+	 * be emptied yet because other threads may still hold the node or be
+	 * probing past it.
+	 */
+	private static final int DELETED = 3;
+
+	/** Eviction starts when more than this portion of slots are in use. */
+	private static final double HIGH_WATER = 0.9375;
+
+	/** Eviction stops when no more than this portion of slots are in use. */
+	private static final double LOW_WATER = 0.875;
+
+	/**
+	 * compact() is needed between moves if fewer than this portion of slots
+	 * are FREE.
+	 */
+	private static final double MIN_FREE = 0.125;
+
+	/**
+	 * Nodes fewer than this many moves below the root are never evicted.
+	 */
+	private static final int MIN_EVICTION_DEPTH = 2;
+
+	/** Value of parentMoves for a node that no parent links to. */
+	private static final short NO_PARENT = -1;
+
+	/** Turn recorded for a node allocated without one. */
+	static final int UNKNOWN_TURN = -1;
+
+	/** Placeholder for an epoch that has not been looked up yet. */
+	private static final int UNKNOWN_EPOCH = -1;
+
+	/** Number of slots swept by each allocation during a lazy sweep. */
+	private static final int LAZY_SWEEP_CHUNK = 64;
+
+	/**
+	 * The arena on which this table is built, or null. No new nodes are
+	 * created while a sparse arena has no free dense blocks.
+	 */
+	private final NodeArena arena;
+
+	/**
+	 * Sweep cycle in which the node in each slot was allocated or, during a
+	 * lazy sweep, last found.
+	 */
+	private final AtomicIntegerArray births;
+
+	/** True if probe sequences start at the beginning of a bucket. */
+	private final boolean bucketed;
+
+	/** True if this table uses lock-free slot claiming. */
+	private final boolean concurrent;
+
 	private final CoordinateSystem coords;
 
+	/** Incremented at the start of each sweep. */
+	private volatile int cycle;
+
+	/** Next slot to be examined for eviction. */
+	private int clockHand;
+
+	/** Number of DELETED slots. */
+	private final AtomicInteger deleted;
+
+	/** Tells when DELETED slots may be reused. */
+	private RunEpochs epochs;
+
+	/** True while some thread is evicting nodes. */
+	private final AtomicBoolean evicting;
+
+	/**
+	 * Nodes with fewer than this many runs (beyond the initial runs given by
+	 * clear()) may be evicted during search. If 0, nodes are only freed by
+	 * sweep().
+	 */
+	private int evictionThreshold;
+
 	/** ListNodes used to build child lists for SearchNodes. */
 	private final Pool<ListNode<SearchNode>> listNodes;
 
+	/** Number of chunks of the current lazy sweep that have been swept. */
+	private final AtomicInteger lazyChunksSwept;
+
+	/** Number of nodes freed by the current lazy sweep. */
+	private final AtomicInteger lazyFreed;
+
+	/** First slot of the next chunk to be swept lazily. */
+	private final AtomicInteger lazyCursor;
+
+	/** Time (from System.nanoTime()) when the current lazy sweep started. */
+	private long lazyStart;
+
+	/** True while a lazy sweep is in progress. */
+	private volatile boolean lazySweepPending;
+
 	/** The hash table itself. */
 	private final SearchNode[] table;
-	
-	private int nodesInUse;
+
+	/**
+	 * Fancy hash of the node in each slot. Only meaningful for slots that are
+	 * READY or DELETED.
+	 */
+	private final long[] hashes;
+
+	private final AtomicInteger nodesInUse;
+
+	/**
+	 * Fancy hash of the parent that links to the node in each slot. Guarded by
+	 * the lock on the node.
+	 */
+	private final long[] parentHashes;
+
+	/**
+	 * Move from the parent that links to the node in each slot, or NO_PARENT.
+	 * Guarded by the lock on the node.
+	 */
+	private final short[] parentMoves;
+
+	/**
+	 * True for slots whose nodes have been found since the clock hand last
+	 * passed. Races on this array only affect which nodes are evicted.
+	 */
+	private final boolean[] recentlyUsed;
+
+	/** Epoch (from RunEpochs) in which the node in each DELETED slot was freed. */
+	private final int[] retired;
+
+	/** Fancy hash of the root, which is never evicted. */
+	private volatile long rootHash;
+
+	/** Turn of the root, or UNKNOWN_TURN if there is no root yet. */
+	private volatile int rootTurn;
+
+	/** State of each slot. */
+	private final AtomicIntegerArray states;
+
+	/** Turn at which the node in each slot occurs, or UNKNOWN_TURN. */
+	private final int[] turns;
 
 	public TranspositionTable(int megabytes, SearchNodeBuilder builder,
 			CoordinateSystem coords) {
-		final int size = megabytes * 1024 * 32 / Math.max(81, coords.getArea());
+		this(megabytes, builder, coords, false);
+	}
+
+	/**
+	 * @param concurrent
+	 *            If true, slots are claimed with compare-and-set instead of
+	 *            synchronizing on the table.
+	 */
+	public TranspositionTable(int megabytes, SearchNodeBuilder builder,
+			CoordinateSystem coords, boolean concurrent) {
+		this(builder, megabytes * 1024 * 32 / Math.max(81, coords.getArea()),
+				null, coords, concurrent);
+	}
+
+	/**
+	 * Creates a table holding one node for each node in arena. The table size
+	 * is therefore determined by the arena rather than by a memory budget.
+	 *
+	 * @param concurrent
+	 *            If true, slots are claimed with compare-and-set instead of
+	 *            synchronizing on the table.
+	 */
+	public TranspositionTable(NodeArena arena, CoordinateSystem coords,
+			boolean concurrent) {
+		this(arena, arena.getCapacity(), arena, coords, concurrent);
+	}
+
+	/**
+	 * @param arena
+	 *            The arena builder came from, or null if there is none. If
+	 *            there is an arena, probe sequences start at the beginning of
+	 *            a bucket.
+	 */
+	private TranspositionTable(SearchNodeBuilder builder, int size,
+			NodeArena arena, CoordinateSystem coords, boolean concurrent) {
+		assert arena == null || size % BUCKET_SIZE == 0;
 		table = new SearchNode[size];
-		nodesInUse = 0;
+		hashes = new long[size];
+		states = new AtomicIntegerArray(size);
+		recentlyUsed = new boolean[size];
+		births = new AtomicIntegerArray(size);
+		retired = new int[size];
+		turns = new int[size];
+		parentHashes = new long[size];
+		parentMoves = new short[size];
+		lazyCursor = new AtomicInteger();
+		lazyChunksSwept = new AtomicInteger();
+		lazyFreed = new AtomicInteger();
+		nodesInUse = new AtomicInteger();
+		deleted = new AtomicInteger();
+		evicting = new AtomicBoolean();
+		epochs = new RunEpochs();
+		rootTurn = UNKNOWN_TURN;
 		for (int i = 0; i < size; i++) {
 			table[i] = builder.build();
 		}
@@ -31,15 +281,98 @@ public final class TranspositionTable {
 		for (int i = 0; i < 3 * size; i++) {
 			listNodes.free(new ListNode<SearchNode>());
 		}
+		this.arena = arena;
+		bucketed = arena != null;
 		this.coords = coords;
+		this.concurrent = concurrent;
 	}
 
 	/** Adds child as a child of parent. */
 	void addChild(SearchNode parent, SearchNode child) {
-		final ListNode<SearchNode> node = listNodes.allocate();
-		node.setKey(child);
-		node.setNext(parent.getChildren());
-		parent.setChildren(node);
+		synchronized (child) {
+			final int slot = slotOf(child);
+			if (slot >= 0 && parentMoves[slot] == NO_PARENT) {
+				parentHashes[slot] = parent.getFancyHash();
+				parentMoves[slot] = NO_POINT;
+			}
+			synchronized (parent) {
+				link(parent, child);
+			}
+		}
+	}
+
+	/**
+	 * Adds child as the child of parent reached by playing p, unless some
+	 * parent already links to child (for example, because another thread
+	 * allocated the same child at the same time). Returns true if the link was
+	 * added.
+	 */
+	boolean addChildIfNew(SearchNode parent, short p, SearchNode child) {
+		synchronized (child) {
+			final int slot = slotOf(child);
+			if (slot < 0 || parentMoves[slot] != NO_PARENT) {
+				return false;
+			}
+			parentHashes[slot] = parent.getFancyHash();
+			parentMoves[slot] = p;
+			synchronized (parent) {
+				parent.setHasChild(p);
+				link(parent, child);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Initializes the node in slot, which the calling thread has claimed, for
+	 * fancyHash and returns it.
+	 */
+	private SearchNode allocate(int slot, long fancyHash, int turn) {
+		final SearchNode n = table[slot];
+		freeChildren(n);
+		n.clear(fancyHash, coords);
+		hashes[slot] = fancyHash;
+		recentlyUsed[slot] = true;
+		births.set(slot, cycle);
+		turns[slot] = turn;
+		parentMoves[slot] = NO_PARENT;
+		nodesInUse.incrementAndGet();
+		states.set(slot, READY);
+		return n;
+	}
+
+	/**
+	 * Returns true unless this table is built on a sparse arena with no free
+	 * dense blocks, in which case a new node might have nowhere to keep its
+	 * statistics once its map fills.
+	 */
+	private boolean canCreateNode() {
+		return arena == null || arena.hasFreeBlock();
+	}
+
+	/**
+	 * Claims one node from budget, if budget is not null. Returns false if the
+	 * budget is used up.
+	 */
+	private static boolean claimNode(SearchBudget budget) {
+		return budget == null || budget.claimNode();
+	}
+
+	/**
+	 * Frees the nodes in all DELETED slots, then moves nodes so that no probe
+	 * sequence passes a FREE slot before reaching its node. Must be called
+	 * while no search threads are running.
+	 */
+	void compact() {
+		for (int i = 0; i < table.length; i++) {
+			if (states.get(i) == DELETED) {
+				release(i);
+			}
+		}
+		while (repairProbeSequences() > 0) {
+			// Moving a node can open a gap in a probe sequence that wraps
+			// around past the slot where the repair started
+		}
 	}
 
 	/**
@@ -54,95 +387,723 @@ public final class TranspositionTable {
 		return result;
 	}
 
+	/**
+	 * Runs the clock hand around the table, freeing nodes that are not used
+	 * recently and that isEvictable() accepts, until no more than LOW_WATER of
+	 * the slots are in use or the hand has gone all the way around. Returns
+	 * the number of nodes freed.
+	 */
+	private int evict() {
+		final int target = (int) (LOW_WATER * table.length);
+		final int limit = 2 * coords.getArea()
+				+ SimpleSearchNode.INITIAL_PASS_RUNS + evictionThreshold;
+		final int epoch = epochs.getCurrent();
+		int freed = 0;
+		for (int i = 0; i < table.length && nodesInUse.get() > target; i++) {
+			final int slot = clockHand;
+			clockHand = (clockHand + 1) % table.length;
+			if (states.get(slot) != READY) {
+				continue;
+			}
+			if (recentlyUsed[slot]) {
+				recentlyUsed[slot] = false;
+				continue;
+			}
+			if (isEvictable(slot, limit)
+					&& states.compareAndSet(slot, READY, CLAIMED)) {
+				unlinkFromParent(slot);
+				retire(slot, epoch);
+				freed++;
+			}
+		}
+		epochs.advance();
+		Logging.log("Evicted " + freed + " nodes; " + nodesInUse + "/"
+				+ table.length + " in use");
+		return freed;
+	}
+
+	/**
+	 * Evicts nodes, unless another thread is already doing so. Returns true if
+	 * any nodes were freed.
+	 */
+	private boolean evictIfNoOtherThreadIs() {
+		if (!evicting.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			if (concurrent) {
+				return evict() > 0;
+			}
+			synchronized (this) {
+				return evict() > 0;
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
 	/** Returns the node associated with hash, or null if there is no such node. */
-	public synchronized SearchNode findIfPresent(long fancyHash) {
-		final int start = ((int) fancyHash & IGNORE_SIGN_BIT) % table.length;
+	public SearchNode findIfPresent(long fancyHash) {
+		if (concurrent) {
+			return probe(fancyHash);
+		}
+		synchronized (this) {
+			return probe(fancyHash);
+		}
+	}
+
+	/**
+	 * Returns the node associated with hash in the table, if any. If not,
+	 * allocates and returns a new node from the pool. If no nodes are available
+	 * in the pool, returns null.
+	 */
+	SearchNode findOrAllocate(long fancyHash) {
+		return findOrAllocate(fancyHash, UNKNOWN_TURN);
+	}
+
+	/**
+	 * As findOrAllocate(long), but records the turn at which the node's
+	 * position occurs, so that nodes near the root are not evicted.
+	 */
+	SearchNode findOrAllocate(long fancyHash, int turn) {
+		return findOrAllocate(fancyHash, turn, null);
+	}
+
+	/**
+	 * As findOrAllocate(long, int), but a new node is only allocated if budget
+	 * (if not null) allows it. The budget is charged only when a node is
+	 * actually allocated, not when it is found or the table is full.
+	 */
+	SearchNode findOrAllocate(long fancyHash, int turn, SearchBudget budget) {
+		SearchNode result = findOrAllocateWithoutEviction(fancyHash, turn,
+				budget);
+		if (evictionThreshold > 0
+				&& (result == null || nodesInUse.get() > HIGH_WATER
+						* table.length)) {
+			if (evictIfNoOtherThreadIs() && result == null) {
+				result = findOrAllocateWithoutEviction(fancyHash, turn,
+						budget);
+			}
+		}
+		if (lazySweepPending) {
+			if (concurrent) {
+				sweepNextChunk();
+			} else {
+				synchronized (this) {
+					sweepNextChunk();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * As findOrAllocate(long, int), for the root. The root is never evicted.
+	 */
+	SearchNode findOrAllocateRoot(long fancyHash, int turn) {
+		if (rootHash != fancyHash || rootTurn != turn) {
+			rootHash = fancyHash;
+			rootTurn = turn;
+		}
+		return findOrAllocate(fancyHash, turn);
+	}
+
+	/**
+	 * Lock-free version of findOrAllocate. A free slot is claimed by a
+	 * compare-and-set from FREE to CLAIMED; the node is then cleared and
+	 * published by setting the state to READY. If another thread is claiming a
+	 * slot along the probe sequence, we wait for it to finish, because it may
+	 * be allocating the same hash. If a node must be allocated and the probe
+	 * sequence passed a tombstone, we allocate under the lock instead, so that
+	 * two threads cannot allocate the same hash in a tombstone and in a free
+	 * slot beyond it.
+	 */
+	private SearchNode findOrAllocateConcurrently(long fancyHash, int turn,
+			SearchBudget budget) {
+		final int start = startingSlot(fancyHash);
+		boolean passedTombstone = false;
 		int slot = start;
 		do {
-			final SearchNode n = table[slot];
-			if (n.isInUse()) {
-				if (n.getFancyHash() == fancyHash) {
+			int state = states.get(slot);
+			if (state == FREE) {
+				if (passedTombstone) {
+					break;
+				}
+				if (!canCreateNode() || !claimNode(budget)) {
+					return null;
+				}
+				if (states.compareAndSet(slot, FREE, CLAIMED)) {
+					return allocate(slot, fancyHash, turn);
+				}
+				releaseNode(budget);
+				state = states.get(slot);
+			}
+			while (state == CLAIMED) {
+				Thread.yield();
+				state = states.get(slot);
+			}
+			if (state == READY && hashes[slot] == fancyHash) {
+				final SearchNode n = found(slot);
+				if (n != null) {
 					return n;
 				}
-			} else {
-				return null;
+				state = DELETED;
+			}
+			if (state == DELETED) {
+				passedTombstone = true;
 			}
 			slot = (slot + 1) % table.length;
 		} while (slot != start);
+		if (passedTombstone) {
+			synchronized (this) {
+				return findOrAllocateSynchronously(fancyHash, turn, budget);
+			}
+		}
 		return null;
 	}
 
 	/**
-	 * Returns the node associated with hash in the table, if any. If not,
-	 * allocates and returns a new node from the pool. If no nodes are available
-	 * in the pool, returns null.
+	 * Version of findOrAllocate for use while holding the lock on this table.
+	 * Reuses the first tombstone along the probe sequence that RunEpochs
+	 * allows, if any.
 	 */
-	synchronized SearchNode findOrAllocate(long fancyHash) {
-		final int start = ((int) fancyHash & IGNORE_SIGN_BIT) % table.length;
+	private SearchNode findOrAllocateSynchronously(long fancyHash, int turn,
+			SearchBudget budget) {
+		final int start = startingSlot(fancyHash);
+		int oldest = UNKNOWN_EPOCH;
+		int tombstone = -1;
 		int slot = start;
 		do {
-			final SearchNode n = table[slot];
-			if (n.isInUse()) {
-				if (n.getFancyHash() == fancyHash) {
-					return n;
+			int state = states.get(slot);
+			while (state == CLAIMED) {
+				// Only possible in concurrent mode
+				Thread.yield();
+				state = states.get(slot);
+			}
+			if (state == READY) {
+				if (hashes[slot] == fancyHash) {
+					final SearchNode n = found(slot);
+					if (n != null) {
+						return n;
+					}
+					// Swept just now; the tombstone cannot be reused yet
+				}
+			} else if (state == DELETED) {
+				if (oldest == UNKNOWN_EPOCH) {
+					oldest = epochs.getOldestAnnounced();
+				}
+				if (tombstone < 0 && RunEpochs.isSafe(retired[slot], oldest)) {
+					tombstone = slot;
 				}
 			} else {
-				n.clear(fancyHash, coords);
-				nodesInUse++;
-				return n;
+				int free = slot;
+				if (oldest != UNKNOWN_EPOCH) {
+					free = releaseTombstonesBefore(slot, oldest);
+				}
+				if (tombstone >= 0) {
+					if (states.get(tombstone) == DELETED) {
+						if (!claimNode(budget)) {
+							return null;
+						}
+						return reuse(tombstone, fancyHash, turn);
+					}
+					// The tombstone was just released; the released run may
+					// extend back before the start of this probe sequence
+					free = tombstone;
+				}
+				if (!canCreateNode() || !claimNode(budget)) {
+					return null;
+				}
+				if (states.compareAndSet(free, FREE, CLAIMED)) {
+					return allocate(free, fancyHash, turn);
+				}
+				// A lock-free thread took the slot first
+				releaseNode(budget);
+				return findOrAllocateSynchronously(fancyHash, turn, budget);
 			}
 			slot = (slot + 1) % table.length;
 		} while (slot != start);
+		if (tombstone >= 0 && claimNode(budget)) {
+			return reuse(tombstone, fancyHash, turn);
+		}
 		return null;
 	}
 
+	/** Version of findOrAllocate that never evicts nodes. */
+	private SearchNode findOrAllocateWithoutEviction(long fancyHash, int turn,
+			SearchBudget budget) {
+		if (concurrent) {
+			return findOrAllocateConcurrently(fancyHash, turn, budget);
+		}
+		synchronized (this) {
+			return findOrAllocateSynchronously(fancyHash, turn, budget);
+		}
+	}
+
+	/**
+	 * Notes that the node in slot has been used and returns it. During a lazy
+	 * sweep, the node is also stamped with the current cycle, so that the
+	 * sweep does not free a node that the search has reached again (e.g.,
+	 * through a transposition) since marking. If the sweep freed the node
+	 * before it saw the stamp, returns null.
+	 */
+	private SearchNode found(int slot) {
+		if (!recentlyUsed[slot]) {
+			recentlyUsed[slot] = true;
+		}
+		if (lazySweepPending && births.get(slot) != cycle) {
+			births.set(slot, cycle);
+			// The sweep claims the slot before checking the stamp, so if it
+			// missed the stamp, we see the claim
+			int state = states.get(slot);
+			while (state == CLAIMED) {
+				Thread.yield();
+				state = states.get(slot);
+			}
+			if (state != READY) {
+				return null;
+			}
+		}
+		return table[slot];
+	}
+
+	/**
+	 * Returns the ListNodes in node's child list to the pool. The node is
+	 * locked because, in concurrent mode, a SimpleTreeUpdater that still holds
+	 * a reference to a freed node may be adding a child to it.
+	 */
+	private void freeChildren(SearchNode node) {
+		synchronized (node) {
+			ListNode<SearchNode> n = node.getChildren();
+			while (n != null) {
+				n = listNodes.free(n);
+			}
+			node.setChildren(null);
+		}
+	}
+
 	/** Returns the number of nodes in the table. For testing. */
 	int getCapacity() {
 		return table.length;
 	}
 
+	/** Returns the number of DELETED slots. For testing. */
+	int getDeleted() {
+		return deleted.get();
+	}
+
+	/**
+	 * If a lazy sweep is in progress, completes it on the calling thread.
+	 * Must be called while no search threads are running.
+	 */
+	void finishLazySweep() {
+		while (lazySweepPending) {
+			sweepNextChunk();
+		}
+	}
+
+	/**
+	 * Returns true if the node in slot, which is READY, may be evicted: it is
+	 * neither the root nor close below it, and either it was unreachable at
+	 * the last marking and has not been swept yet, or it has fewer than limit
+	 * runs.
+	 */
+	private boolean isEvictable(int slot, int limit) {
+		final SearchNode node = table[slot];
+		if (lazySweepPending && births.get(slot) != cycle) {
+			final boolean marked;
+			synchronized (node) {
+				// The lazy sweep clears marks as it goes, so the mark only
+				// means something ahead of the sweep
+				marked = node.isMarked() || slot < lazyCursor.get();
+			}
+			if (!marked) {
+				return true;
+			}
+		}
+		final int root = rootTurn;
+		if (root != UNKNOWN_TURN) {
+			if (hashes[slot] == rootHash) {
+				return false;
+			}
+			final int turn = turns[slot];
+			if (turn >= root && turn < root + MIN_EVICTION_DEPTH) {
+				return false;
+			}
+		}
+		return node.getTotalRuns() < limit;
+	}
+
+	/** Returns true if this table uses lock-free slot claiming. */
+	boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/** Pushes child onto parent's child list. The caller locks parent. */
+	private void link(SearchNode parent, SearchNode child) {
+		final ListNode<SearchNode> node = listNodes.allocate();
+		node.setKey(child);
+		node.setNext(parent.getChildren());
+		parent.setChildren(node);
+	}
+
 	/**
 	 * Marks all nodes reachable from root, so they will survive sweep().
-	 * Returns the number of nodes marked.
+	 * Returns the number of nodes marked. The DAG is traversed with an explicit
+	 * stack, so deep trees cannot overflow the call stack. Several threads may
+	 * mark at once (while no search threads are running); a node reached by
+	 * two of them at the same time may be counted twice.
 	 */
 	int markNodesReachableFrom(SearchNode root) {
 		if (root == null || root.isMarked()) {
 			return 0;
 		}
+		final ArrayDeque<SearchNode> stack = new ArrayDeque<>();
 		root.setMarked(true);
-		int sum = 1;
-		ListNode<SearchNode> child = root.getChildren();
-		while (child != null) {
-			sum += markNodesReachableFrom(child.getKey());
-			child = child.getNext();
+		stack.push(root);
+		int sum = 0;
+		while (!stack.isEmpty()) {
+			final SearchNode node = stack.pop();
+			sum++;
+			ListNode<SearchNode> child = node.getChildren();
+			while (child != null) {
+				final SearchNode key = child.getKey();
+				if (!key.isMarked()) {
+					key.setMarked(true);
+					stack.push(key);
+				}
+				child = child.getNext();
+			}
 		}
 		return sum;
 	}
 
+	/**
+	 * Moves the node in READY slot from to FREE slot to. Must be called while
+	 * no search threads are running.
+	 */
+	private void move(int from, int to) {
+		final SearchNode n = table[to];
+		table[to] = table[from];
+		table[from] = n;
+		hashes[to] = hashes[from];
+		births.set(to, births.get(from));
+		recentlyUsed[to] = recentlyUsed[from];
+		turns[to] = turns[from];
+		parentHashes[to] = parentHashes[from];
+		parentMoves[to] = parentMoves[from];
+		states.set(to, READY);
+		states.set(from, FREE);
+	}
+
+	/**
+	 * Returns true if so few slots are FREE that compact() should be called
+	 * before the next search.
+	 */
+	boolean needsCompaction() {
+		return table.length - nodesInUse.get() - deleted.get() < MIN_FREE
+				* table.length;
+	}
+
 	/** Returns the number of table nodes currently in use. */
 	int getNodesInUse() {
-		return nodesInUse;
+		return nodesInUse.get();
 	}
-	
+
+	/**
+	 * Finishes any lazy sweep and starts a new sweep cycle, so that every node
+	 * now in the table is swept unless it is marked. Must be called while no
+	 * search threads are running.
+	 */
+	void prepareToSweep() {
+		finishLazySweep();
+		cycle++;
+		Logging.log("Nodes in use " + nodesInUse + "/" + table.length + " (" + (nodesInUse.get() * 100)/table.length  + "%)");
+	}
+
+	/**
+	 * Returns the node associated with hash, or null. Slots that are DELETED,
+	 * or still being claimed, are passed over.
+	 */
+	private SearchNode probe(long fancyHash) {
+		final int start = startingSlot(fancyHash);
+		int slot = start;
+		do {
+			final int state = states.get(slot);
+			if (state == READY) {
+				if (hashes[slot] == fancyHash) {
+					return found(slot);
+				}
+			} else if (state == FREE) {
+				return null;
+			}
+			slot = (slot + 1) % table.length;
+		} while (slot != start);
+		return null;
+	}
+
+	/**
+	 * Gives back a node claimed from budget, if budget is not null, because
+	 * the slot was taken by another thread.
+	 */
+	private static void releaseNode(SearchBudget budget) {
+		if (budget != null) {
+			budget.releaseNode();
+		}
+	}
+
+	/**
+	 * Frees the node in the DELETED slot and makes the slot FREE. The caller
+	 * must know that no other thread can still use the node.
+	 */
+	private void release(int slot) {
+		final SearchNode n = table[slot];
+		freeChildren(n);
+		n.free();
+		deleted.decrementAndGet();
+		states.set(slot, FREE);
+	}
+
+	/**
+	 * Turns any reusable tombstones immediately before the FREE slot into FREE
+	 * slots, which shortens the probe sequences that end there. Returns the
+	 * first of the resulting run of FREE slots. The caller holds the lock on
+	 * this table.
+	 *
+	 * @param oldest
+	 *            The result of RunEpochs.getOldestAnnounced().
+	 */
+	private int releaseTombstonesBefore(int free, int oldest) {
+		int result = free;
+		for (int i = 1; i < table.length; i++) {
+			final int slot = (free + table.length - i) % table.length;
+			if (states.get(slot) != DELETED
+					|| !RunEpochs.isSafe(retired[slot], oldest)) {
+				break;
+			}
+			release(slot);
+			result = slot;
+		}
+		return result;
+	}
+
+	/**
+	 * Moves each node that is not reachable along its probe sequence (because
+	 * a FREE slot comes first) into the first FREE slot along that sequence.
+	 * Returns the number of nodes moved.
+	 */
+	private int repairProbeSequences() {
+		int begin = -1;
+		for (int i = 0; i < table.length; i++) {
+			if (states.get(i) == FREE) {
+				begin = i;
+				break;
+			}
+		}
+		if (begin < 0) {
+			return 0;
+		}
+		int moved = 0;
+		for (int i = 1; i < table.length; i++) {
+			final int slot = (begin + i) % table.length;
+			if (states.get(slot) != READY) {
+				continue;
+			}
+			for (int s = startingSlot(hashes[slot]); s != slot; s = (s + 1)
+					% table.length) {
+				if (states.get(s) == FREE) {
+					move(slot, s);
+					moved++;
+					break;
+				}
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Marks the node in slot, which the calling thread has claimed, as
+	 * DELETED in the given epoch. The node itself is left alone, because other
+	 * threads may still be using it.
+	 */
+	private void retire(int slot, int epoch) {
+		retired[slot] = epoch;
+		nodesInUse.decrementAndGet();
+		deleted.incrementAndGet();
+		states.set(slot, DELETED);
+	}
+
+	/**
+	 * Reuses the reusable DELETED slot for fancyHash. The caller holds the
+	 * lock on this table.
+	 */
+	private SearchNode reuse(int slot, long fancyHash, int turn) {
+		states.set(slot, CLAIMED);
+		deleted.decrementAndGet();
+		return allocate(slot, fancyHash, turn);
+	}
+
+	/**
+	 * Sets the number of runs (beyond the initial runs) below which nodes may
+	 * be evicted during search. 0 turns eviction off.
+	 */
+	void setEvictionThreshold(int runs) {
+		evictionThreshold = runs;
+	}
+
+	/**
+	 * Sets the RunEpochs with which the McRunnables announce their runs. By
+	 * default, no runs are announced, so DELETED slots are reused at once.
+	 */
+	void setRunEpochs(RunEpochs epochs) {
+		this.epochs = epochs;
+	}
+
+	/**
+	 * Returns the READY slot holding node, or -1 if node is not in the table
+	 * (or is being claimed).
+	 */
+	private int slotOf(SearchNode node) {
+		final int start = startingSlot(node.getFancyHash());
+		int slot = start;
+		do {
+			final int state = states.get(slot);
+			if (state == READY && table[slot] == node) {
+				return slot;
+			}
+			if (state == FREE) {
+				return -1;
+			}
+			slot = (slot + 1) % table.length;
+		} while (slot != start);
+		return -1;
+	}
+
+	/** Returns the first slot to probe for fancyHash. */
+	private int startingSlot(long fancyHash) {
+		final int h = (int) fancyHash & IGNORE_SIGN_BIT;
+		if (bucketed) {
+			return h % (table.length / BUCKET_SIZE) * BUCKET_SIZE;
+		}
+		return h % table.length;
+	}
+
 	/**
 	 * After markNodesUnreachableFrom(), frees all unused SearchNodes (tagging
 	 * them as not in use) and associated ListNodes (returning them to the
-	 * pool).
+	 * pool). The table is compacted only if needsCompaction().
 	 */
 	void sweep() {
-		Logging.log("Nodes in use " + nodesInUse + "/" + table.length + " (" + (nodesInUse* 100)/table.length  + "%)");
-		for (int i = 0; i < table.length; i++) {
+		prepareToSweep();
+		sweep(0, table.length);
+		if (needsCompaction()) {
+			compact();
+		}
+	}
+
+	/**
+	 * Sweeps slots start (inclusive) through end (exclusive), after
+	 * prepareToSweep(). Unmarked nodes become DELETED; compact() (between
+	 * moves) or later allocations free them. Several threads may sweep
+	 * disjoint ranges at once. Returns the number of nodes freed.
+	 */
+	int sweep(int start, int end) {
+		final int epoch = epochs.getCurrent();
+		int freed = 0;
+		for (int i = start; i < end; i++) {
+			if (states.get(i) != READY) {
+				continue;
+			}
 			final SearchNode node = table[i];
-			if (node.isInUse()) {
-				if (node.isMarked()) {
+			if (node.isMarked()) {
+				// A search thread may be setting another bit in the same word
+				synchronized (node) {
 					node.setMarked(false);
+				}
+			} else if (births.get(i) != cycle
+					&& states.compareAndSet(i, READY, CLAIMED)) {
+				if (births.get(i) == cycle) {
+					// A search thread found the node after all
+					states.set(i, READY);
 				} else {
-					ListNode<SearchNode> n = node.getChildren();
-					while (n != null) {
-						n = listNodes.free(n);
+					// Every parent of an unmarked node is unmarked, so there
+					// is no link to remove
+					retire(i, epoch);
+					freed++;
+				}
+			}
+		}
+		epochs.advance();
+		return freed;
+	}
+
+	/**
+	 * After markNodesReachableFrom(), starts a sweep that is carried out a
+	 * chunk at a time by subsequent allocations.
+	 */
+	void sweepLazily() {
+		prepareToSweep();
+		lazyCursor.set(0);
+		lazyChunksSwept.set(0);
+		lazyFreed.set(0);
+		lazyStart = System.nanoTime();
+		lazySweepPending = true;
+	}
+
+	/** Sweeps the next chunk of a lazy sweep, if any. */
+	@SuppressWarnings("boxing")
+	private void sweepNextChunk() {
+		final int start = lazyCursor.getAndAdd(LAZY_SWEEP_CHUNK);
+		if (start >= table.length) {
+			return;
+		}
+		lazyFreed.addAndGet(sweep(start,
+				Math.min(start + LAZY_SWEEP_CHUNK, table.length)));
+		final int chunks = (table.length + LAZY_SWEEP_CHUNK - 1)
+				/ LAZY_SWEEP_CHUNK;
+		if (lazyChunksSwept.incrementAndGet() == chunks) {
+			lazySweepPending = false;
+			Logging.log(format("Lazy sweep freed %d nodes over %.1f ms",
+					lazyFreed.get(), (System.nanoTime() - lazyStart) / 1e6));
+		}
+	}
+
+	/**
+	 * Removes the link to the node in slot, which the calling thread has
+	 * claimed, from the parent that created it (if that parent is still in the
+	 * table), so that the parent cannot keep the slot's next occupant alive
+	 * and will link to the position again if it is recreated.
+	 */
+	private void unlinkFromParent(int slot) {
+		final SearchNode child = table[slot];
+		synchronized (child) {
+			final short p = parentMoves[slot];
+			if (p == NO_PARENT) {
+				return;
+			}
+			parentMoves[slot] = NO_PARENT;
+			final SearchNode parent = probe(parentHashes[slot]);
+			if (parent == null) {
+				return;
+			}
+			synchronized (parent) {
+				ListNode<SearchNode> previous = null;
+				ListNode<SearchNode> n = parent.getChildren();
+				while (n != null) {
+					if (n.getKey() == child) {
+						if (previous == null) {
+							parent.setChildren(n.getNext());
+						} else {
+							previous.setNext(n.getNext());
+						}
+						listNodes.free(n);
+						if (p != NO_POINT) {
+							parent.clearHasChild(p);
+						}
+						return;
 					}
-					node.free();
-					nodesInUse--;
+					previous = n;
+					n = n.getNext();
 				}
 			}
 		}
@@ -28,6 +28,29 @@ public class TranspositionTableTest {
 		assertFalse(m == p);
 	}
 
+	@Test
+	public void testBudgetChargedOnlyForNewNodes() {
+		final SearchBudget budget = new SearchBudget(new SearchController(), 1);
+		budget.setNodeLimit(2);
+		budget.reset();
+		final SearchNode a = table.findOrAllocate(1L, 0, budget);
+		assertNotNull(a);
+		// Finding an existing node is free
+		assertSame(a, table.findOrAllocate(1L, 0, budget));
+		assertNotNull(table.findOrAllocate(2L, 0, budget));
+		assertNull(table.findOrAllocate(3L, 0, budget));
+		assertTrue(budget.isExhausted());
+		assertEquals(2, table.getNodesInUse());
+		// A full table uses none of the budget
+		budget.setNodeLimit(1);
+		budget.reset();
+		for (long h = 3; h < table.getCapacity() + 1; h++) {
+			table.findOrAllocate(h);
+		}
+		assertNull(table.findOrAllocate(-1L, 0, budget));
+		assertFalse(budget.isExhausted());
+	}
+
 	@Test
 	public void testFindOrAllocate2() {
 		SearchNode a = table.findOrAllocate(1);
@@ -128,6 +151,78 @@ public class TranspositionTableTest {
 		assertEquals(1, table.dagSize(e));
 	}
 
+	@Test
+	public void testConcurrentFindOrAllocate() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(1, new SimpleSearchNodeBuilder(coords), coords, true);
+		SearchNode a = table.findOrAllocate(1);
+		SearchNode b = table.findOrAllocate(1 + table.getCapacity());
+		assertFalse(a == b);
+		assertEquals(a, table.findIfPresent(1));
+		assertEquals(b, table.findIfPresent(1 + table.getCapacity()));
+		assertNull(table.findIfPresent(2));
+		assertEquals(2, table.getNodesInUse());
+	}
+
+	@Test
+	public void testConcurrentAllocationFailsWhenNoNodesLeft() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(1, new SimpleSearchNodeBuilder(coords), coords, true);
+		for (int i = 0; i < table.getCapacity(); i++) {
+			assertNotNull(table.findOrAllocate(i));
+		}
+		assertNull(table.findOrAllocate(table.getCapacity() + 1));
+		table.markNodesReachableFrom(table.findIfPresent(0));
+		table.sweep();
+		assertEquals(1, table.getNodesInUse());
+		assertNotNull(table.findOrAllocate(table.getCapacity() + 1));
+	}
+
+	@Test
+	public void testConcurrentAllocationFromManyThreads() throws InterruptedException {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(1, new SimpleSearchNodeBuilder(coords), coords, true);
+		final int hashes = table.getCapacity() / 2;
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int h = 0; h < hashes; h++) {
+						table.findOrAllocate(h * 7919L);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// Every hash has exactly one node
+		assertEquals(hashes, table.getNodesInUse());
+		for (int h = 0; h < hashes; h++) {
+			assertEquals(h * 7919L, table.findIfPresent(h * 7919L).getFancyHash());
+		}
+	}
+
+	@Test
+	public void testArenaTable() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		NodeArena arena = new NodeArena(1, coords, false);
+		table = new TranspositionTable(arena, coords, false);
+		assertEquals(arena.getCapacity(), table.getCapacity());
+		SearchNode a = table.findOrAllocate(1);
+		// Same bucket
+		SearchNode b = table.findOrAllocate(1 + table.getCapacity() / TranspositionTable.BUCKET_SIZE);
+		assertFalse(a == b);
+		assertEquals(a, table.findIfPresent(1));
+		assertEquals(b, table.findIfPresent(1 + table.getCapacity() / TranspositionTable.BUCKET_SIZE));
+		for (int i = 2; i < table.getCapacity(); i++) {
+			assertNotNull(table.findOrAllocate(i * 31L));
+		}
+		assertNull(table.findOrAllocate(-5L));
+	}
+
 	@Test
 	public void testMinValue() {
 		// Math.abs(Integer.MIN_VALUE) is negative, so there is special code to
@@ -138,4 +233,151 @@ public class TranspositionTableTest {
 		assertNotNull(table.findIfPresent(hash));
 	}
 
+	@Test
+	public void testEvictionKeepsTableGrowing() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table.setEvictionThreshold(1);
+		SearchNode root = table.findOrAllocate(-1L);
+		root.update(coords.at("c3"), 5, 5);
+		SearchNode child = table.findOrAllocate(-2L);
+		table.addChild(root, child);
+		table.addChild(child, table.findOrAllocate(-3L));
+		for (int i = 0; i < 2 * table.getCapacity(); i++) {
+			assertNotNull(table.findOrAllocate(i));
+		}
+		assertTrue(table.getNodesInUse() < table.getCapacity());
+		assertEquals(root, table.findIfPresent(-1L));
+	}
+
+	@Test
+	public void testEvictionReturnsListNodes() {
+		table.setEvictionThreshold(1);
+		// There are only 3 ListNodes per slot, so this is only possible if
+		// evicted nodes' ListNodes are returned to the pool
+		for (int i = 0; i < 4 * table.getCapacity(); i++) {
+			SearchNode node = table.findOrAllocate(i);
+			assertNotNull(node);
+			table.addChild(node, node);
+		}
+	}
+
+	@Test
+	public void testConcurrentEviction() throws InterruptedException {
+		final CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(1, new SimpleSearchNodeBuilder(coords), coords, true);
+		table.setEvictionThreshold(1);
+		final int allocations = 2 * table.getCapacity();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < allocations; i++) {
+						table.findOrAllocate(i * threads.length + id);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(table.getNodesInUse() <= table.getCapacity());
+		assertNotNull(table.findOrAllocate(-1L));
+	}
+
+	@Test
+	public void testProbesPassOverTombstones() {
+		SearchNode a = table.findOrAllocate(1);
+		SearchNode b = table.findOrAllocate(1 + table.getCapacity());
+		table.markNodesReachableFrom(b);
+		table.sweepLazily();
+		table.finishLazySweep();
+		// a's slot is now a tombstone in front of b
+		assertEquals(1, table.getDeleted());
+		assertNull(table.findIfPresent(1));
+		assertEquals(b, table.findIfPresent(1 + table.getCapacity()));
+		assertEquals(b, table.findOrAllocate(1 + table.getCapacity()));
+		assertEquals(1, table.getNodesInUse());
+		// The tombstone is reused
+		assertEquals(a, table.findOrAllocate(1));
+		assertEquals(0, table.getDeleted());
+	}
+
+	@Test
+	public void testCompactRepairsProbeSequences() {
+		table.findOrAllocate(1);
+		SearchNode b = table.findOrAllocate(1 + table.getCapacity());
+		table.markNodesReachableFrom(b);
+		table.sweep();
+		// So few nodes were freed that the table was not compacted
+		assertEquals(1, table.getDeleted());
+		table.compact();
+		assertEquals(0, table.getDeleted());
+		assertNull(table.findIfPresent(1));
+		// b has moved into a's old slot
+		assertEquals(b, table.findIfPresent(1 + table.getCapacity()));
+		assertEquals(1, table.getNodesInUse());
+	}
+
+	@Test
+	public void testEvictionUnlinksChild() {
+		table.setEvictionThreshold(1);
+		SearchNode root = table.findOrAllocateRoot(-1L, 0);
+		SearchNode parent = table.findOrAllocate(-2L, 1);
+		short p = CoordinateSystem.forWidth(5).at("c3");
+		assertTrue(table.addChildIfNew(root, p, parent));
+		SearchNode child = table.findOrAllocate(-3L, 2);
+		assertTrue(table.addChildIfNew(parent, p, child));
+		assertFalse(table.addChildIfNew(root, p, child));
+		for (int i = 0; i < 2 * table.getCapacity(); i++) {
+			table.findOrAllocate(i);
+		}
+		assertNull(table.findIfPresent(-3L));
+		// The root and its child are too close to the root to be evicted
+		assertEquals(root, table.findIfPresent(-1L));
+		assertEquals(parent, table.findIfPresent(-2L));
+		assertFalse(parent.hasChild(p));
+		assertNull(parent.getChildren());
+		// The recreated child is linked again
+		child = table.findOrAllocate(-3L, 2);
+		assertTrue(table.addChildIfNew(parent, p, child));
+		assertEquals(child, parent.getChildren().getKey());
+	}
+
+	@Test
+	public void testDeletedSlotNotReusedDuringRun() {
+		RunEpochs epochs = new RunEpochs();
+		table.setRunEpochs(epochs);
+		RunEpochs.Participant run = epochs.register();
+		run.enter();
+		SearchNode held = table.findOrAllocate(-1L);
+		table.sweepLazily();
+		table.finishLazySweep();
+		assertEquals(1, table.getDeleted());
+		// The run may still be using held, so its slot is not reused even
+		// when the table is full
+		for (int i = 0; i < table.getCapacity(); i++) {
+			table.findOrAllocate(i);
+		}
+		assertEquals(-1L, held.getFancyHash());
+		assertEquals(1, table.getDeleted());
+		run.exit();
+		assertNotNull(table.findOrAllocate(-5L));
+		assertEquals(0, table.getDeleted());
+	}
+
+	@Test
+	public void testLazySweepKeepsNodesFoundAgain() {
+		SearchNode a = table.findOrAllocate(1);
+		table.findOrAllocate(2);
+		table.sweepLazily();
+		// Neither node was marked, but the search finds a again
+		assertEquals(a, table.findIfPresent(1));
+		table.finishLazySweep();
+		assertEquals(a, table.findIfPresent(1));
+		assertNull(table.findIfPresent(2));
+	}
+
 }
@@ -0,0 +1,183 @@
+package edu.lclark.orego.mcts;
+
+import static edu.lclark.orego.experiment.Logging.log;
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.lclark.orego.util.ListNode;
+
+/**
+ * Frees the nodes in a TranspositionTable that are no longer reachable from
+ * the root, after a move has been accepted. Marking and sweeping may each be
+ * split across the Player's search threads, which are idle at that point: the
+ * subtrees below the root are handed out to the threads one at a time, and
+ * the table is divided into one range of slots per thread. The sweep may also
+ * be left to the search threads, which carry it out a little at a time as they
+ * allocate nodes. Swept slots become tombstones that allocations reuse; the
+ * table is compacted between moves only when few slots remain free.
+ * <p>
+ * The time taken by each phase is logged.
+ */
+public final class TreeReclaimer {
+
+	/** True if sweeping is left to the search threads. */
+	private final boolean lazy;
+
+	private final TranspositionTable table;
+
+	/**
+	 * The threads that run marking and sweeping tasks, or null if everything
+	 * runs on the calling thread.
+	 */
+	private final SearchThreads threads;
+
+	/**
+	 * Creates a reclaimer that marks and sweeps on the calling thread.
+	 *
+	 * @param lazy
+	 *            If true, sweeping is carried out by the search threads once
+	 *            search resumes.
+	 */
+	public TreeReclaimer(TranspositionTable table, boolean lazy) {
+		this(table, null, lazy);
+	}
+
+	/**
+	 * @param threads
+	 *            The Player's search threads, which mark and sweep while
+	 *            search is paused, or null to mark and sweep on the calling
+	 *            thread.
+	 * @param lazy
+	 *            If true, sweeping is carried out by the search threads once
+	 *            search resumes.
+	 */
+	TreeReclaimer(TranspositionTable table, SearchThreads threads, boolean lazy) {
+		this.table = table;
+		this.lazy = lazy;
+		if (threads != null && threads.getThreadCount() > 1) {
+			this.threads = threads;
+		} else {
+			this.threads = null;
+		}
+	}
+
+	/** Compacts the table if few slots remain free. */
+	@SuppressWarnings("boxing")
+	private void compactIfNeeded() {
+		if (table.needsCompaction()) {
+			final long start = System.nanoTime();
+			table.compact();
+			log(format("Compacted table in %.1f ms",
+					(System.nanoTime() - start) / 1e6));
+		}
+	}
+
+	/**
+	 * Marks the nodes reachable from root and returns (about) how many there
+	 * are.
+	 */
+	private int mark(SearchNode root) {
+		if (threads == null) {
+			return table.markNodesReachableFrom(root);
+		}
+		if (root == null || root.isMarked()) {
+			return 0;
+		}
+		root.setMarked(true);
+		final List<SearchNode> subtrees = new ArrayList<>();
+		ListNode<SearchNode> child = root.getChildren();
+		while (child != null) {
+			subtrees.add(child.getKey());
+			child = child.getNext();
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final int[] counts = new int[threads.getThreadCount()];
+		final Runnable[] tasks = new Runnable[counts.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final int task = i;
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					int index = next.getAndIncrement();
+					while (index < subtrees.size()) {
+						counts[task] += table.markNodesReachableFrom(subtrees
+								.get(index));
+						index = next.getAndIncrement();
+					}
+				}
+			};
+		}
+		return 1 + runAll(tasks, counts);
+	}
+
+	/**
+	 * Marks all nodes reachable from root and frees the others (or arranges
+	 * for them to be freed during the next search). Must be called while no
+	 * search threads are running.
+	 */
+	@SuppressWarnings("boxing")
+	public void reclaim(SearchNode root) {
+		table.finishLazySweep();
+		if (lazy) {
+			compactIfNeeded();
+		}
+		final long start = System.nanoTime();
+		final int marked = mark(root);
+		final long marking = System.nanoTime() - start;
+		log(format("Marked %d nodes in %.1f ms", marked, marking / 1e6));
+		if (lazy) {
+			table.sweepLazily();
+		} else {
+			final long sweepStart = System.nanoTime();
+			final int freed = sweep();
+			log(format("Swept %d nodes in %.1f ms", freed,
+					(System.nanoTime() - sweepStart) / 1e6));
+			compactIfNeeded();
+		}
+	}
+
+	/**
+	 * Runs tasks on the search threads and returns the sum of counts, in
+	 * which the tasks record their results.
+	 */
+	private int runAll(Runnable[] tasks, int[] counts) {
+		try {
+			threads.runTasks(tasks);
+		} catch (final InterruptedException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		int sum = 0;
+		for (final int count : counts) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	/** Frees all unmarked nodes and returns how many were freed. */
+	private int sweep() {
+		table.prepareToSweep();
+		final int size = table.getCapacity();
+		if (threads == null) {
+			return table.sweep(0, size);
+		}
+		final int[] counts = new int[threads.getThreadCount()];
+		final Runnable[] tasks = new Runnable[counts.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final int task = i;
+			final int start = (int) ((long) size * i / tasks.length);
+			final int end = (int) ((long) size * (i + 1) / tasks.length);
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					counts[task] = table.sweep(start, end);
+				}
+			};
+		}
+		return runAll(tasks, counts);
+	}
+
+}
@@ -0,0 +1,99 @@
+package edu.lclark.orego.mcts;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.CoordinateSystem;
+
+public class TreeReclaimerTest {
+
+	private TranspositionTable table;
+
+	@Before
+	public void setUp() throws Exception {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(1, new SimpleSearchNodeBuilder(coords), coords);
+	}
+
+	/** Builds a small DAG below node 1 and an unreachable node 0. */
+	private SearchNode buildDag() {
+		SearchNode a = table.findOrAllocate(0L);
+		SearchNode b = table.findOrAllocate(1L);
+		SearchNode c = table.findOrAllocate(2L);
+		SearchNode d = table.findOrAllocate(3L);
+		SearchNode e = table.findOrAllocate(4L);
+		table.addChild(a, b);
+		table.addChild(b, c);
+		table.addChild(b, d);
+		table.addChild(c, e);
+		table.addChild(d, e);
+		return b;
+	}
+
+	private void assertOnlyUnreachableNodeFreed() {
+		assertNull(table.findIfPresent(0L));
+		for (long h = 1; h <= 4; h++) {
+			assertNotNull(table.findIfPresent(h));
+		}
+		assertEquals(4, table.getNodesInUse());
+	}
+
+	@Test
+	public void testReclaim() {
+		new TreeReclaimer(table, false).reclaim(buildDag());
+		assertOnlyUnreachableNodeFreed();
+	}
+
+	@Test
+	public void testParallelReclaim() {
+		final SearchThreads threads = new SearchThreads(new McRunnable[4]);
+		final TreeReclaimer reclaimer = new TreeReclaimer(table, threads, false);
+		reclaimer.reclaim(buildDag());
+		assertOnlyUnreachableNodeFreed();
+		// The work was done on the search threads
+		assertNotNull(threads.getThread(3));
+		// Marks have been cleared, so the next reclaim works too
+		reclaimer.reclaim(table.findIfPresent(3L));
+		assertEquals(2, table.getNodesInUse());
+		threads.shutdown();
+	}
+
+	@Test
+	public void testLazySweep() {
+		new TreeReclaimer(table, true).reclaim(buildDag());
+		assertEquals(5, table.getNodesInUse());
+		// Nodes allocated during a lazy sweep are not garbage
+		for (long h = 5; h < 5 + table.getCapacity() / 2; h++) {
+			assertNotNull(table.findOrAllocate(h));
+		}
+		assertNull(table.findIfPresent(0L));
+		for (long h = 1; h < 5 + table.getCapacity() / 2; h++) {
+			assertNotNull(table.findIfPresent(h));
+		}
+	}
+
+	@Test
+	public void testFinishLazySweep() {
+		new TreeReclaimer(table, true).reclaim(buildDag());
+		table.finishLazySweep();
+		assertOnlyUnreachableNodeFreed();
+	}
+
+	@Test
+	public void testDeepTree() {
+		CoordinateSystem coords = CoordinateSystem.forWidth(5);
+		table = new TranspositionTable(64, new SimpleSearchNodeBuilder(coords), coords);
+		SearchNode root = table.findOrAllocate(0L);
+		SearchNode parent = root;
+		for (long h = 1; h < table.getCapacity() / 2; h++) {
+			SearchNode child = table.findOrAllocate(h);
+			table.addChild(parent, child);
+			parent = child;
+		}
+		new TreeReclaimer(table, new SearchThreads(new McRunnable[2]), false).reclaim(root);
+		assertEquals(table.getCapacity() / 2, table.getNodesInUse());
+	}
+
+}
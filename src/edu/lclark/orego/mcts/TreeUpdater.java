@@ -14,6 +14,11 @@ public interface TreeUpdater {
 	/** Returns the root node (creating it if necessary). */
 	public SearchNode getRoot();
 
+	/**
+	 * Ends any threads this updater uses. It cannot be used afterward.
+	 */
+	public void shutdown();
+
 	/**
 	 * Updates the tree after accepting a move (e.g., throwing away unreachable
 	 * nodes).
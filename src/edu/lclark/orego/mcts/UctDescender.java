@@ -9,37 +9,63 @@ import edu.lclark.orego.core.Board;
 /** Uses UCT. */
 public final class UctDescender extends AbstractDescender {
 
-	public UctDescender(Board board, TranspositionTable table, int biasDelay) {
-		super(board, table, biasDelay);
-	}
-
 	/**
-	 * Returns the UCT upper bound for node. This is the UCB1-TUNED policy,
-	 * explained in the tech report by Gelly, et al, "Modification of UCT with
-	 * Patterns in Monte-Carlo Go". The formula is at the bottom of p. 5 in that
-	 * paper.
+	 * Returns the UCT upper bound for a move with the given win rate and runs,
+	 * from a node whose total runs have the given logarithm.
 	 */
-	@Override
-	float searchValue(SearchNode node, short move) {
+	private static float searchValue(float winRate, int runs,
+			double logParentRunCount) {
 		// The variable names here are chosen for consistency with the tech
 		// report
-		final double barX = node.getWinRate(move);
+		final double barX = winRate;
 		if (barX < 0) { // if the move has been excluded
 			return NEGATIVE_INFINITY;
 		}
-		final double logParentRunCount = log(node.getTotalRuns());
 		// In the paper, term1 is the mean of the SQUARES of the rewards; since
 		// all rewards are 0 or 1 here, this is equivalent to the mean of the
 		// rewards, i.e., the win rate.
 		final double term1 = barX;
 		final double term2 = -(barX * barX);
-		final double term3 = sqrt(2 * logParentRunCount / node.getRuns(move));
+		final double term3 = sqrt(2 * logParentRunCount / runs);
 		final double v = term1 + term2 + term3; // This equation is above Eq. 1
 		assert v >= 0 : "Negative variability in UCT";
-		final double factor1 = logParentRunCount / node.getRuns(move);
+		final double factor1 = logParentRunCount / runs;
 		final double factor2 = min(0.25, v);
 		final double uncertainty = 0.4 * sqrt(factor1 * factor2);
 		return (float) (uncertainty + barX);
 	}
 
+	public UctDescender(Board board, TranspositionTable table, int biasDelay) {
+		super(board, table, biasDelay);
+	}
+
+	/**
+	 * Returns the UCT upper bound for node. This is the UCB1-TUNED policy,
+	 * explained in the tech report by Gelly, et al, "Modification of UCT with
+	 * Patterns in Monte-Carlo Go". The formula is at the bottom of p. 5 in that
+	 * paper.
+	 */
+	@Override
+	float searchValue(SearchNode node, short move) {
+		return searchValue(node.getWinRate(move), node.getRuns(move),
+				log(node.getTotalRuns()));
+	}
+
+	/**
+	 * Computes the same values as searchValue(), but takes the logarithm of
+	 * the node's total runs only once.
+	 */
+	@Override
+	void searchValues(SearchNode node, SearchValues result) {
+		final int[] runs = result.runs;
+		final float[] wins = result.wins;
+		final float[] values = result.values;
+		node.getRunsAndWins(runs, wins);
+		final double logParentRunCount = log(node.getTotalRuns());
+		for (int p = 0; p < values.length; p++) {
+			values[p] = searchValue(wins[p] / runs[p], runs[p],
+					logParentRunCount);
+		}
+	}
+
 }
@@ -1,5 +1,6 @@
 package edu.lclark.orego.mcts;
 
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
 import static edu.lclark.orego.core.StoneColor.BLACK;
 import static org.junit.Assert.*;
 
@@ -11,6 +12,7 @@ import edu.lclark.orego.core.CoordinateSystem;
 import edu.lclark.orego.feature.Suggester;
 import edu.lclark.orego.move.Mover;
 import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.ShortSet;
 
 public class UctDescenderTest {
 
@@ -68,6 +70,97 @@ public class UctDescenderTest {
 		assertEquals(at("d2"), runnable.getHistoryObserver().get(0));
 	}
 
+	@Test
+	public void testCandidateRefresh() {
+		descender.setCandidateRefresh(1000);
+		player.acceptMove(at("c3"));
+		final SearchNode root = updater.getRoot();
+		root.update(at("b2"), 10, 9);
+		final McRunnable runnable = player.getMcRunnable(0);
+		runnable.copyDataFrom(player.getBoard());
+		assertEquals(at("b2"), descender.bestSearchMove(root, runnable));
+		final CandidateList candidates = root.getCandidates();
+		assertEquals(at("b2"), candidates.get(0));
+		assertTrue(candidates.isValid(root.getTotalRuns()));
+		// While the list is valid, the best move is taken from it
+		assertEquals(at("b2"), descender.bestSearchMove(root, runnable));
+		// When no candidate is as good as the best move left out, the list is
+		// refreshed early
+		final short[] old = new short[candidates.size()];
+		for (int i = 0; i < old.length; i++) {
+			old[i] = candidates.get(i);
+			root.update(old[i], 20, 0);
+		}
+		assertTrue(candidates.isValid(root.getTotalRuns()));
+		final short move = descender.bestSearchMove(root, runnable);
+		assertEquals(move, candidates.get(0));
+		for (short p : old) {
+			assertTrue(move != p);
+		}
+	}
+
+	@Test
+	public void testSearchValues() {
+		McRunnable runnable = player.getMcRunnable(0);
+		for (int i = 0; i < 20; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.performMcRun();
+		}
+		SearchNode root = updater.getRoot();
+		root.exclude(at("e5"));
+		SearchValues values = runnable.getSearchValues();
+		descender.searchValues(root, values);
+		ShortSet vacantPoints = player.getBoard().getVacantPoints();
+		for (int i = 0; i < vacantPoints.size(); i++) {
+			short p = vacantPoints.get(i);
+			assertEquals(descender.searchValue(root, p), values.values[p], 0.0001f);
+		}
+		assertEquals(descender.searchValue(root, PASS), values.values[PASS], 0.0001f);
+	}
+
+	@Test
+	public void testBulkEvaluation() {
+		// The same moves are chosen with and without bulk evaluation
+		McRunnable runnable = player.getMcRunnable(0);
+		for (int i = 0; i < 20; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.performMcRun();
+		}
+		SearchNode root = updater.getRoot();
+		for (int i = 0; i < 10; i++) {
+			runnable.copyDataFrom(player.getBoard());
+			runnable.getRandom().setSeed(i);
+			descender.setBulkEvaluation(false);
+			short scalar = descender.bestSearchMove(root, runnable);
+			runnable.getRandom().setSeed(i);
+			descender.setBulkEvaluation(true);
+			assertEquals(scalar, descender.bestSearchMove(root, runnable));
+		}
+	}
+
+	@Test
+	public void testVirtualLoss() {
+		descender.setVirtualLoss(true);
+		McRunnable runnable = player.getMcRunnable(0);
+		runnable.acceptMove(at("b1"));
+		updater.updateTree(BLACK, runnable);
+		SearchNode root = updater.getRoot();
+		assertEquals(3, root.getRuns(at("b1")));
+		assertEquals(61, root.getTotalRuns());
+		runnable.copyDataFrom(player.getBoard());
+		descender.descend(runnable);
+		short move = runnable.getHistoryObserver().get(0);
+		assertEquals(at("b1"), move);
+		// The move chosen is charged with a loss until the run is finished
+		assertEquals(4, root.getRuns(move));
+		assertEquals(2, root.getWins(move), 0.001);
+		assertEquals(62, root.getTotalRuns());
+		runnable.removeVirtualLosses();
+		assertEquals(3, root.getRuns(move));
+		assertEquals(2, root.getWins(move), 0.001);
+		assertEquals(61, root.getTotalRuns());
+	}
+
 	@Test
 	public void testUpdateBias() {
 		assertEquals("Total runs: 60\n", updater.toString(5));
@@ -77,12 +170,12 @@ public class UctDescenderTest {
 			updater.updateTree(BLACK, runnable);
 		}
 		assertEquals(
-				"Total runs: 160\nB1:     101/    102 (0.9902)\n  Total runs: 150\n  A1:       0/     92 (0.0109)\n    Total runs: 200\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n",
+				"Total runs: 160\nB1:     101/    102 (0.9902)\n  Total runs: 150\n  A1:       1/     92 (0.0109)\n    Total runs: 200\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n",
 				updater.toString(5));
 		descender.fakeDescend(runnable, at("b1"), at("a1"), at("a2"));
 		updater.updateTree(BLACK, runnable);
 		assertEquals(
-				"Total runs: 161\nB1:     102/    103 (0.9903)\n  Total runs: 151\n  A1:       0/     93 (0.0108)\n    Total runs: 201\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n    A2:      42/     43 (0.9767)\n      Total runs: 60\n",
+				"Total runs: 161\nB1:     102/    103 (0.9903)\n  Total runs: 151\n  A1:       1/     93 (0.0108)\n    Total runs: 201\n    C4:      81/     82 (0.9878)\n      Total runs: 60\n    A2:      42/     43 (0.9767)\n      Total runs: 60\n",
 				updater.toString(5));
 	}
 
@@ -0,0 +1,150 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.Legality.OK;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static java.lang.Long.bitCount;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.feature.BitPredicate;
+import edu.lclark.orego.feature.BoardObserver;
+import edu.lclark.orego.util.BitVector;
+import edu.lclark.orego.util.RandomSource;
+import edu.lclark.orego.util.ShortList;
+
+/**
+ * Makes random moves that satisfy some BitPredicate. Instead of probing
+ * points one at a time, this ANDs the predicate's bits with a bit set of
+ * vacant points (which it maintains as a BoardObserver) and picks a random set
+ * bit. Only moves that turn out to be illegal are rejected.
+ * <p>
+ * Each feasible move is equally likely, so the distribution of moves differs
+ * slightly from that of PredicateMover.
+ *
+ * @see PredicateMover
+ */
+@SuppressWarnings("serial")
+public final class BitPredicateMover implements Mover, BoardObserver {
+
+	/** Returns the index of the k-th (from 0) lowest set bit in word. */
+	private static int select(long word, int k) {
+		int result = 0;
+		for (int width = 32; width > 0; width >>= 1) {
+			final long low = word & (1L << width) - 1;
+			final int count = bitCount(low);
+			if (k < count) {
+				word = low;
+			} else {
+				k -= count;
+				word >>>= width;
+				result += width;
+			}
+		}
+		return result;
+	}
+
+	private final Board board;
+
+	/** Feasible vacant points not yet tried, used in selectAndPlayOneMove. */
+	private final long[] candidates;
+
+	private final CoordinateSystem coords;
+
+	/** Number of candidates in each word of candidates. */
+	private final int[] counts;
+
+	private final BitPredicate filter;
+
+	/** @see #vacant */
+	private final long[] markedVacant;
+
+	/** Bit p is true if p is vacant. */
+	private final long[] vacant;
+
+	/**
+	 * @param filter
+	 *            Only moves satisfying filter will be considered.
+	 */
+	public BitPredicateMover(Board board, BitPredicate filter) {
+		this.board = board;
+		this.filter = filter;
+		coords = board.getCoordinateSystem();
+		final int words = BitVector.longsFor(coords.getFirstPointBeyondBoard());
+		vacant = new long[words];
+		markedVacant = new long[words];
+		candidates = new long[words];
+		counts = new int[words];
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < vacant.length; i++) {
+			vacant[i] = 0L;
+		}
+		for (final short p : coords.getAllPointsOnBoard()) {
+			vacant[p / 64] |= 1L << p % 64;
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final BitPredicateMover original = (BitPredicateMover) that;
+		System.arraycopy(original.vacant, 0, vacant, 0, vacant.length);
+	}
+
+	@Override
+	public void mark() {
+		System.arraycopy(vacant, 0, markedVacant, 0, vacant.length);
+	}
+
+	@Override
+	public void rollBack() {
+		System.arraycopy(markedVacant, 0, vacant, 0, vacant.length);
+	}
+
+	@Override
+	public short selectAndPlayOneMove(RandomSource random) {
+		final long[] bits = filter.getBits();
+		int count = 0;
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = bits[i] & vacant[i];
+			counts[i] = bitCount(candidates[i]);
+			count += counts[i];
+		}
+		while (count > 0) {
+			// Find the k-th remaining candidate
+			int k = random.nextInt(count);
+			int i = 0;
+			while (counts[i] <= k) {
+				k -= counts[i];
+				i++;
+			}
+			final short p = (short) (i * 64 + select(candidates[i], k));
+			assert board.getColorAt(p) == VACANT;
+			if (board.playFast(p) == OK) {
+				return p;
+			}
+			candidates[i] &= ~(1L << p % 64);
+			counts[i]--;
+			count--;
+		}
+		board.pass();
+		return PASS;
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		if (location != PASS) {
+			vacant[location / 64] &= ~(1L << location % 64);
+			for (int i = 0; i < capturedStones.size(); i++) {
+				final short p = capturedStones.get(i);
+				vacant[p / 64] |= 1L << p % 64;
+			}
+		}
+	}
+
+}
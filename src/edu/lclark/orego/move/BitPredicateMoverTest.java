@@ -0,0 +1,105 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.feature.Conjunction;
+import edu.lclark.orego.feature.Disjunction;
+import edu.lclark.orego.feature.NearAnotherStone;
+import edu.lclark.orego.feature.NotEyeLike;
+import edu.lclark.orego.feature.OnThirdOrFourthLine;
+import edu.lclark.orego.feature.Predicate;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class BitPredicateMoverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	/** A non-incremental copy of the mover's filter, for checking moves. */
+	private Predicate feasible;
+
+	private Mover mover;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		mover = MoverFactory.bitFeasible(board);
+		feasible = new Conjunction(new NotEyeLike(board), new Disjunction(
+				OnThirdOrFourthLine.forWidth(9), new NearAnotherStone(board)));
+	}
+
+	@Test
+	public void testPlaysOnlyFeasibleMoves() {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 20; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				final Board before = new Board(9);
+				before.copyDataFrom(board);
+				final short p = mover.selectAndPlayOneMove(random);
+				if (p != PASS) {
+					assertTrue(feasibleOn(before, p));
+				}
+			}
+		}
+	}
+
+	/** Returns true if p is feasible on board b. */
+	private boolean feasibleOn(Board b, short p) {
+		return new Conjunction(new NotEyeLike(b), new Disjunction(
+				OnThirdOrFourthLine.forWidth(9), new NearAnotherStone(b))).at(p);
+	}
+
+	@Test
+	public void testPassesWhenNothingFeasible() {
+		String[] diagram = {
+				".#.#.#.#.",
+				"#########",
+				".#.#.#.#.",
+				"#########",
+				".#.#.#.#.",
+				"#########",
+				".#.#.#.#.",
+				"#########",
+				".#.#.#.#.",
+		};
+		board.setUpProblem(diagram, BLACK);
+		assertEquals(PASS, mover.selectAndPlayOneMove(new MersenneTwisterFast(0L)));
+	}
+
+	@Test
+	public void testUniform() {
+		board.play("e5");
+		board.play("a1");
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		final int[] counts = new int[coords.getFirstPointBeyondBoard()];
+		board.mark();
+		for (int i = 0; i < 2000; i++) {
+			counts[mover.selectAndPlayOneMove(random)]++;
+			board.rollBack();
+		}
+		assertEquals(0, counts[at("e5")]);
+		for (final short p : coords.getAllPointsOnBoard()) {
+			if (p != at("e5") && p != at("a1") && feasible.at(p)) {
+				assertTrue(coords.toString(p), counts[p] > 0);
+			} else {
+				assertEquals(coords.toString(p), 0, counts[p]);
+			}
+		}
+	}
+
+}
@@ -2,7 +2,7 @@ package edu.lclark.orego.move;
 
 import java.io.Serializable;
 
-import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.RandomSource;
 
 /** Plays moves. */
 public interface Mover extends Serializable {
@@ -45,6 +45,6 @@ public interface Mover extends Serializable {
 			2939, 2953, 2957, 2963, 2969, 2971, 2999, 3001, 3011, 3019 };
 
 	/** Selects and plays one move. */
-	public short selectAndPlayOneMove(MersenneTwisterFast random);
+	public short selectAndPlayOneMove(RandomSource random);
 
 }
\ No newline at end of file
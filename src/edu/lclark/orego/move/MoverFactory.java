@@ -2,6 +2,7 @@ package edu.lclark.orego.move;
 
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.BitPredicate;
 import edu.lclark.orego.feature.CaptureSuggester;
 import edu.lclark.orego.feature.Conjunction;
 import edu.lclark.orego.feature.Disjunction;
@@ -16,6 +17,19 @@ import edu.lclark.orego.feature.Predicate;
 /** Static methods for creating some particular, widely-used Movers. */
 public final class MoverFactory {
 
+	/**
+	 * Equivalent in its filter to feasible, but the filter's predicates keep
+	 * their values as incrementally updated bit sets and moves are drawn
+	 * uniformly from the set bits.
+	 */
+	public static Mover bitFeasible(Board board) {
+		final BitPredicate f = new Conjunction(new NotEyeLike(board, true),
+				new Disjunction(OnThirdOrFourthLine.forWidth(board
+						.getCoordinateSystem().getWidth()),
+						new NearAnotherStone(board, true)));
+		return new BitPredicateMover(board, f);
+	}
+
 	/** Like feasible, but captures when possible. */
 	public static Mover capturer(Board board, AtariObserver atariObserver) {
 		return new SuggesterMover(board, new CaptureSuggester(board,
@@ -0,0 +1,125 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.Legality.OK;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.feature.NearAnotherStone;
+import edu.lclark.orego.feature.NotEyeLike;
+import edu.lclark.orego.feature.OnThirdOrFourthLine;
+import edu.lclark.orego.feature.Suggester;
+import edu.lclark.orego.util.RandomSource;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Does the work of a chain of SuggesterMovers ending in a PredicateMover, in a
+ * single loop. The suggesters are tried in order; if none of them yields a
+ * legal move, a random vacant point passing the filter is played.
+ * <p>
+ * The filter is described by a Filter constant rather than a tree of
+ * Predicates, so its checks are made through fields of final classes (which
+ * the JIT can inline) with the cheapest ones first. For a given random number
+ * generator seed, the moves chosen are identical to those of the equivalent
+ * chain of movers.
+ *
+ * @see MoverFactory
+ */
+@SuppressWarnings("serial")
+public final class PolicyMover implements Mover {
+
+	/** Filters that may be applied to the random moves. */
+	public static enum Filter {
+
+		/** Equivalent to NotEyeLike. */
+		NOT_EYE_LIKE,
+
+		/**
+		 * Equivalent to NotEyeLike and (OnThirdOrFourthLine or
+		 * NearAnotherStone), as in MoverFactory.feasible().
+		 */
+		FEASIBLE
+
+	}
+
+	private final Board board;
+
+	/** True if the filter is FEASIBLE. */
+	private final boolean feasible;
+
+	/** Null unless the filter is FEASIBLE. */
+	private final NearAnotherStone nearAnotherStone;
+
+	private final NotEyeLike notEyeLike;
+
+	/** Null unless the filter is FEASIBLE. */
+	private final OnThirdOrFourthLine onThirdOrFourthLine;
+
+	/** Tried in order before making a random move. */
+	private final Suggester[] suggesters;
+
+	/**
+	 * @param suggesters
+	 *            Tried in order; the first one suggesting a legal move wins.
+	 */
+	public PolicyMover(Board board, Filter filter, Suggester... suggesters) {
+		this.board = board;
+		this.suggesters = suggesters;
+		notEyeLike = new NotEyeLike(board);
+		feasible = filter == Filter.FEASIBLE;
+		if (feasible) {
+			onThirdOrFourthLine = OnThirdOrFourthLine.forWidth(board
+					.getCoordinateSystem().getWidth());
+			nearAnotherStone = new NearAnotherStone(board);
+		} else {
+			onThirdOrFourthLine = null;
+			nearAnotherStone = null;
+		}
+	}
+
+	/** Returns true if p passes the filter. */
+	private boolean passesFilter(short p) {
+		if (feasible && !onThirdOrFourthLine.at(p) && !nearAnotherStone.at(p)) {
+			return false;
+		}
+		return notEyeLike.at(p);
+	}
+
+	@Override
+	public short selectAndPlayOneMove(RandomSource random) {
+		// Suggested moves
+		for (final Suggester suggester : suggesters) {
+			final ShortSet moves = suggester.getMoves();
+			final int size = moves.size();
+			if (size > 0) {
+				final int start = random.nextInt(size);
+				int i = start;
+				final short skip = PRIMES[random.nextInt(PRIMES.length)];
+				do {
+					final short p = moves.get(i);
+					assert board.getColorAt(p) == VACANT;
+					if (board.playFast(p) == OK) {
+						return p;
+					}
+					i = (i + skip) % size;
+				} while (i != start);
+			}
+		}
+		// Random moves
+		final ShortSet vacantPoints = board.getVacantPoints();
+		final int size = vacantPoints.size();
+		final int start = random.nextInt(size);
+		int i = start;
+		final short skip = PRIMES[random.nextInt(PRIMES.length)];
+		do {
+			final short p = vacantPoints.get(i);
+			if (board.getColorAt(p) == VACANT && passesFilter(p)
+					&& board.playFast(p) == OK) {
+				return p;
+			}
+			i = (i + skip) % size;
+		} while (i != start);
+		board.pass();
+		return PASS;
+	}
+
+}
@@ -0,0 +1,60 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.move.PolicyMover.Filter.FEASIBLE;
+import static edu.lclark.orego.move.PolicyMover.Filter.NOT_EYE_LIKE;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.CaptureSuggester;
+import edu.lclark.orego.feature.EscapeSuggester;
+import edu.lclark.orego.feature.HistoryObserver;
+import edu.lclark.orego.feature.PatternSuggester;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class PolicyMoverTest {
+
+	/**
+	 * Asserts that the two movers, playing on their own boards, make the same
+	 * moves when given generators with the same seed.
+	 */
+	private void assertSameMoves(Board board1, Mover mover1, Board board2,
+			Mover mover2) {
+		final MersenneTwisterFast random1 = new MersenneTwisterFast(0L);
+		final MersenneTwisterFast random2 = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 20; i++) {
+			board1.clear();
+			board2.clear();
+			while (board1.getPasses() < 2) {
+				assertEquals(mover1.selectAndPlayOneMove(random1),
+						mover2.selectAndPlayOneMove(random2));
+			}
+			assertEquals(2, board2.getPasses());
+		}
+	}
+
+	@Test
+	public void testSimpleRandom() {
+		final Board board1 = new Board(9);
+		final Board board2 = new Board(9);
+		assertSameMoves(board1, MoverFactory.simpleRandom(board1), board2,
+				new PolicyMover(board2, NOT_EYE_LIKE));
+	}
+
+	@Test
+	public void testEscapePatternCapturer() {
+		final Board board1 = new Board(9);
+		final Mover mover1 = MoverFactory.escapePatternCapturer(board1,
+				new AtariObserver(board1), new HistoryObserver(board1));
+		final Board board2 = new Board(9);
+		final AtariObserver atari = new AtariObserver(board2);
+		final Mover mover2 = new PolicyMover(board2, FEASIBLE,
+				new EscapeSuggester(board2, atari), new PatternSuggester(
+						board2, new HistoryObserver(board2)),
+				new CaptureSuggester(board2, atari));
+		assertSameMoves(board1, mover1, board2, mover2);
+	}
+
+}
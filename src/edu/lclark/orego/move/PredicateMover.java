@@ -5,7 +5,7 @@ import static edu.lclark.orego.core.Legality.OK;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.feature.Predicate;
-import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.RandomSource;
 import edu.lclark.orego.util.ShortSet;
 
 /**
@@ -28,7 +28,7 @@ public final class PredicateMover implements Mover {
 	}
 
 	@Override
-	public short selectAndPlayOneMove(MersenneTwisterFast random) {
+	public short selectAndPlayOneMove(RandomSource random) {
 		final ShortSet vacantPoints = board.getVacantPoints();
 		final short start = (short) random.nextInt(vacantPoints.size());
 		short i = start;
@@ -4,7 +4,7 @@ import static edu.lclark.orego.core.Legality.OK;
 import static edu.lclark.orego.core.NonStoneColor.VACANT;
 import edu.lclark.orego.core.Board;
 import edu.lclark.orego.feature.Suggester;
-import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+import edu.lclark.orego.util.RandomSource;
 import edu.lclark.orego.util.ShortSet;
 
 /** This tries to play a move suggested by some suggester. */
@@ -30,7 +30,7 @@ public final class SuggesterMover implements Mover {
 	}
 
 	@Override
-	public short selectAndPlayOneMove(MersenneTwisterFast random) {
+	public short selectAndPlayOneMove(RandomSource random) {
 		final ShortSet suggestedMoves = suggester.getMoves();
 		if (suggestedMoves.size() > 0) {
 			final short start = (short) random.nextInt(suggestedMoves.size());
@@ -0,0 +1,332 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.CoordinateSystem.FIRST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_DIAGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.LAST_ORTHOGONAL_NEIGHBOR;
+import static edu.lclark.orego.core.CoordinateSystem.NO_POINT;
+import static edu.lclark.orego.core.CoordinateSystem.PASS;
+import static edu.lclark.orego.core.Legality.OK;
+import static edu.lclark.orego.core.NonStoneColor.OFF_BOARD;
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.BoardObserver;
+import edu.lclark.orego.feature.PatternObserver;
+import edu.lclark.orego.feature.Predicate;
+import edu.lclark.orego.feature.ShapeObserver;
+import edu.lclark.orego.patterns.ShapeTable;
+import edu.lclark.orego.util.BitVector;
+import edu.lclark.orego.util.FenwickTree;
+import edu.lclark.orego.util.RandomSource;
+import edu.lclark.orego.util.ShortList;
+import edu.lclark.orego.util.ShortSet;
+
+/**
+ * Plays moves chosen at random in proportion to per-point weights. The weights
+ * favor good 3x3 patterns, liberties of chains in atari, points near the last
+ * move, and (optionally) 5x5 shapes with high win rates. Eye-like points get
+ * weight 0.
+ * <p>
+ * The weights for each color to play are kept in a FenwickTree. Because this
+ * mover is also a BoardObserver, only the points whose surroundings changed
+ * are reweighted after each move, and a move is sampled in O(log n) time.
+ */
+@SuppressWarnings("serial")
+public final class WeightedMover implements Mover, BoardObserver {
+
+	/** Added for a liberty of a chain (of either color) in atari. */
+	public static final int ATARI_WEIGHT = 100;
+
+	/** Weight of a point that is not eye-like. */
+	public static final int BASE_WEIGHT = 10;
+
+	/** Added for a point adjacent (orthogonally or diagonally) to the last move. */
+	public static final int NEAR_WEIGHT = 20;
+
+	/** Added for a point whose 3x3 pattern is good. */
+	public static final int PATTERN_WEIGHT = 40;
+
+	/** Added for a point whose 5x5 shape has a win rate above SHAPE_THRESHOLD. */
+	public static final int SHAPE_WEIGHT = 40;
+
+	/** Shapes with at least this win rate earn SHAPE_WEIGHT. */
+	private static final float SHAPE_THRESHOLD = 0.8f;
+
+	/** Returns true if the point with pattern code is eye-like for the color to play. */
+	private static boolean isEyeLike(int pattern) {
+		for (int i = 0; i <= LAST_ORTHOGONAL_NEIGHBOR; i++) {
+			final int code = pattern >>> 2 * i & 3;
+			// Orthogonal neighbors must be friendly or off board
+			if (code != 1 && code != OFF_BOARD.index()) {
+				return false;
+			}
+		}
+		int enemies = 0;
+		boolean edge = false;
+		for (int i = FIRST_DIAGONAL_NEIGHBOR; i <= LAST_DIAGONAL_NEIGHBOR; i++) {
+			final int code = pattern >>> 2 * i & 3;
+			if (code == 0) {
+				enemies++;
+			} else if (code == OFF_BOARD.index()) {
+				edge = true;
+			}
+		}
+		return enemies + (edge ? 1 : 0) < 2;
+	}
+
+	/** Liberties of chains in atari after the last update. */
+	private final ShortSet atariLiberties;
+
+	private final AtariObserver atariObserver;
+
+	private final Board board;
+
+	private final CoordinateSystem coords;
+
+	/** Points to reweight in the current update. */
+	private final ShortSet dirty;
+
+	/** Moves not passing this filter are never played. */
+	private final Predicate filter;
+
+	/** The last move played, or NO_POINT. */
+	private short lastMove;
+
+	/** @see #atariLiberties */
+	private final ShortSet markedAtariLiberties;
+
+	/** @see #lastMove */
+	private short markedLastMove;
+
+	/** @see #trees */
+	private final FenwickTree[] markedTrees;
+
+	private final PatternObserver patterns;
+
+	/** Weight of each 3x3 pattern code, before the other bonuses. */
+	private final byte[] patternWeights;
+
+	/**
+	 * Points sampled but rejected since the last move; their weights are
+	 * temporarily 0 in the tree for the color to play.
+	 */
+	private final ShortList rejected;
+
+	/** May be null, if shapes are not used. */
+	private final ShapeObserver shapes;
+
+	/** May be null, if shapes are not used. */
+	private final ShapeTable shapeTable;
+
+	/** Weights of the points, for black and white to play. */
+	private final FenwickTree[] trees;
+
+	/** Uses patterns, atari, and proximity, but not shapes. */
+	public WeightedMover(Board board, Predicate filter,
+			AtariObserver atariObserver, PatternObserver patterns,
+			BitVector goodPatterns) {
+		this(board, filter, atariObserver, patterns, goodPatterns, null, null);
+	}
+
+	/**
+	 * The observers must already be attached to board, so that they are
+	 * updated before this mover.
+	 *
+	 * @param shapes
+	 *            May be null, in which case shapes are ignored.
+	 * @param shapeTable
+	 *            May be null, in which case shapes are ignored.
+	 */
+	public WeightedMover(Board board, Predicate filter,
+			AtariObserver atariObserver, PatternObserver patterns,
+			BitVector goodPatterns, ShapeObserver shapes, ShapeTable shapeTable) {
+		this.board = board;
+		this.filter = filter;
+		this.atariObserver = atariObserver;
+		this.patterns = patterns;
+		this.shapes = shapeTable == null ? null : shapes;
+		this.shapeTable = shapes == null ? null : shapeTable;
+		coords = board.getCoordinateSystem();
+		final int n = coords.getFirstPointBeyondBoard();
+		patternWeights = new byte[1 << 16];
+		for (int i = 0; i < patternWeights.length; i++) {
+			if (!isEyeLike(i)) {
+				patternWeights[i] = (byte) (BASE_WEIGHT + (goodPatterns.get(i) ? PATTERN_WEIGHT
+						: 0));
+			}
+		}
+		trees = new FenwickTree[] { new FenwickTree(n), new FenwickTree(n) };
+		markedTrees = new FenwickTree[] { new FenwickTree(n),
+				new FenwickTree(n) };
+		atariLiberties = new ShortSet(n);
+		markedAtariLiberties = new ShortSet(n);
+		dirty = new ShortSet(n);
+		rejected = new ShortList(n);
+		board.addObserver(this);
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		lastMove = NO_POINT;
+		atariLiberties.clear();
+		rejected.clear();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			reweigh(p);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(BoardObserver that) {
+		final WeightedMover original = (WeightedMover) that;
+		for (int i = 0; i < 2; i++) {
+			trees[i].copyDataFrom(original.trees[i]);
+		}
+		atariLiberties.copyDataFrom(original.atariLiberties);
+		lastMove = original.lastMove;
+		rejected.clear();
+	}
+
+	/** Returns the weight of p if color were to play. */
+	int getWeight(short p, StoneColor color) {
+		return trees[color.index()].get(p);
+	}
+
+	/** Returns true if p is one of the eight neighbors of q. */
+	private boolean isNeighbor(short p, short q) {
+		for (final short n : coords.getNeighbors(q)) {
+			if (n == p) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Adds p and its eight neighbors to dirty. */
+	private void markNeighborhood(short p) {
+		dirty.add(p);
+		for (final short n : coords.getNeighbors(p)) {
+			if (coords.isOnBoard(n)) {
+				dirty.add(n);
+			}
+		}
+	}
+
+	/** Adds the points whose shapes include p to dirty. */
+	private void markShapes(short p) {
+		if (shapes != null) {
+			for (final short n : shapes.getShapePoints(p)) {
+				dirty.add(n);
+			}
+		}
+	}
+
+	@Override
+	public void mark() {
+		for (int i = 0; i < 2; i++) {
+			markedTrees[i].copyDataFrom(trees[i]);
+		}
+		markedAtariLiberties.copyDataFrom(atariLiberties);
+		markedLastMove = lastMove;
+	}
+
+	/** Recomputes the weights of p for both colors. */
+	private void reweigh(short p) {
+		trees[BLACK.index()].set(p, weight(p, BLACK));
+		trees[WHITE.index()].set(p, weight(p, WHITE));
+	}
+
+	@Override
+	public void rollBack() {
+		for (int i = 0; i < 2; i++) {
+			trees[i].copyDataFrom(markedTrees[i]);
+		}
+		atariLiberties.copyDataFrom(markedAtariLiberties);
+		lastMove = markedLastMove;
+		rejected.clear();
+	}
+
+	@Override
+	public short selectAndPlayOneMove(RandomSource random) {
+		final FenwickTree tree = trees[board.getColorToPlay().index()];
+		while (tree.getTotal() > 0) {
+			final short p = (short) tree.find(random.nextInt(tree.getTotal()));
+			assert board.getColorAt(p) == VACANT;
+			if (filter.at(p) && board.playFast(p) == OK) {
+				// The weights have been updated by update()
+				return p;
+			}
+			// Don't try p again until after the next move
+			tree.set(p, 0);
+			rejected.add(p);
+		}
+		board.pass();
+		return PASS;
+	}
+
+	@Override
+	public void update(StoneColor color, short location,
+			ShortList capturedStones) {
+		dirty.clear();
+		for (int i = 0; i < rejected.size(); i++) {
+			dirty.add(rejected.get(i));
+		}
+		rejected.clear();
+		if (lastMove != NO_POINT && lastMove != PASS) {
+			markNeighborhood(lastMove);
+		}
+		lastMove = location;
+		if (location != PASS) {
+			markNeighborhood(location);
+			markShapes(location);
+			for (int i = 0; i < capturedStones.size(); i++) {
+				markNeighborhood(capturedStones.get(i));
+				markShapes(capturedStones.get(i));
+			}
+		}
+		// Liberties of chains that were in atari, or are now
+		for (int i = 0; i < atariLiberties.size(); i++) {
+			dirty.add(atariLiberties.get(i));
+		}
+		atariLiberties.clear();
+		for (final StoneColor c : StoneColor.values()) {
+			final ShortSet chains = atariObserver.getChainsInAtari(c);
+			for (int i = 0; i < chains.size(); i++) {
+				final short liberty = board.getFirstLiberty(chains.get(i));
+				atariLiberties.add(liberty);
+				dirty.add(liberty);
+			}
+		}
+		for (int i = 0; i < dirty.size(); i++) {
+			reweigh(dirty.get(i));
+		}
+	}
+
+	/** Returns the weight p should have if color were to play. */
+	int weight(short p, StoneColor color) {
+		if (board.getColorAt(p) != VACANT) {
+			return 0;
+		}
+		int result = patternWeights[patterns.getPattern(p, color)];
+		if (result == 0) {
+			return 0;
+		}
+		if (atariLiberties.contains(p)) {
+			result += ATARI_WEIGHT;
+		}
+		if (lastMove != NO_POINT && lastMove != PASS
+				&& isNeighbor(p, lastMove)) {
+			result += NEAR_WEIGHT;
+		}
+		if (shapes != null
+				&& shapeTable.getWinRate(shapes.getHash(p, color)) > SHAPE_THRESHOLD) {
+			result += SHAPE_WEIGHT;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,136 @@
+package edu.lclark.orego.move;
+
+import static edu.lclark.orego.core.NonStoneColor.VACANT;
+import static edu.lclark.orego.core.StoneColor.BLACK;
+import static edu.lclark.orego.core.StoneColor.WHITE;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.core.Board;
+import edu.lclark.orego.core.CoordinateSystem;
+import edu.lclark.orego.core.StoneColor;
+import edu.lclark.orego.feature.AtariObserver;
+import edu.lclark.orego.feature.NotEyeLike;
+import edu.lclark.orego.feature.PatternObserver;
+import edu.lclark.orego.feature.PatternSuggester;
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class WeightedMoverTest {
+
+	private Board board;
+
+	private CoordinateSystem coords;
+
+	private WeightedMover mover;
+
+	/** Delegate method to call at on board. */
+	private short at(String label) {
+		return coords.at(label);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		board = new Board(9);
+		coords = board.getCoordinateSystem();
+		mover = new WeightedMover(board, new NotEyeLike(board),
+				new AtariObserver(board), new PatternObserver(board),
+				PatternSuggester.loadGoodPatterns());
+	}
+
+	/** Asserts that the incrementally maintained weights are all up to date. */
+	private void assertWeightsCorrect() {
+		for (final short p : coords.getAllPointsOnBoard()) {
+			for (final StoneColor color : StoneColor.values()) {
+				assertEquals(coords.toString(p), mover.weight(p, color),
+						mover.getWeight(p, color));
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyBoard() {
+		assertWeightsCorrect();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertTrue(mover.getWeight(p, BLACK) >= WeightedMover.BASE_WEIGHT);
+		}
+	}
+
+	@Test
+	public void testEyeLikePointHasNoWeight() {
+		String[] diagram = {
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".........",
+				".#.......",
+				"#.#......",
+				".#.......",
+		};
+		board.setUpProblem(diagram, BLACK);
+		assertWeightsCorrect();
+		assertEquals(0, mover.getWeight(at("b2"), BLACK));
+		assertEquals(0, mover.getWeight(at("a1"), BLACK));
+		assertTrue(mover.getWeight(at("b2"), WHITE) > 0);
+	}
+
+	@Test
+	public void testAtariLibertyFavored() {
+		String[] diagram = {
+				".........",
+				".........",
+				".........",
+				".........",
+				"...#.....",
+				"..#O.....",
+				"...#.....",
+				".........",
+				".........",
+		};
+		board.setUpProblem(diagram, BLACK);
+		board.play("a9");
+		board.play("j1");
+		assertWeightsCorrect();
+		assertTrue(mover.getWeight(at("e4"), BLACK) >= WeightedMover.ATARI_WEIGHT);
+		assertTrue(mover.getWeight(at("e4"), WHITE) >= WeightedMover.ATARI_WEIGHT);
+	}
+
+	@Test
+	public void testRandomPlayouts() {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		for (int i = 0; i < 10; i++) {
+			board.clear();
+			while (board.getPasses() < 2) {
+				final short p = mover.selectAndPlayOneMove(random);
+				if (p != CoordinateSystem.PASS) {
+					assertNotEquals(VACANT, board.getColorAt(p));
+				}
+				assertWeightsCorrect();
+			}
+		}
+	}
+
+	@Test
+	public void testRollBack() {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		board.play("e5");
+		board.play("d5");
+		final int[] before = new int[coords.getFirstPointBeyondBoard()];
+		for (final short p : coords.getAllPointsOnBoard()) {
+			before[p] = mover.getWeight(p, BLACK);
+		}
+		board.mark();
+		for (int i = 0; i < 20; i++) {
+			mover.selectAndPlayOneMove(random);
+		}
+		board.rollBack();
+		assertWeightsCorrect();
+		for (final short p : coords.getAllPointsOnBoard()) {
+			assertEquals(before[p], mover.getWeight(p, BLACK));
+		}
+	}
+
+}
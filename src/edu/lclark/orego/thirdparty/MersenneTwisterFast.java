@@ -2,6 +2,8 @@ package edu.lclark.orego.thirdparty;
 import java.io.*;
 import java.util.*;
 
+import edu.lclark.orego.util.RandomSource;
+
 /** 
  * <h3>MersenneTwister and MersenneTwisterFast</h3>
  * <p><b>Version 13</b>, based on version MT199937(99/10/29)
@@ -149,7 +151,8 @@ import java.util.*;
 // on the code, I strongly suggest looking at MersenneTwister.java first.
 // -- Sean
 
-public class MersenneTwisterFast implements Serializable, Cloneable
+// RandomSource added by the Orego team, so that the generator can be swapped out
+public class MersenneTwisterFast implements Serializable, Cloneable, RandomSource
     {
 
 	private static final long serialVersionUID = 1L; // Added by Peter Drake to avoid compiler warning
@@ -14,6 +14,12 @@ import edu.lclark.orego.util.ShortSet;
  */
 public final class ExitingTimeManager implements TimeManager {
 
+	/**
+	 * Maximum number of times per slice stopEarly examines the tree, because
+	 * each check scans every vacant point.
+	 */
+	private static final int CHECKS_PER_SLICE = 4;
+
 	/** Number of slices into which to divide each turn. */
 	private static final int SLICE_COUNT = 3;
 
@@ -41,6 +47,12 @@ public final class ExitingTimeManager implements TimeManager {
 
 	private int msecPerSlice;
 
+	/**
+	 * stopEarly does not examine the tree again until fewer than this many
+	 * msec are left in the slice.
+	 */
+	private int msecLeftAtNextCheck;
+
 	/** Time left for the rest of our moves, in msec. */
 	private int msecRemaining;
 
@@ -97,7 +109,6 @@ public final class ExitingTimeManager implements TimeManager {
 
 	@Override
 	public int getMsec() {
-		assert player.shouldKeepRunning() == false;
 		if (slicesRemaining == 0) {
 			rollover = 0;
 			return 0;
@@ -107,9 +118,20 @@ public final class ExitingTimeManager implements TimeManager {
 			return 0;
 		}
 		slicesRemaining--;
+		msecLeftAtNextCheck = msecPerSlice - getMsecBetweenChecks();
 		return msecPerSlice;
 	}
 
+	@Override
+	public int getMsecInLaterSlices() {
+		return slicesRemaining * msecPerSlice;
+	}
+
+	/** Returns the minimum time between examinations of the tree in stopEarly. */
+	private int getMsecBetweenChecks() {
+		return max(1, msecPerSlice / CHECKS_PER_SLICE);
+	}
+
 	/** Computes the total time to allocate to the next move. */
 	private int getMsecPerMove() {
 		final int movesLeft = max(10, (int) (board.getVacantPoints().size() * TIME_CONSTANT));
@@ -121,12 +143,35 @@ public final class ExitingTimeManager implements TimeManager {
 		return rollover;
 	}
 
+	@Override
+	public void saveTime(int msecLeft) {
+		rollover = slicesRemaining * msecPerSlice + msecLeft;
+	}
+
 	@Override
 	public void setRemainingSeconds(int seconds) {
 		msecRemaining = (seconds - 10) * 1000 - rollover / 1000;
 		createSlices();
 	}
 
+	/**
+	 * Once the first slice of the turn is used up, stops as soon as we are
+	 * confident about the best move, rolling over the rest of the time. The
+	 * tree is examined at most CHECKS_PER_SLICE times per slice.
+	 */
+	@Override
+	public boolean stopEarly(int msecLeft) {
+		if (slicesRemaining >= SLICE_COUNT - 1 || msecLeft > msecLeftAtNextCheck) {
+			return false;
+		}
+		msecLeftAtNextCheck = msecLeft - getMsecBetweenChecks();
+		if (confidenceBestVsRest() > 0.99) {
+			saveTime(msecLeft);
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	public void startNewTurn() {
 		// Does nothing; things are reset in setRemainingTime
@@ -53,4 +53,16 @@ public class ExitingTimeManagerTest {
 		assertEquals(0, manager.getRollover());
 	}
 
+	@Test
+	public void testStopEarlyIsRateLimited() {
+		player.setRemainingTime(10000);
+		SearchNode root = player.getRoot();
+		int slice = manager.getMsec();
+		manager.getMsec();
+		root.update(coords.at("a5"), 1000, 1000);
+		// Too soon after the slice boundary to look at the tree again
+		assertFalse(manager.stopEarly(slice - 1));
+		assertTrue(manager.stopEarly(slice / 2));
+	}
+
 }
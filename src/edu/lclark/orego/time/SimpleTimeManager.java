@@ -21,11 +21,26 @@ public final class SimpleTimeManager implements TimeManager {
 		return msecPerMove;
 	}
 
+	@Override
+	public int getMsecInLaterSlices() {
+		return 0;
+	}
+
+	@Override
+	public void saveTime(int msecLeft) {
+		// Does nothing; every move gets the same time
+	}
+
 	@Override
 	public void setRemainingSeconds(int seconds) {
 		// Does nothing
 	}
 
+	@Override
+	public boolean stopEarly(int msecLeft) {
+		return false;
+	}
+
 	@Override
 	public void startNewTurn() {
 		alreadyThought = false;
@@ -9,6 +9,27 @@ public interface TimeManager {
 	 */
 	public int getMsec();
 
+	/**
+	 * Returns the total time (in msec) that getMsec() is still expected to
+	 * hand out this turn, not counting the slice most recently returned.
+	 */
+	public int getMsecInLaterSlices();
+
+	/**
+	 * Called when search stops with msecLeft milliseconds unused of the time
+	 * most recently returned by getMsec(), and gives up any later slices. The
+	 * manager may roll the saved time over into later turns.
+	 */
+	public void saveTime(int msecLeft);
+
+	/**
+	 * Called frequently while search is running. Returns true if search should
+	 * stop now, even though msecLeft milliseconds remain of the time most
+	 * recently returned by getMsec(). Any time saved is the manager's to
+	 * account for, e.g., by rolling it over into later turns.
+	 */
+	public boolean stopEarly(int msecLeft);
+
 	/** Sets the amount of time left in the game for this player. */
 	public void setRemainingSeconds(int seconds);
 
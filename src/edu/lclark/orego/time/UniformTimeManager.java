@@ -32,12 +32,27 @@ public final class UniformTimeManager implements TimeManager {
 		return 0;
 	}
 
+	@Override
+	public int getMsecInLaterSlices() {
+		return 0;
+	}
+
+	@Override
+	public void saveTime(int msecLeft) {
+		// Does nothing; the saved time shows up in the next time_left
+	}
+
 	@Override
 	public void setRemainingSeconds(int seconds) {
 		// The subtraction ensures that we don't run out of time due to lag
 		msecRemaining = max(1, (seconds - 10) * 1000);
 	}
 
+	@Override
+	public boolean stopEarly(int msecLeft) {
+		return false;
+	}
+
 	@Override
 	public void startNewTurn() {
 		alreadyThought = false;
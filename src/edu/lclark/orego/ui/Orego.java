@@ -9,6 +9,7 @@ import static java.io.File.separator;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Double.parseDouble;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 
 import static edu.lclark.orego.experiment.Logging.*;
 
@@ -42,15 +43,47 @@ import edu.lclark.orego.util.ShortSet;
  * convenience, a boolean feature can be set to true simply as
  * <code>feature</code>.
  * <dl>
+ * <dt>arena</dt>
+ * <dd>Toggles storing the statistics of all search nodes in a few large arrays
+ * rather than in separate arrays for each node. This fits more nodes into the
+ * same amount of memory. Defaults to false.</dd>
  * <dt>biasdelay</dt>
  * <dd>Number of runs required through a node before heuristic biases are added.
  * Because of initial wins and losses given to every move, any value less than
  * or equal to 732 results in immediate application of bias. Defaults to 800.</dd>
+ * <dt>bit-filters</dt>
+ * <dd>Toggles drawing random playout moves from bit sets of feasible points,
+ * which are kept up to date after every move, instead of probing vacant
+ * points one at a time. Implies lgrf2. On 19x19 this is currently slower (about
+ * 400-480 microseconds per playout versus 240-300), so it defaults to
+ * false.</dd>
  * <dt>boardsize</dt>
  * <dd>Width of board. Defaults to 19.</dd>
  * <dt>book</dt>
  * <dd>Toggles whether Orego will play moves from a fuseki book at the beginning
  * of the game. Defaults to true.</dd>
+ * <dt>bulk-evaluation</dt>
+ * <dd>Toggles computing the search values of all moves from a search node in
+ * one loop over the node's statistics, instead of one move at a time. The
+ * moves chosen are the same. Defaults to false.</dd>
+ * <dt>candidate-refresh</dt>
+ * <dd>Number of runs through a search node between rebuilds of its short list
+ * of promising moves. Between rebuilds, only those moves (and pass) are
+ * considered when descending through the node. 0 turns this off, so that
+ * every move is considered every time. Defaults to 0.</dd>
+ * <dt>concurrent-table</dt>
+ * <dd>Toggles lock-free access to the transposition table, so that search
+ * threads never wait on a lock when looking up or allocating nodes. Defaults
+ * to false.</dd>
+ * <dt>deterministic</dt>
+ * <dd>Number of playouts per move in deterministic mode, where the search
+ * (and thus the move chosen) depends only on the random seed, not on timing.
+ * Time limits and pondering are ignored. 0 (the default) turns this off.</dd>
+ * <dt>eviction</dt>
+ * <dd>Number of runs below which a node may be evicted from the transposition
+ * table while searching, once the table is nearly full. This lets the tree
+ * keep growing during long searches. 0 turns eviction off, so the tree stops
+ * growing until the next move. Defaults to 0.</dd>
  * <dt>grace</dt>
  * <dd>Toggles coup de grace mode. When the opposing player passes, Orego will
  * attempt to clear the board of enemy dead stones, or pass if it can win with
@@ -58,8 +91,16 @@ import edu.lclark.orego.util.ShortSet;
  * <dt>gestation</dt>
  * <dd>The amount of runs required through a move before a child is created for
  * that move. Defaults to 4.</dd>
+ * <dt>journal</dt>
+ * <dd>Toggles journaled boards. Before each playout, each thread undoes the
+ * moves of its previous playout instead of copying the whole board. Defaults
+ * to false.</dd>
  * <dt>komi</dt>
  * <dd>Sets the komi for the game. Defaults to 7.5.</dd>
+ * <dt>lazy-sweep</dt>
+ * <dd>Toggles lazy sweeping. After each move, unreachable nodes are freed by
+ * the search threads a little at a time, instead of all at once before the
+ * next search starts. Defaults to false.</dd>
  * <dt>lgrf2</dt>
  * <dd>Toggles Last Good Reply with Forgetting (level 2). During playouts, Orego
  * tracks successful replies to a move or a chain of two moves, for use in
@@ -74,16 +115,56 @@ import edu.lclark.orego.util.ShortSet;
  * <dt>msec</dt>
  * <dd>Sets the milliseconds that Orego takes to decide a move. Not relevant
  * when using time management. Defaults to 1000 milliseconds.</dd>
+ * <dt>nodes</dt>
+ * <dd>Maximum number of tree nodes allocated in each search. Search stops when
+ * this many nodes have been allocated, or when time runs out, whichever comes
+ * first. 0 (the default) means no limit.</dd>
+ * <dt>parallel-reclaim</dt>
+ * <dd>Toggles splitting the marking and sweeping of the tree after each move
+ * across the threads used for searching. Defaults to false.</dd>
+ * <dt>playouts</dt>
+ * <dd>Number of playouts in each search, counted across all threads. Search
+ * stops when this many playouts have been run, or when time runs out,
+ * whichever comes first. 0 (the default) means no limit.</dd>
  * <dt>pondering</dt>
  * <dd>Toggles whether Orego thinks during the opponent's turn. Defaults to
  * false.</dd>
+ * <dt>random</dt>
+ * <dd>Kind of random number generator used in playouts and in the search tree.
+ * Options are mersenne (the Mersenne twister, the default) and xoshiro (the
+ * smaller and faster xoshiro256**).</dd>
  * <dt>rave</dt>
  * <dd>Toggles Rapid Action Value Estimation. Defaults to true.</dd>
+ * <dt>seed</dt>
+ * <dd>Seed for the random number generators. Each search thread gets its own
+ * stream, seeded from this. 0 (the default) seeds them from the clock.</dd>
+ * <dt>sparse-nodes</dt>
+ * <dd>Toggles sparse search nodes, which store statistics only for the moves
+ * actually tried until they have received enough runs. This fits several
+ * times as many nodes into the same amount of memory. Implies arena. Defaults
+ * to false.</dd>
  * <dt>threads</dt>
  * <dd>The number of threads Orego uses to think. Defaults to 2.</dd>
  * <dt>time-management</dt>
  * <dd>Set the type of time manager to be used by Orego. If not specified, Orego
  * will rely on msec. Options are uniform (the default) and exiting.</dd>
+ * <dt>unassailable</dt>
+ * <dd>Toggles stopping search as soon as the move with the most wins could not
+ * be overtaken in the time remaining, judging by the playout rate so far. The
+ * time saved is rolled over to later moves if the time manager supports it.
+ * Defaults to false.</dd>
+ * <dt>updater-threads</dt>
+ * <dd>The number of extra threads that apply finished playouts to the search
+ * tree, so that the playout threads do not contend for node and table locks.
+ * Defaults to 0, meaning each playout thread updates the tree itself.</dd>
+ * <dt>virtual-loss</dt>
+ * <dd>Toggles virtual loss. Each move chosen in the tree counts as a loss
+ * until its playout finishes, so that threads spread out instead of all
+ * exploring the same line. Defaults to false.</dd>
+ * <dt>weighted</dt>
+ * <dd>Toggles weighted playouts. When there is no last-good-reply move,
+ * playout moves are sampled in proportion to weights for good patterns,
+ * atari, and proximity to the last move. Defaults to false.</dd>
  * </dl>
  */
 public final class Orego {
@@ -233,6 +314,7 @@ public final class Orego {
 				acknowledge();
 			} else if (width >= 2 && width <= 19) {
 				playerBuilder = playerBuilder.boardWidth(width);
+				player.shutdown();
 				player = playerBuilder.build();
 				acknowledge();
 			} else {
@@ -317,6 +399,7 @@ public final class Orego {
 				player.clear();
 			} else {
 				playerBuilder = playerBuilder.komi(komi);
+				player.shutdown();
 				player = playerBuilder.build();
 			}
 			acknowledge();
@@ -413,20 +496,38 @@ public final class Orego {
 				right = "true";
 			}
 			// Handle properties
-			if (left.equals("biasdelay")) {
+			if (left.equals("arena")) {
+				playerBuilder.arena(parseBoolean(right));
+			} else if (left.equals("biasdelay")) {
 				playerBuilder.biasDelay(parseInt(right));
+			} else if (left.equals("bit-filters")) {
+				playerBuilder.bitFilters(parseBoolean(right));
 			} else if (left.equals("boardsize")) {
 				playerBuilder.boardWidth(parseInt(right));
 			} else if (left.equals("book")) {
 				playerBuilder.openingBook(parseBoolean(right));
+			} else if (left.equals("bulk-evaluation")) {
+				playerBuilder.bulkEvaluation(parseBoolean(right));
+			} else if (left.equals("candidate-refresh")) {
+				playerBuilder.candidateRefresh(parseInt(right));
 			} else if (left.equals("cgtc")) {
 				cgtc = parseBoolean(right);
+			} else if (left.equals("concurrent-table")) {
+				playerBuilder.concurrentTable(parseBoolean(right));
+			} else if (left.equals("deterministic")) {
+				playerBuilder.deterministicPlayouts(parseInt(right));
+			} else if (left.equals("eviction")) {
+				playerBuilder.evictionThreshold(parseInt(right));
 			} else if (left.equals("grace")) {
 				playerBuilder.coupDeGrace(parseBoolean(right));
 			} else if (left.equals("gestation")) {
 				playerBuilder.gestation(parseInt(right));
+			} else if (left.equals("journal")) {
+				playerBuilder.journaledBoards(parseBoolean(right));
 			} else if (left.equals("komi")) {
 				playerBuilder.komi(parseDouble(right));
+			} else if (left.equals("lazy-sweep")) {
+				playerBuilder.lazySweep(parseBoolean(right));
 			} else if (left.equals("lgrf2")) {
 				playerBuilder.lgrf2(parseBoolean(right));
 			} else if (left.equals("log-file")) {
@@ -435,14 +536,34 @@ public final class Orego {
 				playerBuilder.memorySize(parseInt(right));
 			} else if (left.equals("msec")) {
 				playerBuilder.msecPerMove(parseInt(right));
+			} else if (left.equals("nodes")) {
+				playerBuilder.nodeBudget(parseInt(right));
+			} else if (left.equals("parallel-reclaim")) {
+				playerBuilder.parallelReclaim(parseBoolean(right));
+			} else if (left.equals("playouts")) {
+				playerBuilder.playoutBudget(parseInt(right));
 			} else if (left.equals("ponder")) {
 				playerBuilder.ponder(parseBoolean(right));
+			} else if (left.equals("random")) {
+				playerBuilder.randomGenerator(right);
 			} else if (left.equals("rave")) {
 				playerBuilder.rave(parseBoolean(right));
+			} else if (left.equals("seed")) {
+				playerBuilder.seed(parseLong(right));
+			} else if (left.equals("sparse-nodes")) {
+				playerBuilder.sparseNodes(parseBoolean(right));
 			} else if (left.equals("threads")) {
 				playerBuilder.threads(parseInt(right));
 			} else if (left.equals("time-management")) {
 				playerBuilder.timeManagement(right);
+			} else if (left.equals("unassailable")) {
+				playerBuilder.unassailable(parseBoolean(right));
+			} else if (left.equals("updater-threads")) {
+				playerBuilder.updaterThreads(parseInt(right));
+			} else if (left.equals("virtual-loss")) {
+				playerBuilder.virtualLoss(parseBoolean(right));
+			} else if (left.equals("weighted")) {
+				playerBuilder.weightedPlayouts(parseBoolean(right));
 			} else {
 				throw new IllegalArgumentException(
 						"Unknown command line argument: " + left);
@@ -16,34 +16,64 @@ import java.io.Serializable;
 @SuppressWarnings("serial")
 public final class BitVector implements Serializable {
 
-	/** The bits themselves, in 64-bit chunks. */
-	private final long[] data;
-
-	/** Elements must be in [0, capacity). */
-	public BitVector(int capacity) {
+	/** Returns the number of longs needed to hold capacity bits. */
+	public static int longsFor(int capacity) {
 		int longs = capacity / 64;
 		if (longs * 64 < capacity) {
 			longs++;
 		}
+		return longs;
+	}
+
+	/**
+	 * The bits themselves, in 64-bit chunks. This may be shared with other
+	 * BitVectors.
+	 */
+	private final long[] data;
+
+	/** Number of longs in data used by this BitVector. */
+	private final int longs;
+
+	/** Index in data of the first long used by this BitVector. */
+	private final int offset;
+
+	/** Elements must be in [0, capacity). */
+	public BitVector(int capacity) {
+		longs = longsFor(capacity);
 		data = new long[longs];
+		offset = 0;
+	}
+
+	/**
+	 * Creates a BitVector stored in data, starting at index offset. The caller
+	 * is responsible for making sure that different BitVectors sharing data
+	 * do not overlap.
+	 *
+	 * @see #longsFor(int)
+	 */
+	public BitVector(long[] data, int offset, int capacity) {
+		longs = longsFor(capacity);
+		assert offset + longs <= data.length;
+		this.data = data;
+		this.offset = offset;
 	}
 
 	/** Removes all elements from this set. */
 	public void clear() {
-		fill(data, 0L);
+		fill(data, offset, offset + longs, 0L);
 	}
 
 	/** Returns true if i is in this set. */
 	public boolean get(int i) {
-		return (data[i / 64] & 1L << i % 64) != 0;
+		return (data[offset + i / 64] & 1L << i % 64) != 0;
 	}
 
 	/** Sets whether i is in this set. */
 	public void set(int i, boolean value) {
 		if (value) {
-			data[i / 64] |= 1L << i % 64;
+			data[offset + i / 64] |= 1L << i % 64;
 		} else {
-			data[i / 64] &= ~(1L << i % 64);
+			data[offset + i / 64] &= ~(1L << i % 64);
 		}
 	}
 
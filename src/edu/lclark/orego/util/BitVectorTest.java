@@ -50,4 +50,20 @@ public class BitVectorTest {
 		}
 	}
 
+	@Test
+	public void testSharedData() {
+		long[] data = new long[2 * BitVector.longsFor(CAPACITY)];
+		BitVector a = new BitVector(data, 0, CAPACITY);
+		BitVector b = new BitVector(data, BitVector.longsFor(CAPACITY), CAPACITY);
+		a.set(CAPACITY - 1, true);
+		b.set(0, true);
+		assertTrue(a.get(CAPACITY - 1));
+		assertFalse(a.get(0));
+		assertTrue(b.get(0));
+		assertFalse(b.get(CAPACITY - 1));
+		a.clear();
+		assertFalse(a.get(CAPACITY - 1));
+		assertTrue(b.get(0));
+	}
+
 }
@@ -0,0 +1,96 @@
+package edu.lclark.orego.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Nonnegative integer weights for the keys in [0, capacity), supporting
+ * changing a weight and finding the key at a given position in the cumulative
+ * distribution, each in O(log capacity) time. This allows sampling keys in
+ * proportion to their weights when the weights change a few at a time.
+ */
+@SuppressWarnings("serial")
+public final class FenwickTree implements Serializable {
+
+	/** Largest power of two no greater than the capacity. */
+	private final int highBit;
+
+	/** Sum of all weights. */
+	private int total;
+
+	/**
+	 * Partial sums, indexed from 1. tree[i] is the sum of the weights of keys
+	 * i - (i & -i) through i - 1.
+	 */
+	private final int[] tree;
+
+	/** The weight of each key. */
+	private final int[] weights;
+
+	/** Keys must be in [0, capacity). */
+	public FenwickTree(int capacity) {
+		tree = new int[capacity + 1];
+		weights = new int[capacity];
+		highBit = Integer.highestOneBit(capacity);
+	}
+
+	/** Sets all weights to 0. */
+	public void clear() {
+		Arrays.fill(tree, 0);
+		Arrays.fill(weights, 0);
+		total = 0;
+	}
+
+	/**
+	 * Makes this into a copy of that, without the overhead of creating a new
+	 * object.
+	 */
+	public void copyDataFrom(FenwickTree that) {
+		System.arraycopy(that.tree, 0, tree, 0, tree.length);
+		System.arraycopy(that.weights, 0, weights, 0, weights.length);
+		total = that.total;
+	}
+
+	/**
+	 * Returns the key k such that target is at least the sum of the weights
+	 * of keys before k, but less than that sum plus the weight of k. Target
+	 * must be in [0, getTotal()).
+	 */
+	public int find(int target) {
+		assert target >= 0 && target < total;
+		int i = 0;
+		for (int step = highBit; step > 0; step >>= 1) {
+			final int next = i + step;
+			if (next < tree.length && tree[next] <= target) {
+				i = next;
+				target -= tree[next];
+			}
+		}
+		return i;
+	}
+
+	/** Returns the weight of key. */
+	public int get(int key) {
+		return weights[key];
+	}
+
+	/** Returns the sum of all weights. */
+	public int getTotal() {
+		return total;
+	}
+
+	/** Sets the weight of key. */
+	public void set(int key, int weight) {
+		assert weight >= 0;
+		final int delta = weight - weights[key];
+		if (delta == 0) {
+			return;
+		}
+		weights[key] = weight;
+		total += delta;
+		for (int i = key + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+}
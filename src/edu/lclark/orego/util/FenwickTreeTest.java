@@ -0,0 +1,68 @@
+package edu.lclark.orego.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lclark.orego.thirdparty.MersenneTwisterFast;
+
+public class FenwickTreeTest {
+
+	private FenwickTree tree;
+
+	@Before
+	public void setUp() throws Exception {
+		tree = new FenwickTree(10);
+	}
+
+	@Test
+	public void testSetAndFind() {
+		tree.set(2, 3);
+		tree.set(5, 1);
+		tree.set(9, 2);
+		assertEquals(6, tree.getTotal());
+		assertEquals(2, tree.find(0));
+		assertEquals(2, tree.find(2));
+		assertEquals(5, tree.find(3));
+		assertEquals(9, tree.find(4));
+		assertEquals(9, tree.find(5));
+		tree.set(2, 0);
+		assertEquals(3, tree.getTotal());
+		assertEquals(5, tree.find(0));
+		assertEquals(0, tree.get(2));
+	}
+
+	@Test
+	public void testRandomWeights() {
+		final MersenneTwisterFast random = new MersenneTwisterFast(0L);
+		tree = new FenwickTree(361);
+		final int[] weights = new int[361];
+		for (int i = 0; i < 2000; i++) {
+			final int key = random.nextInt(361);
+			weights[key] = random.nextInt(5);
+			tree.set(key, weights[key]);
+		}
+		int sum = 0;
+		for (int key = 0; key < 361; key++) {
+			for (int j = 0; j < weights[key]; j++) {
+				assertEquals(key, tree.find(sum + j));
+			}
+			sum += weights[key];
+		}
+		assertEquals(sum, tree.getTotal());
+	}
+
+	@Test
+	public void testCopyDataFromAndClear() {
+		tree.set(4, 7);
+		final FenwickTree copy = new FenwickTree(10);
+		copy.copyDataFrom(tree);
+		assertEquals(7, copy.getTotal());
+		assertEquals(4, copy.find(6));
+		tree.clear();
+		assertEquals(0, tree.getTotal());
+		assertEquals(7, copy.get(4));
+	}
+
+}
@@ -28,11 +28,12 @@ public final class Pool<T extends Poolable<T>> {
 	/**
 	 * Adds element to those available in this pool. This works even if element
 	 * was not previously in this pool. In fact, this is how elements are added
-	 * to a pool in the first place.
+	 * to a pool in the first place. It is synchronized because nodes may be
+	 * freed while other threads are allocating.
 	 *
 	 * @return the T to which element's next pointer used to point.
 	 */
-	public T free(T element) {
+	public synchronized T free(T element) {
 		final T result = element.getNext();
 		element.setNext(free);
 		free = element;
@@ -0,0 +1,27 @@
+package edu.lclark.orego.util;
+
+/**
+ * A pseudorandom number generator. Each thread should have its own, since
+ * implementations need not be thread-safe.
+ *
+ * @see edu.lclark.orego.thirdparty.MersenneTwisterFast
+ * @see XoshiroRandom
+ */
+public interface RandomSource {
+
+	/** Returns a uniformly distributed int. */
+	public int nextInt();
+
+	/**
+	 * Returns an int drawn uniformly from 0 through n - 1. Throws an
+	 * IllegalArgumentException if n is not positive.
+	 */
+	public int nextInt(int n);
+
+	/** Returns a uniformly distributed long. */
+	public long nextLong();
+
+	/** Restarts the sequence of numbers from seed. */
+	public void setSeed(long seed);
+
+}
@@ -100,6 +100,12 @@ public final class ShortList implements Serializable {
 		return size;
 	}
 
+	/** Removes all but the first n elements of this list. */
+	public void truncate(int n) {
+		assert n <= size;
+		size = n;
+	}
+
 	@Override
 	public String toString() {
 		String result = "";
@@ -0,0 +1,52 @@
+package edu.lclark.orego.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class XoshiroRandomTest {
+
+	@Test
+	public void testNextLong() {
+		// Values from the reference C implementation
+		final XoshiroRandom random = new XoshiroRandom(1, 2, 3, 4);
+		assertEquals(11520L, random.nextLong());
+		assertEquals(0L, random.nextLong());
+		assertEquals(1509978240L, random.nextLong());
+		assertEquals(1215971899390074240L, random.nextLong());
+	}
+
+	@Test
+	public void testNextInt() {
+		final XoshiroRandom random = new XoshiroRandom(0L);
+		final int[] counts = new int[7];
+		for (int i = 0; i < 70000; i++) {
+			counts[random.nextInt(7)]++;
+		}
+		for (final int count : counts) {
+			assertEquals(10000, count, 500);
+		}
+		for (int i = 0; i < 1000; i++) {
+			final int n = random.nextInt(Integer.MAX_VALUE) + 1;
+			final int x = random.nextInt(n);
+			assertTrue(x >= 0 && x < n);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNextIntNonPositive() {
+		new XoshiroRandom(0L).nextInt(0);
+	}
+
+	@Test
+	public void testSetSeed() {
+		final XoshiroRandom a = new XoshiroRandom(5L);
+		final XoshiroRandom b = new XoshiroRandom(6L);
+		final long first = a.nextLong();
+		assertTrue(first != b.nextLong());
+		a.nextLong();
+		a.setSeed(5L);
+		assertEquals(first, a.nextLong());
+	}
+
+}